@@ -0,0 +1,177 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * List of move numbers backed by primitive int array. Lists that are only
+ * needed for a short time (ie. during one call of move finder) should be taken
+ * with {@link #acquire()} and given back with {@link #release(MoveList)}, so
+ * they can be reused by the same thread.
+ *
+ * @author Andraz Kohne
+ */
+public class MoveList {
+
+    /** Initial capacity of list (enough for all moves in supported endings) */
+    private static final int               INITIAL_CAPACITY = 64;
+
+    /** Maximum number of lists kept in pool of single thread */
+    private static final int               MAX_POOL_SIZE    = 32;
+
+    /** Lists that are free for reuse, each thread has its own pool */
+    private static final ThreadLocal<Pool> POOL             = new ThreadLocal<Pool>() {
+
+                                                                @Override
+                                                                protected Pool initialValue() {
+                                                                    return new Pool();
+                                                                }
+                                                            };
+
+    /** Move numbers */
+    private int[]                          moves;
+
+    /** Number of moves in list */
+    private int                            size             = 0;
+
+
+    public MoveList() {
+        this.moves = new int[MoveList.INITIAL_CAPACITY];
+    }
+
+
+    /**
+     * Takes empty list from pool of current thread (new list is created if
+     * pool is empty).
+     *
+     * @return empty list
+     */
+    public static MoveList acquire() {
+        Pool pool = MoveList.POOL.get();
+        if (pool.size == 0) { return new MoveList(); }
+
+        pool.size--;
+        MoveList rez = pool.lists[pool.size];
+        pool.lists[pool.size] = null;
+        rez.clear();
+        return rez;
+    }
+
+
+    /**
+     * Gives list back to pool of current thread. List must not be used after
+     * it was released.
+     *
+     * @param list
+     *            list taken with {@link #acquire()}
+     */
+    public static void release(MoveList list) {
+        Pool pool = MoveList.POOL.get();
+        if (pool.size < MoveList.MAX_POOL_SIZE) {
+            pool.lists[pool.size] = list;
+            pool.size++;
+        }
+    }
+
+
+    /**
+     * Appends move number to the end of the list.
+     *
+     * @param moveNumber
+     *            move number
+     */
+    public void add(int moveNumber) {
+        if (this.size == this.moves.length) {
+            this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+        }
+        this.moves[this.size++] = moveNumber;
+    }
+
+
+    /**
+     * @param index
+     *            index of move
+     * @return move number on <code>index</code>
+     */
+    public int get(int index) {
+        if (index >= this.size) { throw new IndexOutOfBoundsException("index = " + index + ", size = " + this.size); }
+        return this.moves[index];
+    }
+
+
+    /**
+     * @return number of moves in list
+     */
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Removes all moves from list.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+
+    /**
+     * @param moveNumber
+     *            move number
+     * @return <code>true</code> if list contains <code>moveNumber</code>,
+     *         otherwise <code>false</code>
+     */
+    public boolean contains(int moveNumber) {
+        for (int x = 0; x < this.size; x++) {
+            if (this.moves[x] == moveNumber) { return true; }
+        }
+        return false;
+    }
+
+
+    /**
+     * Replaces content of this list with content of other list.
+     *
+     * @param other
+     *            list from which moves are copied
+     */
+    public void copyFrom(MoveList other) {
+        if (this.moves.length < other.size) {
+            this.moves = new int[other.moves.length];
+        }
+        System.arraycopy(other.moves, 0, this.moves, 0, other.size);
+        this.size = other.size;
+    }
+
+
+    /**
+     * @return moves in this list converted to {@link Move} objects
+     */
+    public ArrayList<Move> toArrayList() {
+        ArrayList<Move> rez = new ArrayList<Move>(this.size);
+        for (int x = 0; x < this.size; x++) {
+            rez.add(new Move(this.moves[x]));
+        }
+        return rez;
+    }
+
+
+    @Override
+    public String toString() {
+        return this.toArrayList().toString();
+    }
+
+
+    /**
+     * Free lists of single thread.
+     */
+    private static class Pool {
+
+        /** Free lists */
+        private MoveList[] lists = new MoveList[MoveList.MAX_POOL_SIZE];
+
+        /** Number of free lists */
+        private int        size  = 0;
+    }
+
+}
@@ -0,0 +1,370 @@
+package chess.chessboard;
+
+import java.util.TreeMap;
+
+import utils.ChessboardUtils;
+import utils.Utils;
+import exceptions.ChessboardException;
+
+/**
+ * Chess board that next to 0x88 board also keeps one 64-bit mask per piece
+ * type and colour. Attack tests and king move legality are computed from masks
+ * (with only few pieces on the board they reduce to few mask operations), the
+ * rest of the functionality is inherited from {@link Chessboard}.
+ * <p>
+ * Bit with index <code>rank * 8 + file</code> represents the position.
+ *
+ * @author Andraz Kohne
+ */
+public class BitboardChessboard extends Chessboard {
+
+    /** Mask index of white rooks, other white piece types follow */
+    private static final int     WHITE_ROOK         = 0;
+    private static final int     WHITE_KNIGHT       = 1;
+    private static final int     WHITE_BISHOP       = 2;
+    private static final int     WHITE_QUEEN        = 3;
+    private static final int     WHITE_KING         = 4;
+    private static final int     WHITE_PAWN         = 5;
+    /** Black mask indexes are white indexes plus this offset */
+    private static final int     BLACK_OFFSET       = 6;
+
+    /** Maps piece number to index of its mask */
+    private static final int[]   PIECE_MASK_INDEX   = { 0, 1, 2, 3, 4, 2, 1, 0, 5, 5, 5, 5, 5, 5, 5, 5, 11, 11, 11, 11, 11, 11, 11, 11, 6, 7, 8, 9, 10,
+            8, 7, 6                               };
+
+    /** Positions attacked by king from each position */
+    private static final long[]  KING_ATTACKS       = new long[64];
+    /** Positions attacked by knight from each position */
+    private static final long[]  KNIGHT_ATTACKS     = new long[64];
+    /** Positions attacked by white pawn from each position */
+    private static final long[]  WHITE_PAWN_ATTACKS = new long[64];
+    /** Positions attacked by black pawn from each position */
+    private static final long[]  BLACK_PAWN_ATTACKS = new long[64];
+    /**
+     * Rays for each position and direction (directions are in same order as
+     * in {@link SimpleChessboard#QUEEN_DIRECTIONS}).
+     */
+    private static final long[][] RAYS              = new long[8][64];
+    /** Indexes of rook directions in {@link #RAYS} */
+    private static final int[]   ROOK_RAYS          = { 1, 3, 4, 6 };
+    /** Indexes of bishop directions in {@link #RAYS} */
+    private static final int[]   BISHOP_RAYS        = { 0, 2, 5, 7 };
+
+    static {
+        for (int from = 0; from < 128; from++) {
+            if (!ChessboardUtils.isPositionLegal(from)) {
+                continue;
+            }
+            int sq = BitboardChessboard.toSquare(from);
+            for (int delta : SimpleChessboard.KING_DELTAS) {
+                BitboardChessboard.KING_ATTACKS[sq] |= BitboardChessboard.bit(from + delta);
+            }
+            for (int delta : SimpleChessboard.KNIGHT_DELTAS) {
+                BitboardChessboard.KNIGHT_ATTACKS[sq] |= BitboardChessboard.bit(from + delta);
+            }
+            BitboardChessboard.WHITE_PAWN_ATTACKS[sq] = BitboardChessboard.bit(from + 15) | BitboardChessboard.bit(from + 17);
+            BitboardChessboard.BLACK_PAWN_ATTACKS[sq] = BitboardChessboard.bit(from - 15) | BitboardChessboard.bit(from - 17);
+            for (int d = 0; d < SimpleChessboard.QUEEN_DIRECTIONS.length; d++) {
+                int to = from + SimpleChessboard.QUEEN_DIRECTIONS[d];
+                while (ChessboardUtils.isPositionLegal(to)) {
+                    BitboardChessboard.RAYS[d][sq] |= BitboardChessboard.bit(to);
+                    to += SimpleChessboard.QUEEN_DIRECTIONS[d];
+                }
+            }
+        }
+    }
+
+    /** Masks of pieces for each piece type and colour */
+    private long[]               pieceMasks         = new long[12];
+    /** Positions occupied by white pieces */
+    private long                 whiteOccupancy;
+    /** Positions occupied by black pieces */
+    private long                 blackOccupancy;
+
+
+    /**
+     * @param name
+     *            chess board name
+     */
+    public BitboardChessboard(String name) {
+        super(name);
+        this.constructMasksFromBoard();
+    }
+
+
+    /**
+     * Constructor that creates clone of other chessboard.
+     *
+     * @param cb
+     *            chess board that we want to clone.
+     * @param name
+     *            chess board name.
+     */
+    public BitboardChessboard(SimpleChessboard cb, String name) {
+        super(cb, name);
+        this.constructMasksFromBoard();
+    }
+
+
+    /**
+     * Constructor that sets board state from map
+     *
+     * @param name
+     *            chess board name
+     * @param startingPosition
+     *            map that sets pieces on board (keys are positions, values are
+     *            pieces)
+     */
+    public BitboardChessboard(String name, TreeMap<Integer, Integer> startingPosition) {
+        super(name, startingPosition);
+        this.constructMasksFromBoard();
+    }
+
+
+    @Override
+    public IChessboard copy(String name) {
+        return new BitboardChessboard(this, name);
+    }
+
+
+    @Override
+    public void makeAMove(int from, int to) throws ChessboardException {
+        int piece = this.board[from];
+        int targetPiece = this.board[to];
+        super.makeAMove(from, to);
+        this.updateMasks(from, to, piece, targetPiece);
+    }
+
+
+    @Override
+    public void unmakeMove() throws ChessboardException {
+        int moveNumber = this.getLastMoveNumber();
+        super.unmakeMove();
+        this.updateMasks(Utils.getStartingPositionFromMoveNumber(moveNumber), Utils.getTargetPositionFromMoveNumber(moveNumber),
+                Utils.getMovedPieceFromMoveNumber(moveNumber), Utils.getTargetPieceFromMoveNumber(moveNumber));
+    }
+
+
+    @Override
+    public boolean isPositionUnderAttackByWhite(int position, boolean ignoreWhiteKing) throws ChessboardException {
+        if (position < 0 || position > 127)
+            throw new ChessboardException("position = " + position);
+
+        if (!ChessboardUtils.isPositionLegal(position))
+            return true;
+
+        if (this.isSquareAttackedByWhite(BitboardChessboard.toSquare(position), this.whiteOccupancy | this.blackOccupancy)) { return true; }
+
+        return !ignoreWhiteKing && this.isWhiteKingMoveLegal(this.piecePosition[4], position);
+    }
+
+
+    @Override
+    public boolean isPositionUnderAttackByBlack(int position, boolean ignoreBlackKing) throws ChessboardException {
+        if (!ChessboardUtils.isPositionLegal(position))
+            return true;
+
+        if (this.isSquareAttackedByBlack(BitboardChessboard.toSquare(position), this.whiteOccupancy | this.blackOccupancy)) { return true; }
+
+        return !ignoreBlackKing && this.isBlackKingMoveLegal(this.piecePosition[28], position);
+    }
+
+
+    @Override
+    public boolean isWhiteKingMoveLegal(int from, int to) throws ChessboardException {
+        if (from < 0 || from > 127)
+            throw new ChessboardException("from = " + from);
+
+        if (!ChessboardUtils.isPositionLegal(to))
+            return false;
+        if (from == to)
+            return false;
+
+        int sq = BitboardChessboard.toSquare(to);
+        long toBit = 1L << sq;
+        if ((this.whiteOccupancy & toBit) != 0) { return false; }
+        if ((this.kingAttacks(this.piecePosition[28]) & toBit) != 0) { return false; }
+        if ((this.kingAttacks(this.piecePosition[4]) & toBit) == 0) { return false; }
+
+        // white king must not block attacks on position it moves to
+        long occupancy = (this.whiteOccupancy | this.blackOccupancy) & ~this.pieceMasks[BitboardChessboard.WHITE_KING];
+        return !this.isSquareAttackedByBlack(sq, occupancy);
+    }
+
+
+    @Override
+    public boolean isBlackKingMoveLegal(int from, int to) throws ChessboardException {
+        if (from < 0 || from > 127)
+            throw new ChessboardException("from = " + from);
+
+        if (!ChessboardUtils.isPositionLegal(to))
+            return false;
+        if (from == to)
+            return false;
+
+        int sq = BitboardChessboard.toSquare(to);
+        long toBit = 1L << sq;
+        if ((this.blackOccupancy & toBit) != 0) { return false; }
+        if ((this.kingAttacks(this.piecePosition[4]) & toBit) != 0) { return false; }
+        if ((this.kingAttacks(this.piecePosition[28]) & toBit) == 0) { return false; }
+
+        // black king must not block attacks on position it moves to
+        long occupancy = (this.whiteOccupancy | this.blackOccupancy) & ~this.pieceMasks[BitboardChessboard.WHITE_KING + BitboardChessboard.BLACK_OFFSET];
+        return !this.isSquareAttackedByWhite(sq, occupancy);
+    }
+
+
+    /**
+     * Checks if square is attacked by white pieces other than king.
+     *
+     * @param sq
+     *            square index
+     * @param occupancy
+     *            occupied squares that block sliding pieces
+     * @return <code>true</code> if square is attacked
+     */
+    private boolean isSquareAttackedByWhite(int sq, long occupancy) {
+        long[] masks = this.pieceMasks;
+        if ((BitboardChessboard.KNIGHT_ATTACKS[sq] & masks[BitboardChessboard.WHITE_KNIGHT]) != 0) { return true; }
+        if ((BitboardChessboard.BLACK_PAWN_ATTACKS[sq] & masks[BitboardChessboard.WHITE_PAWN]) != 0) { return true; }
+
+        long rookLike = masks[BitboardChessboard.WHITE_ROOK] | masks[BitboardChessboard.WHITE_QUEEN];
+        if (rookLike != 0 && (BitboardChessboard.slidingAttacks(sq, occupancy, BitboardChessboard.ROOK_RAYS) & rookLike) != 0) { return true; }
+
+        long bishopLike = masks[BitboardChessboard.WHITE_BISHOP] | masks[BitboardChessboard.WHITE_QUEEN];
+        return bishopLike != 0 && (BitboardChessboard.slidingAttacks(sq, occupancy, BitboardChessboard.BISHOP_RAYS) & bishopLike) != 0;
+    }
+
+
+    /**
+     * Checks if square is attacked by black pieces other than king.
+     *
+     * @param sq
+     *            square index
+     * @param occupancy
+     *            occupied squares that block sliding pieces
+     * @return <code>true</code> if square is attacked
+     */
+    private boolean isSquareAttackedByBlack(int sq, long occupancy) {
+        long[] masks = this.pieceMasks;
+        int o = BitboardChessboard.BLACK_OFFSET;
+        if ((BitboardChessboard.KNIGHT_ATTACKS[sq] & masks[BitboardChessboard.WHITE_KNIGHT + o]) != 0) { return true; }
+        if ((BitboardChessboard.WHITE_PAWN_ATTACKS[sq] & masks[BitboardChessboard.WHITE_PAWN + o]) != 0) { return true; }
+
+        long rookLike = masks[BitboardChessboard.WHITE_ROOK + o] | masks[BitboardChessboard.WHITE_QUEEN + o];
+        if (rookLike != 0 && (BitboardChessboard.slidingAttacks(sq, occupancy, BitboardChessboard.ROOK_RAYS) & rookLike) != 0) { return true; }
+
+        long bishopLike = masks[BitboardChessboard.WHITE_BISHOP + o] | masks[BitboardChessboard.WHITE_QUEEN + o];
+        return bishopLike != 0 && (BitboardChessboard.slidingAttacks(sq, occupancy, BitboardChessboard.BISHOP_RAYS) & bishopLike) != 0;
+    }
+
+
+    /**
+     * @param position
+     *            0x88 position of king (can be -1)
+     * @return squares attacked by king on <code>position</code>
+     */
+    private long kingAttacks(int position) {
+        if (position == -1) { return 0; }
+        return BitboardChessboard.KING_ATTACKS[BitboardChessboard.toSquare(position)];
+    }
+
+
+    /**
+     * Computes squares attacked by sliding piece. Each ray ends at first
+     * occupied square (that square is included).
+     *
+     * @param sq
+     *            square of sliding piece
+     * @param occupancy
+     *            occupied squares
+     * @param rays
+     *            indexes of directions in {@link #RAYS}
+     * @return attacked squares
+     */
+    private static long slidingAttacks(int sq, long occupancy, int[] rays) {
+        long rez = 0;
+        for (int d : rays) {
+            long ray = BitboardChessboard.RAYS[d][sq];
+            long blockers = ray & occupancy;
+            if (blockers != 0) {
+                // positive directions have indexes 4-7
+                int blocker = d > 3 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+                ray ^= BitboardChessboard.RAYS[d][blocker];
+            }
+            rez |= ray;
+        }
+        return rez;
+    }
+
+
+    /**
+     * Moves piece in masks (same method also undoes the move).
+     */
+    private void updateMasks(int from, int to, int piece, int targetPiece) {
+        long fromTo = BitboardChessboard.bit(from) | BitboardChessboard.bit(to);
+        this.pieceMasks[BitboardChessboard.PIECE_MASK_INDEX[piece]] ^= fromTo;
+        if (ChessboardUtils.isPieceWhite(piece)) {
+            this.whiteOccupancy ^= fromTo;
+        }
+        else {
+            this.blackOccupancy ^= fromTo;
+        }
+
+        if (targetPiece != -1) {
+            long toBit = BitboardChessboard.bit(to);
+            this.pieceMasks[BitboardChessboard.PIECE_MASK_INDEX[targetPiece]] ^= toBit;
+            if (ChessboardUtils.isPieceWhite(targetPiece)) {
+                this.whiteOccupancy ^= toBit;
+            }
+            else {
+                this.blackOccupancy ^= toBit;
+            }
+        }
+    }
+
+
+    /**
+     * Constructs masks from piecePosition field.
+     */
+    private void constructMasksFromBoard() {
+        this.pieceMasks = new long[12];
+        this.whiteOccupancy = 0;
+        this.blackOccupancy = 0;
+        for (int piece = 0; piece < this.piecePosition.length; piece++) {
+            int position = this.piecePosition[piece];
+            if (position != -1) {
+                long positionBit = BitboardChessboard.bit(position);
+                this.pieceMasks[BitboardChessboard.PIECE_MASK_INDEX[piece]] |= positionBit;
+                if (ChessboardUtils.isPieceWhite(piece)) {
+                    this.whiteOccupancy |= positionBit;
+                }
+                else {
+                    this.blackOccupancy |= positionBit;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param position
+     *            legal 0x88 position
+     * @return square index of position
+     */
+    private static int toSquare(int position) {
+        return ((position >> 4) << 3) | (position & 7);
+    }
+
+
+    /**
+     * @param position
+     *            0x88 position
+     * @return mask with only position bit set, or 0 if position is not legal
+     */
+    private static long bit(int position) {
+        if (!ChessboardUtils.isPositionLegal(position)) { return 0; }
+        return 1L << BitboardChessboard.toSquare(position);
+    }
+
+}
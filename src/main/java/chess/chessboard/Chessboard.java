@@ -3,7 +3,6 @@ package chess.chessboard;
 import java.util.ArrayList;
 import java.util.TreeMap;
 
-import mct.MCTNode;
 import moveFinders.BlackFinderStrategy;
 import moveFinders.BlackMoveFinder;
 import moveFinders.WhiteFinderStrategy;
@@ -11,10 +10,17 @@ import moveFinders.WhiteMoveFinder;
 import utils.ChessboardUtils;
 import utils.Utils;
 import chess.Move;
+import chess.MoveList;
 import config.MCTSSetup;
 import exceptions.ChessboardException;
 
-public class Chessboard extends SimpleChessboard implements Cloneable {
+public class Chessboard extends SimpleChessboard implements Cloneable, IChessboard {
+
+    /**
+     * Scratch array for pieces near black king used by heuristics.
+     */
+    private int[] piecesNearBlackKing = new int[8];
+
 
     /**
      * Constructor that should be used with clone method.
@@ -72,33 +78,11 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
         // ////////////////////////////
         this.constructPiecePositionFromBoard();
 
-        this.numberOfTimesBoardStateHasOccured.put(this.hashCode(), 1);
+        this.resetRepetitionHistory();
 
     }
 
 
-    /**
-     * Constructor which transforms MCTNode into chessboard
-     * 
-     * @param name
-     *            name which chess board will have
-     * @param node
-     *            node which we transform into chess board
-     */
-    public Chessboard(String name, MCTNode node) {
-
-        this.name = name;
-        this.board = node.chessboard.cloneBoard();
-        this.isWhitesTurn = node.chessboard.isWhitesTurn;
-        this.log = node.chessboard.log;
-        this.numberOfMovesMade = node.chessboard.numberOfMovesMade;
-        this.numberOfTimesBoardStateHasOccured = node.chessboard.cloneNumberOfTimesBoardStateHasOccured();
-        this.piecePosition = node.chessboard.clonePiecePosition();
-        this.previousHashes = node.chessboard.clonePreviousHashes();
-        this.wasBoardStateRepeatedThreeTimes = node.chessboard.wasBoardStateRepeatedThreeTimes;
-    }
-
-
     /**
      * Constructor that creates clone of other chessboard.
      * 
@@ -112,10 +96,13 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
         this.isWhitesTurn = cb.getIsWhitesTurn();
         this.board = cb.cloneBoard();
         this.numberOfMovesMade = cb.getNumberOfPliesMade();
-        this.numberOfTimesBoardStateHasOccured = cb.cloneNumberOfTimesBoardStateHasOccured();
-        this.previousHashes = cb.clonePreviousHashes();
+        this.previousKeys = cb.clonePreviousKeys();
+        this.firstRecordedPly = cb.firstRecordedPly;
         this.piecePosition = cb.piecePosition.clone();
+        this.zobristKey = cb.getZobristKey();
         this.wasBoardStateRepeatedThreeTimes = cb.wasBoardStateRepeatedThreeTimes;
+        this.eval = cb.eval;
+        this.evalFromWhitesPerspective = cb.evalFromWhitesPerspective;
 
     }
 
@@ -145,18 +132,26 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
 
         // we update piecesPosition
         this.constructPiecePositionFromBoard();
+        this.resetRepetitionHistory();
+
+    }
+
 
+    @Override
+    public IChessboard copy(String name) {
+        return new Chessboard(this, name);
     }
 
 
     /**
      * Gets moves where black king eats white piece
      * 
-     * @return list of moves where black king eats white piece
+     * @param rez
+     *            list to which moves where black king eats white piece are
+     *            added
      * @throws ChessboardException
      */
-    public ArrayList<Move> movesWhereBlackKingEatsWhite() throws ChessboardException {
-        ArrayList<Move> rez = new ArrayList<Move>();
+    public void movesWhereBlackKingEatsWhite(MoveList rez) throws ChessboardException {
         for (int x = 0; x < 16; x++) {
             int piecePosition = this.piecePosition[x];
             if (piecePosition != -1 && this.isPositionAdjacentToBlackKing(piecePosition)) {
@@ -165,12 +160,10 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
                 if (this.isBlackKingMoveLegal(from, to)) {
                     int movedPiece = 28;
                     int targetPiece = x;
-                    Move add = new Move(Utils.constructMoveNumber(from, to, movedPiece, targetPiece));
-                    rez.add(add);
+                    rez.add(Utils.constructMoveNumber(from, to, movedPiece, targetPiece));
                 }
             }
         }
-        return rez;
     }
 
 
@@ -180,18 +173,17 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * 
      * @param blackKingPossibleMoves
      *            posible black king moves
-     * @return moves where black king avoid opposition
+     * @param rez
+     *            list to which moves where black king avoid opposition are
+     *            added
      */
-    public ArrayList<Move> movesWhereBlackKingEvadesOposition(ArrayList<Move> blackKingPossibleMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
+    public void movesWhereBlackKingEvadesOposition(MoveList blackKingPossibleMoves, MoveList rez) {
         for (int x = 0; x < blackKingPossibleMoves.size(); x++) {
-            int to = Utils.getTargetPositionFromMoveNumber(blackKingPossibleMoves.get(x).moveNumber);
+            int to = Utils.getTargetPositionFromMoveNumber(blackKingPossibleMoves.get(x));
             if (!this.willBlackKingBeInOppositionIfItMovesTo(to)) {
-                Move copyMove = new Move(blackKingPossibleMoves.get(x).moveNumber);
-                rez.add(copyMove);
+                rez.add(blackKingPossibleMoves.get(x));
             }
         }
-        return rez;
     }
 
 
@@ -200,23 +192,22 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * 
      * @param whiteMoves
      *            moves that we want to filter.
-     * @return filtered moves.
+     * @param rez
+     *            list to which filtered moves are added
      * @throws Exception
      */
-    public ArrayList<Move> movesWhereWhiteAvoidsMoveRepetition(ArrayList<Move> whiteMoves) throws Exception {
-        ArrayList<Move> rez = new ArrayList<Move>();
-
-        for (Move move : whiteMoves) {
-
-            SimpleChessboard temp = (SimpleChessboard) this.clone();
-            temp.makeAMove(move.moveNumber);
-            Integer hash = temp.hashCode();
-            if (!this.previousHashes.contains(hash)) {
+    public void movesWhereWhiteAvoidsMoveRepetition(MoveList whiteMoves, MoveList rez) throws Exception {
+        for (int x = 0; x < whiteMoves.size(); x++) {
+            int move = whiteMoves.get(x);
+
+            // we try the move on this board and take it back afterwards
+            this.makeAMove(move);
+            long key = this.zobristKey;
+            this.unmakeMove();
+            if (!this.hasStateOccurred(key)) {
                 rez.add(move);
             }
         }
-
-        return rez;
     }
 
 
@@ -226,17 +217,18 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * 
      * @param posMoves
      *            white moves
-     * @return list moves where king doesn't further away from black king
+     * @param rez
+     *            list to which moves where king doesn't further away from
+     *            black king are added
      */
-    public ArrayList<Move> movesWhereWhiteKingMovesCloserOrEqualToBlackKind(ArrayList<Move> posMoves) {
+    public void movesWhereWhiteKingMovesCloserOrEqualToBlackKind(MoveList posMoves, MoveList rez) {
         int distance = this.distanceBewteenKings();
         int blackKingPosition = this.piecePosition[28];
-        ArrayList<Move> rez = new ArrayList<Move>();
         for (int x = 0; x < posMoves.size(); x++) {
-            int movedPiece = Utils.getMovedPieceFromMoveNumber(posMoves.get(x).moveNumber);
+            int movedPiece = Utils.getMovedPieceFromMoveNumber(posMoves.get(x));
 
             if (movedPiece == 4) {
-                int to = Utils.getTargetPositionFromMoveNumber(posMoves.get(x).moveNumber);
+                int to = Utils.getTargetPositionFromMoveNumber(posMoves.get(x));
                 int currDistance = Utils.distanceBetweenPositions(to, blackKingPosition);
                 if (currDistance < distance) {
                     rez.add(posMoves.get(x));
@@ -246,7 +238,6 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
                 rez.add(posMoves.get(x));
             }
         }
-        return rez;
     }
 
 
@@ -257,21 +248,25 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * 
      * @param allWhiteMoves
      *            list of moves to filter
-     * @return list of moves that white must do to avoid loosing a piece
+     * @param rez
+     *            list to which moves that white must do to avoid loosing a
+     *            piece are added
      */
-    public ArrayList<Move> whiteUrgentMoves(ArrayList<Move> allWhiteMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
+    public void whiteUrgentMoves(MoveList allWhiteMoves, MoveList rez) {
+        int numberOfPiecesNearBlackKing = this.piecesNearPosition(this.piecePosition[28], this.piecesNearBlackKing);
 
         // if black king isn't near any pieces, it can't eat them
-        if (this.piecesNearPosition(this.piecePosition[28]).size() == 0) { return rez; }
+        if (numberOfPiecesNearBlackKing == 0) { return; }
 
-        for (Move currMove : allWhiteMoves) {
-            int from = Utils.getStartingPositionFromMoveNumber(currMove.moveNumber);
-            int to = Utils.getTargetPositionFromMoveNumber(currMove.moveNumber);
-            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove.moveNumber);
+        for (int x = 0; x < allWhiteMoves.size(); x++) {
+            int currMove = allWhiteMoves.get(x);
+            int from = Utils.getStartingPositionFromMoveNumber(currMove);
+            int to = Utils.getTargetPositionFromMoveNumber(currMove);
+            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove);
 
             if (movedPiece == 4) {
-                for (int piecesAroundBlackKing : this.piecesNearPosition(this.piecePosition[28])) {
+                for (int y = 0; y < numberOfPiecesNearBlackKing; y++) {
+                    int piecesAroundBlackKing = this.piecesNearBlackKing[y];
                     if (!ChessboardUtils.arePositionsAdjacent(from, this.piecePosition[piecesAroundBlackKing])
                             && ChessboardUtils.arePositionsAdjacent(to, this.piecePosition[piecesAroundBlackKing])) {
                         rez.add(currMove);
@@ -283,8 +278,6 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
                 rez.add(currMove);
             }
         }
-
-        return rez;
     }
 
 
@@ -295,22 +288,23 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * need to be made to avoid being eaten
      * 
      * @param allWhiteMoves
-     * @return list of safe moves
+     * @param rez
+     *            list to which safe moves are added
      */
-    public ArrayList<Move> whiteSafeMoves(ArrayList<Move> allWhiteMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
+    public void whiteSafeMoves(MoveList allWhiteMoves, MoveList rez) {
+        // we get all pieces that could be eaten by black king
+        int numberOfPiecesNearBlackKing = this.piecesNearPosition(this.piecePosition[28], this.piecesNearBlackKing);
 
-        for (Move currMove : allWhiteMoves) {
-            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove.moveNumber);
-            int to = Utils.getTargetPositionFromMoveNumber(currMove.moveNumber);
+        for (int x = 0; x < allWhiteMoves.size(); x++) {
+            int currMove = allWhiteMoves.get(x);
+            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove);
+            int to = Utils.getTargetPositionFromMoveNumber(currMove);
 
             // since black only has black king, white kings move is always safe
             if (movedPiece == 4) {
-                // we get all pieces that could be eaten by black king
-                ArrayList<Integer> piecesThatCantLooseProtection = this.piecesNearPosition(this.piecePosition[28]);
                 boolean addKingMove = true;
-                for (int piece : piecesThatCantLooseProtection) {
-                    int positionOfPiece = this.piecePosition[piece];
+                for (int y = 0; y < numberOfPiecesNearBlackKing; y++) {
+                    int positionOfPiece = this.piecePosition[this.piecesNearBlackKing[y]];
 
                     // if some piece is protected by king, then king shouldn't
                     // withdraw protection
@@ -328,7 +322,6 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
                 rez.add(currMove);
             }
         }
-        return rez;
     }
 
 
@@ -338,12 +331,12 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * 
      * @param allWhiteMoves
      *            list of moves that we want to filter
-     * @return moves where root checks black king if kings are in oppostition,
-     *         if they are not then <code>allWhiteMoves</code> is returned
+     * @param rez
+     *            list to which moves where root checks black king are added
+     *            if kings are in oppostition, if they are not then all
+     *            <code>allWhiteMoves</code> are added
      */
-    public ArrayList<Move> KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(ArrayList<Move> allWhiteMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
-
+    public void KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(MoveList allWhiteMoves, MoveList rez) {
         int blackKingPos = this.piecePosition[28];
         int blackKingRank = Utils.getRankFromPosition(blackKingPos);
         int blackKingFile = Utils.getFileFromPosition(blackKingPos);
@@ -357,9 +350,10 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
         if (this.willBlackKingBeInOppositionIfItMovesTo(blackKingPos)) {
 
             // we filter moves
-            for (Move currMove : allWhiteMoves) {
-                int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove.moveNumber);
-                int to = Utils.getTargetPositionFromMoveNumber(currMove.moveNumber);
+            for (int x = 0; x < allWhiteMoves.size(); x++) {
+                int currMove = allWhiteMoves.get(x);
+                int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove);
+                int to = Utils.getTargetPositionFromMoveNumber(currMove);
 
                 // rook moves
                 if (movedPiece == 0 || movedPiece == 7) {
@@ -373,48 +367,45 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
                     boolean sameRankWhiteKing = rank == whiteKingRank;
 
                     if ((sameRank && !sameRankWhiteKing) || (sameFile && !sameFileWhiteKing)) {
-                        rez.add(new Move(currMove.moveNumber));
+                        rez.add(currMove);
                     }
 
                 }
             }
         }
         else {
-            return allWhiteMoves;
+            rez.copyFrom(allWhiteMoves);
         }
-        return rez;
     }
 
 
-    public ArrayList<Move> KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(ArrayList<Move> allWhiteMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
-        for (Move currMove : allWhiteMoves) {
-            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove.moveNumber);
+    public void KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(MoveList allWhiteMoves, MoveList rez) {
+        for (int x = 0; x < allWhiteMoves.size(); x++) {
+            int currMove = allWhiteMoves.get(x);
+            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove);
             if (movedPiece == 4) {
-                rez.add(new Move(currMove.moveNumber));
+                rez.add(currMove);
             }
             else {
                 int otherBishop = movedPiece == 2 ? 5 : 2;
                 int otherBishopPosition = this.piecePosition[otherBishop];
-                int to = Utils.getTargetPositionFromMoveNumber(currMove.moveNumber);
+                int to = Utils.getTargetPositionFromMoveNumber(currMove);
                 if (otherBishopPosition != -1 && Utils.arePsotionsDiagonallyAdjacent(to, otherBishopPosition)) {
-                    rez.add(new Move(currMove.moveNumber));
+                    rez.add(currMove);
                 }
             }
         }
-        return rez;
     }
 
 
-    public ArrayList<Move> filterMovesToWhiteKingMoves(ArrayList<Move> allwhiteMoves) {
-        ArrayList<Move> rez = new ArrayList<Move>();
-        for (Move currMove : allwhiteMoves) {
-            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove.moveNumber);
+    public void filterMovesToWhiteKingMoves(MoveList allwhiteMoves, MoveList rez) {
+        for (int x = 0; x < allwhiteMoves.size(); x++) {
+            int currMove = allwhiteMoves.get(x);
+            int movedPiece = Utils.getMovedPieceFromMoveNumber(currMove);
             if (movedPiece == 4) {
-                rez.add(new Move(currMove.moveNumber));
+                rez.add(currMove);
             }
         }
-        return rez;
     }
 
 
@@ -426,11 +417,28 @@ public class Chessboard extends SimpleChessboard implements Cloneable {
      * @throws ChessboardException
      */
     public ArrayList<Move> getLegalMoves() throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        this.getLegalMoves(moves);
+        ArrayList<Move> rez = moves.toArrayList();
+        MoveList.release(moves);
+        return rez;
+    }
+
+
+    /**
+     * Adds legal moves with accordance to the {@link WhiteFinderStrategy} and
+     * {@link BlackFinderStrategy} to <code>rez</code>.
+     * 
+     * @param rez
+     *            list to which moves that are valid in simulations are added
+     * @throws ChessboardException
+     */
+    public void getLegalMoves(MoveList rez) throws ChessboardException {
         if (this.isWhitesTurn) {
-            return WhiteMoveFinder.findWhiteMoves(this, MCTSSetup.WHITE_SIMULATION_STRATEGY);
+            WhiteMoveFinder.findWhiteMoves(this, MCTSSetup.WHITE_SIMULATION_STRATEGY, rez);
         }
         else {
-            return BlackMoveFinder.findBlackKingMoves(this, MCTSSetup.BLACK_SIMULATION_STRATEGY);
+            BlackMoveFinder.findBlackKingMoves(this, MCTSSetup.BLACK_SIMULATION_STRATEGY, rez);
         }
     }
 
@@ -0,0 +1,13 @@
+package chess.chessboard;
+
+/**
+ * Describes chess board representations that can be used by MCT algorithm.
+ *
+ * @author Andraz Kohne
+ */
+public enum ChessboardImplementation {
+    /** 0x88 board represented with array of 128 positions */
+    ARRAY_0X88,
+    /** Board represented with one 64-bit mask per piece type and colour */
+    BITBOARD
+}
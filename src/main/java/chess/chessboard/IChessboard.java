@@ -0,0 +1,215 @@
+package chess.chessboard;
+
+import java.util.ArrayList;
+
+import chess.Move;
+import chess.MoveList;
+import exceptions.ChessboardException;
+
+/**
+ * Chess board as it is seen by MCT algorithm and move finders. Implementations
+ * can use different board representations, which one is used is set with
+ * {@link config.MCTSSetup#CHESSBOARD_IMPLEMENTATION}.
+ *
+ * @author Andraz Kohne
+ */
+public interface IChessboard {
+
+    /**
+     * Creates copy of this chess board (with same representation).
+     *
+     * @param name
+     *            name of the copy
+     * @return copy of this chess board
+     */
+    public IChessboard copy(String name);
+
+
+    /**
+     * @return chess board in FEN notation
+     */
+    public String boardToFen();
+
+
+    /**
+     * @return <code>true</code> if it's whites turn, otherwise
+     *         <code>false</code>
+     */
+    public boolean getIsWhitesTurn();
+
+
+    /**
+     * @return zobrist key of current chess board state
+     */
+    public long getZobristKey();
+
+
+    /**
+     * @return number of plies made on this chess board
+     */
+    public int getNumberOfPliesMade();
+
+
+    /**
+     * Builds move number from string (ie. a2b3).
+     *
+     * @param move
+     *            move in string
+     * @return move number
+     */
+    public int constructMoveNumberFromString(String move);
+
+
+    /**
+     * Makes a move.
+     *
+     * @param moveNumber
+     *            move number
+     * @throws ChessboardException
+     */
+    public void makeAMove(int moveNumber) throws ChessboardException;
+
+
+    /**
+     * Undoes last move made on this chess board.
+     *
+     * @throws ChessboardException
+     */
+    public void unmakeMove() throws ChessboardException;
+
+
+    /**
+     * Undoes moves until <code>numberOfPlies</code> plies remain made.
+     *
+     * @param numberOfPlies
+     *            number of plies that should remain made
+     * @throws ChessboardException
+     */
+    public void unmakeMovesToPly(int numberOfPlies) throws ChessboardException;
+
+
+    /**
+     * @return all legal white moves
+     * @throws ChessboardException
+     */
+    public ArrayList<Move> getAllLegalWhiteMoves() throws ChessboardException;
+
+
+    /**
+     * @return all legal black king moves
+     * @throws ChessboardException
+     */
+    public ArrayList<Move> getAllLegalBlackKingMoves() throws ChessboardException;
+
+
+    /**
+     * Adds all legal white moves to <code>rez</code>.
+     *
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    public void generateAllLegalWhiteMoves(MoveList rez) throws ChessboardException;
+
+
+    /**
+     * Adds all legal black king moves to <code>rez</code>.
+     *
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    public void generateAllLegalBlackKingMoves(MoveList rez) throws ChessboardException;
+
+
+    /**
+     * @return moves that are valid in simulations
+     * @throws ChessboardException
+     */
+    public ArrayList<Move> getLegalMoves() throws ChessboardException;
+
+
+    /**
+     * Adds moves that are valid in simulations to <code>rez</code>.
+     *
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    public void getLegalMoves(MoveList rez) throws ChessboardException;
+
+
+    /**
+     * @return chess board state
+     * @throws ChessboardException
+     */
+    public ChessboardEvalState evaluateChessboard() throws ChessboardException;
+
+
+    /**
+     * @return chess board state from whites perspective
+     */
+    public ChessboardEvalState evaluateChessboardFromWhitesPerpective();
+
+
+    /**
+     * @param position
+     *            position
+     * @param ignoreWhiteKing
+     *            if <code>true</code> white king is not considered as attacker
+     * @return <code>true</code> if position is attacked by white
+     * @throws ChessboardException
+     */
+    public boolean isPositionUnderAttackByWhite(int position, boolean ignoreWhiteKing) throws ChessboardException;
+
+
+    /**
+     * @param position
+     *            position
+     * @param ignoreBlackKing
+     *            if <code>true</code> black king is not considered as attacker
+     * @return <code>true</code> if position is attacked by black
+     * @throws ChessboardException
+     */
+    public boolean isPositionUnderAttackByBlack(int position, boolean ignoreBlackKing) throws ChessboardException;
+
+
+    /**
+     * @return distance between kings
+     */
+    public int distanceBewteenKings();
+
+
+    /**
+     * @return how many times has current chess board state appeared
+     */
+    public int howManyTimeHasCurrentStateAppeared();
+
+
+    public void movesWhereBlackKingEatsWhite(MoveList rez) throws ChessboardException;
+
+
+    public void movesWhereBlackKingEvadesOposition(MoveList blackKingPossibleMoves, MoveList rez);
+
+
+    public void movesWhereWhiteAvoidsMoveRepetition(MoveList whiteMoves, MoveList rez) throws Exception;
+
+
+    public void movesWhereWhiteKingMovesCloserOrEqualToBlackKind(MoveList posMoves, MoveList rez);
+
+
+    public void whiteUrgentMoves(MoveList allWhiteMoves, MoveList rez);
+
+
+    public void whiteSafeMoves(MoveList allWhiteMoves, MoveList rez);
+
+
+    public void KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(MoveList allWhiteMoves, MoveList rez);
+
+
+    public void KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(MoveList allWhiteMoves, MoveList rez);
+
+
+    public void filterMovesToWhiteKingMoves(MoveList allwhiteMoves, MoveList rez);
+
+}
@@ -1,12 +1,14 @@
 package chess.chessboard;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import utils.ChessboardUtils;
 import utils.Utils;
 import chess.Move;
+import chess.MoveList;
 import config.MCTSSetup;
 import exceptions.ChessboardException;
 
@@ -17,6 +19,58 @@ public class SimpleChessboard implements Cloneable {
      * repetition for pat.
      */
     protected static final int          NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT = 20;
+    /**
+     * 0x88 position differences of king moves (in ascending order).
+     */
+    protected static final int[]        KING_DELTAS                                              = { -17, -16, -15, -1, 1, 15, 16, 17 };
+    /**
+     * 0x88 position differences of knight moves (in ascending order).
+     */
+    protected static final int[]        KNIGHT_DELTAS                                            = { -33, -31, -18, -14, 14, 18, 31, 33 };
+    /**
+     * 0x88 directions in which rook slides.
+     */
+    protected static final int[]        ROOK_DIRECTIONS                                          = { -16, -1, 1, 16 };
+    /**
+     * 0x88 directions in which bishop slides.
+     */
+    protected static final int[]        BISHOP_DIRECTIONS                                        = { -17, -15, 15, 17 };
+    /**
+     * 0x88 directions in which queen slides.
+     */
+    protected static final int[]        QUEEN_DIRECTIONS                                         = { -17, -16, -15, -1, 1, 15, 16, 17 };
+    /**
+     * 0x88 position differences of white pawn moves (in ascending order).
+     */
+    protected static final int[]        WHITE_PAWN_DELTAS                                        = { 15, 16, 17 };
+    /**
+     * 0x88 position differences of black pawn moves (in ascending order).
+     */
+    protected static final int[]        BLACK_PAWN_DELTAS                                        = { -17, -16, -15 };
+    /**
+     * Offsets (in both directions) of positions that are near some position.
+     */
+    private static final int[]          NEAR_POSITION_OFFSETS                                    = { 1, 15, 16, 17 };
+    /**
+     * Zobrist keys for every piece on every position. Seed is fixed, so keys
+     * are same in every run.
+     */
+    private static final long[][]       ZOBRIST_PIECE_KEYS                                       = new long[32][128];
+    /**
+     * Zobrist key that is added when white is on the move.
+     */
+    private static final long           ZOBRIST_WHITES_TURN_KEY;
+
+    static {
+        Random zobristRandom = new Random(0x88L);
+        for (int piece = 0; piece < 32; piece++) {
+            for (int position = 0; position < 128; position++) {
+                SimpleChessboard.ZOBRIST_PIECE_KEYS[piece][position] = zobristRandom.nextLong();
+            }
+        }
+        ZOBRIST_WHITES_TURN_KEY = zobristRandom.nextLong();
+    }
+
     /**
      * Holds piece number for board location.
      */
@@ -29,15 +83,25 @@ public class SimpleChessboard implements Cloneable {
      * Tells if it currently whites move.
      */
     protected boolean                   isWhitesTurn                                             = true;
+    /**
+     * Zobrist key of current chess board state. It's updated incrementally
+     * with every move.
+     */
+    protected long                      zobristKey;
     /** Number of moves that were made */
     protected int                       numberOfMovesMade                                        = 0;
     /**
-     * This is used for keeping track how many times some chess board state has
-     * occurred. Key is hash code of chess board and values is how may times
-     * that has has occurred.
+     * Ring buffer of zobrist keys of last chess board states (current state
+     * included). Key of state after <code>n</code> plies is stored at index
+     * <code>n % NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT</code>
+     * .
+     */
+    protected long[]                    previousKeys                                             = new long[SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT];
+    /**
+     * Ply number of oldest state that was written to <code>previousKeys</code>
+     * .
      */
-    protected HashMap<Integer, Integer> numberOfTimesBoardStateHasOccured                        = new HashMap<Integer, Integer>(
-                                                                                                         SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT + 1);
+    protected int                       firstRecordedPly                                         = 0;
     /**
      * Chess board name.
      */
@@ -47,14 +111,57 @@ public class SimpleChessboard implements Cloneable {
      */
     protected boolean                   wasBoardStateRepeatedThreeTimes                          = false;
     /**
-     * List of chess board hashes that have already occured.
+     * Cached result of {@link #evaluateChessboard()} for current state,
+     * <code>null</code> if it wasn't computed yet.
+     */
+    protected ChessboardEvalState       eval                                                     = null;
+    /**
+     * Cached result of {@link #evaluateChessboardFromWhitesPerpective()} for
+     * current state, <code>null</code> if it wasn't computed yet.
      */
-    protected ArrayList<Integer>        previousHashes                                           = new ArrayList<Integer>();
+    protected ChessboardEvalState       evalFromWhitesPerspective                                = null;
     /**
      * Logger
      */
     protected Logger                    log                                                      = Logger.getLogger("MCTS.Chessboard");
 
+    /**
+     * Initial capacity of undo stack.
+     */
+    private static final int            UNDO_STACK_INITIAL_SIZE                                  = 32;
+    /**
+     * Move numbers of moves that can be undone with {@link #unmakeMove()}.
+     */
+    private int[]                       undoMoveNumbers                                          = new int[SimpleChessboard.UNDO_STACK_INITIAL_SIZE];
+    /**
+     * Keys that were overwritten in <code>previousKeys</code> when move was
+     * made.
+     */
+    private long[]                      undoOverwrittenKeys                                      = new long[SimpleChessboard.UNDO_STACK_INITIAL_SIZE];
+    /**
+     * Values of <code>wasBoardStateRepeatedThreeTimes</code> before move was
+     * made.
+     */
+    private boolean[]                   undoWasBoardStateRepeatedThreeTimes                      = new boolean[SimpleChessboard.UNDO_STACK_INITIAL_SIZE];
+    /**
+     * Cached values of <code>eval</code> before move was made.
+     */
+    private ChessboardEvalState[]       undoEval                                                 = new ChessboardEvalState[SimpleChessboard.UNDO_STACK_INITIAL_SIZE];
+    /**
+     * Cached values of <code>evalFromWhitesPerspective</code> before move was
+     * made.
+     */
+    private ChessboardEvalState[]       undoEvalFromWhitesPerspective                            = new ChessboardEvalState[SimpleChessboard.UNDO_STACK_INITIAL_SIZE];
+    /**
+     * Number of moves on undo stack.
+     */
+    private int                         undoStackSize                                            = 0;
+    /**
+     * Scratch array for target positions of single piece used by move
+     * generator (piece can have at most 27 target positions).
+     */
+    private int[]                       targetPositions                                          = new int[27];
+
 
     /**
      * Gets fen notation for chess board.
@@ -177,25 +284,12 @@ public class SimpleChessboard implements Cloneable {
 
 
     /**
-     * Gets clone of list that holds previous hashes.
+     * Gets clone of ring buffer that holds keys of previous states.
      * 
-     * @return list of hashes that have already occured
+     * @return keys of previous states
      */
-    @SuppressWarnings("unchecked")
-    public ArrayList<Integer> clonePreviousHashes() {
-        return (ArrayList<Integer>) this.previousHashes.clone();
-    }
-
-
-    /**
-     * Gets clone of map that map hashed to number of their occureances.
-     * 
-     * @return map which for every hash (key) tells how many times that hash has
-     *         occured.
-     */
-    @SuppressWarnings("unchecked")
-    public HashMap<Integer, Integer> cloneNumberOfTimesBoardStateHasOccured() {
-        return (HashMap<Integer, Integer>) this.numberOfTimesBoardStateHasOccured.clone();
+    public long[] clonePreviousKeys() {
+        return this.previousKeys.clone();
     }
 
 
@@ -241,7 +335,7 @@ public class SimpleChessboard implements Cloneable {
     /**
      * This move is only used from Chessboard.makeAMove(int). It moves piece
      * from <code>from</code> position to <code>to</code> position. It also
-     * fills numberOfTimesBoardStateHasOccured. And sets flag if this chess
+     * records new state in previousKeys. And sets flag if this chess
      * board state has occurred at least three times.
      * 
      * @param from
@@ -258,33 +352,24 @@ public class SimpleChessboard implements Cloneable {
             this.piecePosition[targetPiece] = -1;
         }
 
+        // remember everything that is needed to undo this move
+        this.pushUndoEntry(Utils.constructMoveNumber(from, to, piece, targetPiece));
+
         this.board[from] = -1;
         this.board[to] = piece;
         this.piecePosition[piece] = to;
         this.numberOfMovesMade++;
+        this.updateZobristKey(from, to, piece, targetPiece);
 
-        int hash = this.hashCode();
-        this.previousHashes.add(hash);
+        // for optimization purposes we limit number of states that we check,
+        // so new key overwrites the oldest one
+        int index = this.numberOfMovesMade % SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT;
+        this.undoOverwrittenKeys[this.undoStackSize - 1] = this.previousKeys[index];
+        this.previousKeys[index] = this.zobristKey;
 
-        // for optimization purposes we limit number of states that we check
-        if (this.previousHashes.size() > SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT) {
-            this.numberOfTimesBoardStateHasOccured.remove(this.previousHashes.get(0));
-            this.previousHashes.remove(0);
+        if (this.howManyTimeHasCurrentStateAppeared() > 2) {
+            this.wasBoardStateRepeatedThreeTimes = true;
         }
-
-        if (this.numberOfTimesBoardStateHasOccured.containsKey(hash)) {
-            // we increase number of times that state has appeared.
-            int stateAppeared = this.numberOfTimesBoardStateHasOccured.get(hash) + 1;
-            this.numberOfTimesBoardStateHasOccured.put(hash, stateAppeared);
-
-            if (stateAppeared > 2) {
-                this.wasBoardStateRepeatedThreeTimes = true;
-            }
-        }
-        else {
-            this.numberOfTimesBoardStateHasOccured.put(hash, 1);
-        }
-
     }
 
 
@@ -316,6 +401,97 @@ public class SimpleChessboard implements Cloneable {
     }
 
 
+    /**
+     * Undoes last move that was made on this chess board. Only moves that were
+     * made on this instance can be undone (copies of chess board start with
+     * empty undo stack).
+     *
+     * @throws ChessboardException
+     *             if there is no move to undo
+     */
+    public void unmakeMove() throws ChessboardException {
+        if (this.undoStackSize == 0) { throw new ChessboardException("ni poteze, ki bi jo lahko razveljavili"); }
+
+        this.undoStackSize--;
+        int moveNumber = this.undoMoveNumbers[this.undoStackSize];
+        int from = Utils.getStartingPositionFromMoveNumber(moveNumber);
+        int to = Utils.getTargetPositionFromMoveNumber(moveNumber);
+        int piece = Utils.getMovedPieceFromMoveNumber(moveNumber);
+        int targetPiece = Utils.getTargetPieceFromMoveNumber(moveNumber);
+
+        int index = this.numberOfMovesMade % SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT;
+        this.previousKeys[index] = this.undoOverwrittenKeys[this.undoStackSize];
+        this.wasBoardStateRepeatedThreeTimes = this.undoWasBoardStateRepeatedThreeTimes[this.undoStackSize];
+        this.eval = this.undoEval[this.undoStackSize];
+        this.evalFromWhitesPerspective = this.undoEvalFromWhitesPerspective[this.undoStackSize];
+
+        this.board[from] = piece;
+        this.board[to] = targetPiece;
+        this.piecePosition[piece] = from;
+        if (targetPiece != -1) {
+            this.piecePosition[targetPiece] = to;
+        }
+        this.updateZobristKey(from, to, piece, targetPiece);
+
+        this.numberOfMovesMade--;
+        this.isWhitesTurn = !this.isWhitesTurn;
+    }
+
+
+    /**
+     * Undoes moves until chess board is in state it was after
+     * <code>numberOfPlies</code> plies were made.
+     *
+     * @param numberOfPlies
+     *            number of plies that should remain made
+     * @throws ChessboardException
+     *             if there are not enough moves on undo stack
+     */
+    public void unmakeMovesToPly(int numberOfPlies) throws ChessboardException {
+        while (this.numberOfMovesMade > numberOfPlies) {
+            this.unmakeMove();
+        }
+    }
+
+
+    /**
+     * @return move number of last move that can be undone, or -1 if there is
+     *         no such move
+     */
+    protected int getLastMoveNumber() {
+        if (this.undoStackSize == 0) { return -1; }
+        return this.undoMoveNumbers[this.undoStackSize - 1];
+    }
+
+
+    /**
+     * Puts new entry on undo stack.
+     *
+     * @param moveNumber
+     *            move that is about to be made
+     */
+    private void pushUndoEntry(int moveNumber) {
+        if (this.undoStackSize == this.undoMoveNumbers.length) {
+            int newSize = this.undoMoveNumbers.length * 2;
+            this.undoMoveNumbers = Arrays.copyOf(this.undoMoveNumbers, newSize);
+            this.undoOverwrittenKeys = Arrays.copyOf(this.undoOverwrittenKeys, newSize);
+            this.undoWasBoardStateRepeatedThreeTimes = Arrays.copyOf(this.undoWasBoardStateRepeatedThreeTimes, newSize);
+            this.undoEval = Arrays.copyOf(this.undoEval, newSize);
+            this.undoEvalFromWhitesPerspective = Arrays.copyOf(this.undoEvalFromWhitesPerspective, newSize);
+        }
+
+        this.undoMoveNumbers[this.undoStackSize] = moveNumber;
+        this.undoWasBoardStateRepeatedThreeTimes[this.undoStackSize] = this.wasBoardStateRepeatedThreeTimes;
+        this.undoEval[this.undoStackSize] = this.eval;
+        this.undoEvalFromWhitesPerspective[this.undoStackSize] = this.evalFromWhitesPerspective;
+        this.undoStackSize++;
+
+        // evaluation of new state isn't known yet
+        this.eval = null;
+        this.evalFromWhitesPerspective = null;
+    }
+
+
     /**
      * generira vse mozne poteze za vse bele figure
      * 
@@ -323,24 +499,31 @@ public class SimpleChessboard implements Cloneable {
      * @throws ChessboardException
      */
     public ArrayList<Move> getAllLegalWhiteMoves() throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        this.generateAllLegalWhiteMoves(moves);
+        ArrayList<Move> rez = moves.toArrayList();
+        MoveList.release(moves);
+        return rez;
+    }
 
-        ArrayList<Move> rez = new ArrayList<Move>();
+
+    /**
+     * Adds all legal white moves to <code>rez</code>.
+     * 
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    public void generateAllLegalWhiteMoves(MoveList rez) throws ChessboardException {
         for (int x = 0; x < 16; x++) {
             int from = this.piecePosition[x];
 
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isWhiteMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
-
-        return rez;
     }
 
 
@@ -357,12 +540,7 @@ public class SimpleChessboard implements Cloneable {
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isBlackMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
 
@@ -383,12 +561,7 @@ public class SimpleChessboard implements Cloneable {
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isWhitePawnMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -408,12 +581,7 @@ public class SimpleChessboard implements Cloneable {
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isBlackPawnMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -435,12 +603,7 @@ public class SimpleChessboard implements Cloneable {
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isWhiteRookMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -462,12 +625,7 @@ public class SimpleChessboard implements Cloneable {
             if (from != -1) {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
-                for (int y = 0; y < 128; y++) {
-                    if (this.isBlackRookMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -490,12 +648,7 @@ public class SimpleChessboard implements Cloneable {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
 
-                for (int y = 0; y < 128; y++) {
-                    if (this.isWhiteKnightMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -518,12 +671,7 @@ public class SimpleChessboard implements Cloneable {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
 
-                for (int y = 0; y < 128; y++) {
-                    if (this.isBlackKnightMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -546,12 +694,7 @@ public class SimpleChessboard implements Cloneable {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
 
-                for (int y = 0; y < 128; y++) {
-                    if (this.isWhiteBishopMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -574,12 +717,7 @@ public class SimpleChessboard implements Cloneable {
                 if (!ChessboardUtils.isPositionLegal(from))
                     throw new ChessboardException("figura " + x + " je na poziciji " + from);
 
-                for (int y = 0; y < 128; y++) {
-                    if (this.isBlackBishopMoveLegal(from, y)) {
-                        int t = this.constructMoveNumber(from, y);
-                        rez.add(new Move(t));
-                    }
-                }
+                this.addLegalMovesOfPiece(from, rez);
             }
         }
         return rez;
@@ -600,12 +738,7 @@ public class SimpleChessboard implements Cloneable {
             if (!ChessboardUtils.isPositionLegal(from))
                 throw new ChessboardException("figura " + 3 + " je na poziciji " + from);
 
-            for (int y = 0; y < 128; y++) {
-                if (this.isWhiteQueenMoveLegal(from, y)) {
-                    int t = this.constructMoveNumber(from, y);
-                    rez.add(new Move(t));
-                }
-            }
+            this.addLegalMovesOfPiece(from, rez);
         }
         return rez;
     }
@@ -625,12 +758,7 @@ public class SimpleChessboard implements Cloneable {
             if (!ChessboardUtils.isPositionLegal(from))
                 throw new ChessboardException("figura " + 27 + " je na poziciji " + from);
 
-            for (int y = 0; y < 128; y++) {
-                if (this.isBlackQueenMoveLegal(from, y)) {
-                    int t = this.constructMoveNumber(from, y);
-                    rez.add(new Move(t));
-                }
-            }
+            this.addLegalMovesOfPiece(from, rez);
         }
         return rez;
     }
@@ -650,12 +778,7 @@ public class SimpleChessboard implements Cloneable {
             if (!ChessboardUtils.isPositionLegal(from))
                 throw new ChessboardException("figura " + 4 + " je na poziciji " + from);
 
-            for (int y = 0; y < 128; y++) {
-                if (this.isWhiteKingMoveLegal(from, y)) {
-                    int t = this.constructMoveNumber(from, y);
-                    rez.add(new Move(t));
-                }
-            }
+            this.addLegalMovesOfPiece(from, rez);
         }
         return rez;
     }
@@ -668,62 +791,123 @@ public class SimpleChessboard implements Cloneable {
      * @throws ChessboardException
      */
     public ArrayList<Move> getAllLegalBlackKingMoves() throws ChessboardException {
-        ArrayList<Move> rez = new ArrayList<Move>();
+        MoveList moves = MoveList.acquire();
+        this.generateAllLegalBlackKingMoves(moves);
+        ArrayList<Move> rez = moves.toArrayList();
+        MoveList.release(moves);
+        return rez;
+    }
+
+
+    /**
+     * Adds all legal black king moves to <code>rez</code>.
+     * 
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    public void generateAllLegalBlackKingMoves(MoveList rez) throws ChessboardException {
         int from = this.piecePosition[28];
 
         if (from != -1) {
             if (!ChessboardUtils.isPositionLegal(from))
                 throw new ChessboardException("figura " + 28 + " je na poziciji " + from);
 
-            for (int y = 0; y < 128; y++) {
-                if (this.isBlackKingMoveLegal(from, y)) {
-                    int t = this.constructMoveNumber(from, y);
-                    rez.add(new Move(t));
-                }
-            }
+            this.addLegalMovesOfPiece(from, rez);
         }
+    }
 
+
+    /**
+     * @return number of legal black king moves
+     * @throws ChessboardException
+     */
+    private int countLegalBlackKingMoves() throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        this.generateAllLegalBlackKingMoves(moves);
+        int rez = moves.size();
+        MoveList.release(moves);
         return rez;
     }
 
 
     /**
      * Return chess board evaluation that is that white player is interested in.
+     * Evaluation is computed only once per chess board state.
      * 
      * @return evaluation of chess board state
      */
     public ChessboardEvalState evaluateChessboardFromWhitesPerpective() {
-        try {
-            if (this.isBlackKingMated()) { return ChessboardEvalState.BLACK_KING_MATED; }
-            if (this.isBlackKingPatted()) { return ChessboardEvalState.PAT; }
-            if (this.isAnyWhiteFigureUnderAttackFromBlack() && !this.isWhitesTurn) { return ChessboardEvalState.WHITE_PIECE_IN_DANGER; }
-            if (this.numberOfMovesMade >= MCTSSetup.MAX_DEPTH) { return ChessboardEvalState.TOO_MANY_MOVES_MADE; }
-            if (this.wasBoardStateRepeatedThreeTimes) { return ChessboardEvalState.DRAW; }
-        }
-        catch (ChessboardException e) {
-            e.printStackTrace();
-            System.err.println("UNEXPECTED STATE OF CHESSBOARD");
-            System.exit(1);
+        if (this.evalFromWhitesPerspective == null) {
+            try {
+                this.computeEvaluations();
+            }
+            catch (ChessboardException e) {
+                e.printStackTrace();
+                System.err.println("UNEXPECTED STATE OF CHESSBOARD");
+                System.exit(1);
+            }
         }
 
-        return ChessboardEvalState.NORMAl;
+        return this.evalFromWhitesPerspective;
     }
 
 
     /**
-     * Evaluates chess board state.
+     * Evaluates chess board state. Evaluation is computed only once per chess
+     * board state.
      * 
      * @return evaluation of current chess board state
      * @throws ChessboardException
      */
     public ChessboardEvalState evaluateChessboard() throws ChessboardException {
-        if (this.isBlackKingMated()) { return ChessboardEvalState.BLACK_KING_MATED; }
+        if (this.eval == null) {
+            this.computeEvaluations();
+        }
+
+        return this.eval;
+    }
 
-        if (this.isBlackKingPatted()) { return ChessboardEvalState.PAT; }
-        if (this.wasBoardStateRepeatedThreeTimes) { return ChessboardEvalState.DRAW; }
-        if (this.numberOfMovesMade >= MCTSSetup.MAX_DEPTH) { return ChessboardEvalState.TOO_MANY_MOVES_MADE; }
 
-        return ChessboardEvalState.NORMAl;
+    /**
+     * Computes both evaluations of current chess board state in one pass.
+     * Black king mobility and check status are computed only once, white
+     * pieces in danger are only looked for when black is on the move.
+     * 
+     * @throws ChessboardException
+     */
+    private void computeEvaluations() throws ChessboardException {
+        boolean tooManyMovesMade = this.numberOfMovesMade >= MCTSSetup.MAX_DEPTH;
+
+        if (this.countLegalBlackKingMoves() == 0) {
+            // game is over regardless of perspective
+            this.eval = this.isBlackKingChecked() ? ChessboardEvalState.BLACK_KING_MATED : ChessboardEvalState.PAT;
+            this.evalFromWhitesPerspective = this.eval;
+            return;
+        }
+
+        if (this.wasBoardStateRepeatedThreeTimes) {
+            this.eval = ChessboardEvalState.DRAW;
+        }
+        else if (tooManyMovesMade) {
+            this.eval = ChessboardEvalState.TOO_MANY_MOVES_MADE;
+        }
+        else {
+            this.eval = ChessboardEvalState.NORMAl;
+        }
+
+        if (!this.isWhitesTurn && this.isAnyWhiteFigureUnderAttackFromBlack()) {
+            this.evalFromWhitesPerspective = ChessboardEvalState.WHITE_PIECE_IN_DANGER;
+        }
+        else if (tooManyMovesMade) {
+            this.evalFromWhitesPerspective = ChessboardEvalState.TOO_MANY_MOVES_MADE;
+        }
+        else if (this.wasBoardStateRepeatedThreeTimes) {
+            this.evalFromWhitesPerspective = ChessboardEvalState.DRAW;
+        }
+        else {
+            this.evalFromWhitesPerspective = ChessboardEvalState.NORMAl;
+        }
     }
 
 
@@ -742,14 +926,7 @@ public class SimpleChessboard implements Cloneable {
 
 
     public boolean isBlackKingMated() throws ChessboardException {
-        int numberOfBlackKingPossibleMoves = this.getAllLegalBlackKingMoves().size();
-
-        if (numberOfBlackKingPossibleMoves == 0) {
-            return this.isBlackKingChecked();
-        }
-        else {
-            return false;
-        }
+        return this.evaluateChessboard() == ChessboardEvalState.BLACK_KING_MATED;
     }
 
 
@@ -761,14 +938,7 @@ public class SimpleChessboard implements Cloneable {
      * @throws ChessboardException
      */
     public boolean isBlackKingPatted() throws ChessboardException {
-        int numberOfPossibleBlackKingMoves = this.getAllLegalBlackKingMoves().size();
-
-        if (numberOfPossibleBlackKingMoves == 0) {
-            return !this.isBlackKingChecked();
-        }
-        else {
-            return false;
-        }
+        return this.evaluateChessboard() == ChessboardEvalState.PAT;
     }
 
 
@@ -1713,47 +1883,85 @@ public class SimpleChessboard implements Cloneable {
      *         should not be call immediately after chessboard initialization.
      */
     public int howManyTimeHasCurrentStateAppeared() {
-        return this.numberOfTimesBoardStateHasOccured.get(this.hashCode());
+        int count = 0;
+        for (int ply = this.numberOfMovesMade; ply >= this.getOldestRecordedPly(); ply -= 2) {
+            if (this.previousKeys[ply % SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT] == this.zobristKey) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Checks if state with given key is among last recorded states.
+     * 
+     * @param key
+     *            zobrist key of state
+     * @return <code>true</code> if state with <code>key</code> has already
+     *         occurred, otherwise <code>false</code>
+     */
+    public boolean hasStateOccurred(long key) {
+        for (int ply = this.numberOfMovesMade; ply >= this.getOldestRecordedPly(); ply--) {
+            if (this.previousKeys[ply % SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT] == key) { return true; }
+        }
+        return false;
+    }
+
+
+    /**
+     * Records current state as the only state in <code>previousKeys</code>.
+     */
+    protected void resetRepetitionHistory() {
+        this.firstRecordedPly = this.numberOfMovesMade;
+        this.previousKeys[this.numberOfMovesMade % SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT] = this.zobristKey;
+    }
+
+
+    /**
+     * @return ply number of oldest state that is still in
+     *         <code>previousKeys</code>
+     */
+    private int getOldestRecordedPly() {
+        return Math.max(this.firstRecordedPly, this.numberOfMovesMade - SimpleChessboard.NUMBER_OF_PREVIOUS_MOVES_WE_CHECK_FOR_REPEATED_STATE_PAT + 1);
     }
 
 
     /**
-     * Calculates hashcode of chessboard. Each chessboard state has its own
-     * hashcode. WARNING: it only works correctly as long as there are no more
-     * than 4 pieces on the board. It also only distnguish between chessboards
-     * with sam pieces on the board.
+     * Gets zobrist key of current chess board state. Two chess boards with same
+     * pieces on same positions and same player on the move have same key.
+     * 
+     * @return zobrist key of chess board
+     */
+    public long getZobristKey() {
+        return this.zobristKey;
+    }
+
+
+    /**
+     * Calculates hashcode of chessboard from its zobrist key.
      * 
      * @return chessboard hashcode
      */
     @Override
     public int hashCode() {
-        int result = 0;
-        int counter = 0;
-        for (int pos : this.piecePosition) {
-            if (pos != -1) {
-                int offset = counter * 8;
-                int shiftedPos = pos & 0xFF;
-                shiftedPos = shiftedPos << offset;
-                result = result | shiftedPos;
-                counter++;
-            }
-        }
-
-        return result;
+        return (int) (this.zobristKey ^ (this.zobristKey >>> 32));
     }
 
 
-    @SuppressWarnings("unchecked")
     public Object clone() {
         Chessboard result = new Chessboard();
         result.name = this.name + " clone";
         result.board = this.board.clone();
         result.isWhitesTurn = this.isWhitesTurn;
         result.numberOfMovesMade = this.numberOfMovesMade;
-        result.numberOfTimesBoardStateHasOccured = new HashMap<Integer, Integer>(this.numberOfMovesMade);
         result.piecePosition = this.piecePosition.clone();
-        result.previousHashes = (ArrayList<Integer>) this.previousHashes.clone();
+        result.zobristKey = this.zobristKey;
+        result.previousKeys = this.previousKeys.clone();
+        result.firstRecordedPly = this.firstRecordedPly;
         result.wasBoardStateRepeatedThreeTimes = this.wasBoardStateRepeatedThreeTimes;
+        result.eval = this.eval;
+        result.evalFromWhitesPerspective = this.evalFromWhitesPerspective;
 
         return result;
     }
@@ -1768,20 +1976,41 @@ public class SimpleChessboard implements Cloneable {
      * @return list of all pieces that are near position
      */
     protected ArrayList<Integer> piecesNearPosition(int position) {
-        ArrayList<Integer> rez = new ArrayList<Integer>();
-        int[] diff = { 1, 15, 16, 17 };
+        int[] pieces = new int[8];
+        int numberOfPieces = this.piecesNearPosition(position, pieces);
+        ArrayList<Integer> rez = new ArrayList<Integer>(numberOfPieces);
+        for (int x = 0; x < numberOfPieces; x++) {
+            rez.add(pieces[x]);
+        }
+        return rez;
+    }
+
+
+    /**
+     * Writes all pieces that are near selected position into
+     * <code>rez</code>.
+     * 
+     * @param position
+     *            selected position
+     * @param rez
+     *            array of length at least 8 into which pieces are written
+     * @return number of pieces near position
+     */
+    protected int piecesNearPosition(int position, int[] rez) {
+        int numberOfPieces = 0;
+        int[] diff = SimpleChessboard.NEAR_POSITION_OFFSETS;
         for (int off : diff) {
             int currPlusPosition = position + off;
             int currMinusPosition = position - off;
             if (ChessboardUtils.isPositionLegal(currPlusPosition) && this.board[currPlusPosition] != -1) {
-                rez.add(this.board[currPlusPosition]);
+                rez[numberOfPieces++] = this.board[currPlusPosition];
             }
 
             if (ChessboardUtils.isPositionLegal(currMinusPosition) && this.board[currMinusPosition] != -1) {
-                rez.add(this.board[currMinusPosition]);
+                rez[numberOfPieces++] = this.board[currMinusPosition];
             }
         }
-        return rez;
+        return numberOfPieces;
     }
 
 
@@ -1798,6 +2027,165 @@ public class SimpleChessboard implements Cloneable {
                 this.piecePosition[this.board[x]] = x;
             }
         }
+        this.constructZobristKey();
+    }
+
+
+    /**
+     * Computes zobrist key from scratch from piecePosition and isWhitesTurn
+     * fields.
+     */
+    protected void constructZobristKey() {
+        this.zobristKey = this.isWhitesTurn ? SimpleChessboard.ZOBRIST_WHITES_TURN_KEY : 0;
+        for (int piece = 0; piece < this.piecePosition.length; piece++) {
+            if (this.piecePosition[piece] != -1) {
+                this.zobristKey ^= SimpleChessboard.ZOBRIST_PIECE_KEYS[piece][this.piecePosition[piece]];
+            }
+        }
+    }
+
+
+    /**
+     * Updates zobrist key with a move (same method also undoes the move).
+     * 
+     * @param from
+     *            starting position of move
+     * @param to
+     *            target position of move
+     * @param piece
+     *            moved piece
+     * @param targetPiece
+     *            captured piece or -1
+     */
+    private void updateZobristKey(int from, int to, int piece, int targetPiece) {
+        long[] pieceKeys = SimpleChessboard.ZOBRIST_PIECE_KEYS[piece];
+        this.zobristKey ^= pieceKeys[from] ^ pieceKeys[to] ^ SimpleChessboard.ZOBRIST_WHITES_TURN_KEY;
+        if (targetPiece != -1) {
+            this.zobristKey ^= SimpleChessboard.ZOBRIST_PIECE_KEYS[targetPiece][to];
+        }
+    }
+
+
+    /**
+     * Adds all legal moves of piece on <code>from</code> position to
+     * <code>rez</code>. Only positions reachable by the piece are visited
+     * (precomputed 0x88 deltas are used). Moves are added in ascending order
+     * of target positions.
+     * 
+     * @param from
+     *            position of piece
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    protected void addLegalMovesOfPiece(int from, MoveList rez) throws ChessboardException {
+        int piece = this.board[from];
+        boolean isWhite = ChessboardUtils.isPieceWhite(piece);
+        int numberOfTargets = 0;
+
+        if (piece == 0 || piece == 7 || piece == 24 || piece == 31) {
+            numberOfTargets = this.collectSlidingTargets(from, isWhite, SimpleChessboard.ROOK_DIRECTIONS);
+        }
+        else if (piece == 2 || piece == 5 || piece == 26 || piece == 29) {
+            numberOfTargets = this.collectSlidingTargets(from, isWhite, SimpleChessboard.BISHOP_DIRECTIONS);
+        }
+        else if (piece == 3 || piece == 27) {
+            numberOfTargets = this.collectSlidingTargets(from, isWhite, SimpleChessboard.QUEEN_DIRECTIONS);
+        }
+        else if (piece == 1 || piece == 6 || piece == 25 || piece == 30) {
+            for (int delta : SimpleChessboard.KNIGHT_DELTAS) {
+                int to = from + delta;
+                if (ChessboardUtils.isPositionLegal(to) && (this.board[to] == -1 || ChessboardUtils.isPieceWhite(this.board[to]) != isWhite)) {
+                    this.targetPositions[numberOfTargets++] = to;
+                }
+            }
+        }
+        else if (piece == 4 || piece == 28) {
+            for (int delta : SimpleChessboard.KING_DELTAS) {
+                int to = from + delta;
+                boolean isLegal = isWhite ? this.isWhiteKingMoveLegal(from, to) : this.isBlackKingMoveLegal(from, to);
+                if (isLegal) {
+                    this.targetPositions[numberOfTargets++] = to;
+                }
+            }
+        }
+        else if (piece > 7 && piece < 16) {
+            for (int delta : SimpleChessboard.WHITE_PAWN_DELTAS) {
+                if (this.isWhitePawnMoveLegal(from, from + delta)) {
+                    this.targetPositions[numberOfTargets++] = from + delta;
+                }
+            }
+        }
+        else if (piece > 15 && piece < 24) {
+            for (int delta : SimpleChessboard.BLACK_PAWN_DELTAS) {
+                if (this.isBlackPawnMoveLegal(from, from + delta)) {
+                    this.targetPositions[numberOfTargets++] = from + delta;
+                }
+            }
+        }
+        else {
+            throw new ChessboardException("na from=" + from + " je figura " + piece);
+        }
+
+        // sliders visit targets by directions, so we sort them
+        Arrays.sort(this.targetPositions, 0, numberOfTargets);
+        for (int x = 0; x < numberOfTargets; x++) {
+            rez.add(this.constructMoveNumber(from, this.targetPositions[x]));
+        }
+    }
+
+
+    /**
+     * Adds all legal moves of piece on <code>from</code> position to
+     * <code>rez</code> as {@link Move} objects.
+     * 
+     * @param from
+     *            position of piece
+     * @param rez
+     *            list to which moves are added
+     * @throws ChessboardException
+     */
+    private void addLegalMovesOfPiece(int from, ArrayList<Move> rez) throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        this.addLegalMovesOfPiece(from, moves);
+        for (int x = 0; x < moves.size(); x++) {
+            rez.add(new Move(moves.get(x)));
+        }
+        MoveList.release(moves);
+    }
+
+
+    /**
+     * Collects target positions of sliding piece into
+     * <code>targetPositions</code>.
+     * 
+     * @param from
+     *            position of sliding piece
+     * @param isWhite
+     *            <code>true</code> if sliding piece is white
+     * @param directions
+     *            directions in which piece slides
+     * @return number of collected target positions
+     */
+    private int collectSlidingTargets(int from, boolean isWhite, int[] directions) {
+        int numberOfTargets = 0;
+        for (int direction : directions) {
+            int to = from + direction;
+            while (ChessboardUtils.isPositionLegal(to)) {
+                int targetPiece = this.board[to];
+                if (targetPiece == -1) {
+                    this.targetPositions[numberOfTargets++] = to;
+                }
+                else {
+                    if (ChessboardUtils.isPieceWhite(targetPiece) != isWhite) {
+                        this.targetPositions[numberOfTargets++] = to;
+                    }
+                    break;
+                }
+                to += direction;
+            }
+        }
+        return numberOfTargets;
     }
 
 
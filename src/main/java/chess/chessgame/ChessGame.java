@@ -6,6 +6,7 @@ import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 import mct.MCT;
+import mct.MCTSearchLimits;
 import mct.MCTStats;
 import utils.FruitUtils;
 import utils.IOUtils;
@@ -89,9 +90,7 @@ public class ChessGame {
         this.fen += "[fen \"" + this.MCTree.getFEN() + "\"]\n\n";
         boolean didWhiteWin = false;
 
-        for (int x = 0; x < MCTSSetup.NUMBER_OF_INITAL_STEPS; x++) {
-            this.MCTree.oneMCTStep();
-        }
+        this.MCTree.search(this.searchLimits(MCTSSetup.NUMBER_OF_INITAL_STEPS));
 
         boolean whitesTurn = true;
 
@@ -120,6 +119,11 @@ public class ChessGame {
                 break;
             }
 
+            // search tree while black and fruit are thinking
+            if (!whitesTurn && MCTSSetup.PONDERING) {
+                this.MCTree.startPondering();
+            }
+
             // get best move and best move DTM from fruit
             String fruitOutput = FruitUtils.getOutputFromFruit(this.MCTree.getFEN());
             String perfectMove = FruitUtils.getMoveFromFruit(fruitOutput);
@@ -132,9 +136,7 @@ public class ChessGame {
 
             if (whitesTurn) {
 
-                for (int x = 0; x < MCTSSetup.NUMBER_OF_RUNNING_STEPS; x++) {
-                    this.MCTree.oneMCTStep();
-                }
+                this.MCTree.search(this.searchLimits(MCTSSetup.NUMBER_OF_RUNNING_STEPS));
 
                 moveNumber = this.MCTree.chooseAMoveNumber(MCTSSetup.WHITE_MOVE_CHOOSER_STRATEGY, MCTSSetup.BLACK_MOVE_CHOOSER_STRATEGY);
 
@@ -146,6 +148,7 @@ public class ChessGame {
             }
             else {
                 moveNumber = this.MCTree.chooseAMoveNumber(MCTSSetup.WHITE_MOVE_CHOOSER_STRATEGY, MCTSSetup.BLACK_MOVE_CHOOSER_STRATEGY);
+                this.MCTree.stopPondering();
 
                 dtmDiff = perfectDTM - FruitUtils.getDTMOfMoveFromFruitOutput(FruitUtils.moveNumberToFruitString(moveNumber), fruitOutput);
 
@@ -203,6 +206,22 @@ public class ChessGame {
     }
 
 
+    /**
+     * Gets limits of one MC search. If time per move is set, search isn't
+     * limited by steps, so every move gets the whole time.
+     * 
+     * @param numberOfSteps
+     *            number of MC steps used when time per move isn't set
+     * @return search limits
+     */
+    private MCTSearchLimits searchLimits(int numberOfSteps) {
+        if (MCTSSetup.TIME_PER_MOVE > 0) {
+            return MCTSearchLimits.fromSetup(0);
+        }
+        return MCTSearchLimits.fromSetup(numberOfSteps);
+    }
+
+
     /**
      * Logs game summary.
      * 
@@ -234,7 +253,10 @@ public class ChessGame {
         String logString3 = stats.numberOfMatsInSimulation + " matov v simulation";
 
         String logString4 = "Crni je " + stats.numberOfMCTreeColapses + "-krat izbral potezo, ki je ni v drevesu." + newLine;
-        logString4 += " Pred koncem igre pa je bila velikost drevesa " + this.MCTree.getCurrentTreeSize();
+        logString4 += " Pred koncem igre pa je bila velikost drevesa " + this.MCTree.getCurrentTreeSize() + newLine;
+        logString4 += " Med razmisljanjem crnega je bilo narejenih " + stats.numberOfPonderedSteps + " korakov." + newLine;
+        logString4 += " Zaradi omejitve velikosti drevesa je bilo odstranjenih " + stats.numberOfPrunedNodes + " vozlisc." + newLine;
+        logString4 += " Zaradi predcasne ustavitve iskanja je bilo prihranjenih " + stats.numberOfSavedSteps + " korakov.";
 
         // average difference from optimal moves
         String whitesAverageDiff = "Average whites DTM difference from optimal move is " + this.matchStats.getAverageWhitesDTMDiff();
@@ -8,10 +8,12 @@ import java.util.logging.Level;
 
 import javax.management.RuntimeErrorException;
 
+import mct.MCTTreeStore;
 import moveChoosers.WhiteChooserStrategy;
 import moveFinders.BlackFinderStrategy;
 import moveFinders.WhiteFinderStrategy;
 import utils.ExperimentUtils;
+import chess.chessboard.ChessboardImplementation;
 import experiment.MCTestParameter;
 
 /**
@@ -103,6 +105,136 @@ public class MCTSSetup {
      */
     public static String               ENDING;
 
+    /**
+     * Chess board representation used by MCT algorithm.
+     */
+    public static ChessboardImplementation CHESSBOARD_IMPLEMENTATION                                                    = ChessboardImplementation.ARRAY_0X88;
+
+    /**
+     * Number of independent MC trees that are searched in parallel (root
+     * parallelization). Their root children statistics are merged before white
+     * chooses a move.
+     */
+    public static int                  NUMBER_OF_ROOT_PARALLEL_TREES                                                   = 1;
+
+    /**
+     * Number of threads that search same MC tree in parallel (tree
+     * parallelization).
+     */
+    public static int                  NUMBER_OF_TREE_PARALLEL_THREADS                                                 = 1;
+
+    /**
+     * Virtual loss that tree parallel search thread adds to nodes it is
+     * searching below, so other threads choose different nodes.
+     */
+    public static int                  VIRTUAL_LOSS                                                                    = 1;
+
+    /**
+     * Number of threads that run simulations of single MC step in parallel
+     * (leaf parallelization).
+     */
+    public static int                  NUMBER_OF_LEAF_PARALLEL_THREADS                                                 = 1;
+
+    /**
+     * How MCT algorithm stores nodes of MC tree. Stores other than
+     * {@link MCTTreeStore#OBJECTS} are searched by single thread and can't be
+     * combined with {@link #NUMBER_OF_TREE_PARALLEL_THREADS} above 1 or
+     * {@link #USE_TRANSPOSITION_TABLE}.
+     */
+    public static MCTTreeStore         TREE_STORE                                                                      = MCTTreeStore.OBJECTS;
+
+    /**
+     * If <code>true</code> MC tree is searched on background thread while
+     * black is choosing its move.
+     */
+    public static boolean              PONDERING                                                                       = false;
+
+    /**
+     * If <code>true</code> MCTS-Solver is used: proven wins and losses are
+     * propagated up the tree, proven subtrees are not searched any more and
+     * white plays proven mate.
+     */
+    public static boolean              USE_SOLVER                                                                      = false;
+
+    /**
+     * If <code>true</code> selection uses PUCT formula with move priors that
+     * are computed from white heuristics instead of UCB1, and expansion adds
+     * moves with highest prior first.
+     */
+    public static boolean              USE_PUCT                                                                        = false;
+
+    /** Exploration constant of PUCT formula, used if {@link #USE_PUCT} is set */
+    public static double               PUCT_C                                                                          = 1.5;
+
+    /**
+     * If <code>true</code> nodes keep all moves as first (RAVE) statistics,
+     * which are blended with their own statistics in UCB1 rating.
+     */
+    public static boolean              USE_RAVE                                                                        = false;
+
+    /**
+     * Number of visits at which node's own statistics and RAVE statistics
+     * have equal weight. Weight of RAVE statistics is sqrt(k / (3n + k)),
+     * where k is this constant and n is node's visit count.
+     */
+    public static int                  RAVE_EQUIVALENCE                                                                = 1000;
+
+    /**
+     * If <code>true</code> MC search stops before its budget is used up, when
+     * root child with most visits can't be overtaken in remaining steps. Only
+     * used with {@link WhiteChooserStrategy#MAX_VISIT_COUNT} and single MC
+     * tree.
+     */
+    public static boolean              EARLY_STOP                                                                      = false;
+
+    /**
+     * If larger than 0 and {@link #EARLY_STOP} is set, MC search also stops
+     * when confidence intervals of two most visited root children with this
+     * many standard deviations don't overlap. Unlike visit count gap, this
+     * rule can change chosen move.
+     */
+    public static double               EARLY_STOP_CONFIDENCE                                                           = 0;
+
+    /**
+     * If <code>true</code> nodes that represent same chess board state are
+     * shared through transposition table. Requires
+     * {@link MCTTreeStore#OBJECTS}.
+     */
+    public static boolean              USE_TRANSPOSITION_TABLE                                                         = false;
+
+    /**
+     * Number of bytes that every MC tree can use when
+     * {@link MCTTreeStore#OFF_HEAP} is used. When it's used up no more nodes
+     * are added to the tree.
+     */
+    public static long                 OFF_HEAP_TREE_BUDGET                                                            = 64L * 1024 * 1024;
+
+    /**
+     * Maximum time of every MC search in milliseconds. When it's set games
+     * ignore initial and running steps, so search stops only when it runs out
+     * of time (or node and playout budget). 0 if search time isn't limited.
+     */
+    public static long                 TIME_PER_MOVE                                                                   = 0;
+
+    /**
+     * Maximum number of nodes that every MC search adds to the tree, 0 if
+     * number of nodes isn't limited.
+     */
+    public static int                  NODE_BUDGET                                                                     = 0;
+
+    /**
+     * Maximum number of simulations that every MC search runs, 0 if number of
+     * simulations isn't limited.
+     */
+    public static long                 PLAYOUT_BUDGET                                                                  = 0;
+
+    /**
+     * Maximum number of nodes in every MC tree, 0 if size isn't limited. When
+     * tree reaches it, least visited subtrees are pruned to 3/4 of this size.
+     * With tree parallelization each thread can add one more node.
+     */
+    public static int                  MAXIMUM_NUMBER_OF_NODES                                                         = 0;
+
     /**
      * If <code>true</code> white will try to check black king when they are in
      * opposition. Only applicable in KRK ending.
@@ -315,6 +447,27 @@ public class MCTSSetup {
         rez += "SELECTION_ALSO_USES_VISIT_COUNT_FOR_NODE_CHOOSING " + MCTSSetup.SELECTION_ALSO_USES_VISIT_COUNT_FOR_NODE_CHOOSING
                 + " (if set selection, when choosing next node, only takes nodes with highest visitcount in account).\r\n";
 
+        rez += "CHESSBOARD_IMPLEMENTATION " + MCTSSetup.CHESSBOARD_IMPLEMENTATION + " (chess board representation used by MCT algorithm).\r\n";
+        rez += "NUMBER_OF_ROOT_PARALLEL_TREES " + MCTSSetup.NUMBER_OF_ROOT_PARALLEL_TREES + " (number of MC trees searched in parallel).\r\n";
+        rez += "NUMBER_OF_TREE_PARALLEL_THREADS " + MCTSSetup.NUMBER_OF_TREE_PARALLEL_THREADS + " (number of threads that search same MC tree).\r\n";
+        rez += "VIRTUAL_LOSS " + MCTSSetup.VIRTUAL_LOSS + " (virtual loss used by tree parallel search).\r\n";
+        rez += "NUMBER_OF_LEAF_PARALLEL_THREADS " + MCTSSetup.NUMBER_OF_LEAF_PARALLEL_THREADS + " (number of threads that run simulations of single MC step).\r\n";
+        rez += "TREE_STORE " + MCTSSetup.TREE_STORE + " (how nodes of MC tree are stored).\r\n";
+        rez += "OFF_HEAP_TREE_BUDGET " + MCTSSetup.OFF_HEAP_TREE_BUDGET + " (bytes that every off-heap MC tree can use).\r\n";
+        rez += "TIME_PER_MOVE " + MCTSSetup.TIME_PER_MOVE + " (maximum milliseconds of MC search, 0 is unlimited; when set, initial_steps and running_steps are ignored).\r\n";
+        rez += "NODE_BUDGET " + MCTSSetup.NODE_BUDGET + " (maximum number of nodes added by MC search, 0 is unlimited).\r\n";
+        rez += "PLAYOUT_BUDGET " + MCTSSetup.PLAYOUT_BUDGET + " (maximum number of simulations run by MC search, 0 is unlimited).\r\n";
+        rez += "MAXIMUM_NUMBER_OF_NODES " + MCTSSetup.MAXIMUM_NUMBER_OF_NODES + " (maximum size of MC tree, 0 is unlimited).\r\n";
+        rez += "USE_TRANSPOSITION_TABLE " + MCTSSetup.USE_TRANSPOSITION_TABLE + " (nodes of same chess board state are shared).\r\n";
+        rez += "PONDERING " + MCTSSetup.PONDERING + " (MC tree is searched while black is choosing its move).\r\n";
+        rez += "USE_SOLVER " + MCTSSetup.USE_SOLVER + " (proven wins and losses are propagated through MC tree).\r\n";
+        rez += "USE_PUCT " + MCTSSetup.USE_PUCT + " (selection uses PUCT formula with heuristic move priors).\r\n";
+        rez += "PUCT_C " + MCTSSetup.PUCT_C + " (exploration constant of PUCT formula).\r\n";
+        rez += "USE_RAVE " + MCTSSetup.USE_RAVE + " (all moves as first statistics are blended with node statistics).\r\n";
+        rez += "RAVE_EQUIVALENCE " + MCTSSetup.RAVE_EQUIVALENCE + " (visit count at which RAVE and node statistics have equal weight).\r\n";
+        rez += "EARLY_STOP " + MCTSSetup.EARLY_STOP + " (MC search stops when best root move can't be overtaken).\r\n";
+        rez += "EARLY_STOP_CONFIDENCE " + MCTSSetup.EARLY_STOP_CONFIDENCE + " (MC search also stops when confidence intervals of best root moves are separated, 0 is off).\r\n";
+
         rez += "WRITE_INDIVIDUAL_GAMES " + IOSetup.WRITE_INDIVIDUAL_GAMES + " (if set program writes individual games also to sgames dir).\r\n";
         rez += "\r\n";
         rez += "HEURISTICS_white_king_moves_closer_if_distance_from_black_king_is_larger_than_3 "
@@ -592,6 +745,336 @@ public class MCTSSetup {
 
                     MCTSSetup.SELECTION_ALSO_USES_VISIT_COUNT_FOR_NODE_CHOOSING = true;
                 }
+                else if (words[0].equalsIgnoreCase("chessboard")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'chessboard' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    if (words[1].equalsIgnoreCase("0x88") || words[1].equalsIgnoreCase("array")) {
+                        MCTSSetup.CHESSBOARD_IMPLEMENTATION = ChessboardImplementation.ARRAY_0X88;
+                    }
+                    else if (words[1].equalsIgnoreCase("bitboard")) {
+                        MCTSSetup.CHESSBOARD_IMPLEMENTATION = ChessboardImplementation.BITBOARD;
+                    }
+                    else {
+                        System.err.println(words[1] + " is not valid chess board implementation (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+                }
+                else if (words[0].equalsIgnoreCase("root_parallel_trees") || words[0].equalsIgnoreCase("rpt")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after '" + words[0] + "' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int numberOfTrees = -1;
+                    try {
+                        numberOfTrees = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after '" + words[0] + "' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (numberOfTrees < 1) {
+                        System.err.println("*** ERROR: Number of root parallel trees must be at least 1 (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.NUMBER_OF_ROOT_PARALLEL_TREES = numberOfTrees;
+                }
+                else if (words[0].equalsIgnoreCase("tree_parallel_threads") || words[0].equalsIgnoreCase("tpt")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after '" + words[0] + "' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int numberOfThreads = -1;
+                    try {
+                        numberOfThreads = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after '" + words[0] + "' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (numberOfThreads < 1) {
+                        System.err.println("*** ERROR: Number of tree parallel threads must be at least 1 (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.NUMBER_OF_TREE_PARALLEL_THREADS = numberOfThreads;
+                }
+                else if (words[0].equalsIgnoreCase("virtual_loss")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after '" + words[0] + "' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int virtualLoss = -1;
+                    try {
+                        virtualLoss = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after '" + words[0] + "' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (virtualLoss < 0) {
+                        System.err.println("*** ERROR: Virtual loss must not be negative (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.VIRTUAL_LOSS = virtualLoss;
+                }
+                else if (words[0].equalsIgnoreCase("leaf_parallel_threads") || words[0].equalsIgnoreCase("lpt")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after '" + words[0] + "' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int numberOfThreads = -1;
+                    try {
+                        numberOfThreads = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after '" + words[0] + "' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (numberOfThreads < 1) {
+                        System.err.println("*** ERROR: Number of leaf parallel threads must be at least 1 (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.NUMBER_OF_LEAF_PARALLEL_THREADS = numberOfThreads;
+                }
+                else if (words[0].equalsIgnoreCase("transposition_table") || words[0].equalsIgnoreCase("tt")) {
+                    if (words.length != 1) {
+                        System.err.println("There must be no other tokens after " + words[0] + " (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.USE_TRANSPOSITION_TABLE = true;
+                }
+                else if (words[0].equalsIgnoreCase("solver")) {
+                    if (words.length != 1) {
+                        System.err.println("There must be no other tokens after " + words[0] + " (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.USE_SOLVER = true;
+                }
+                else if (words[0].equalsIgnoreCase("puct")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'puct' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    double c = -1;
+                    try {
+                        c = Double.parseDouble(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'puct' must be double (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    if (c <= 0) {
+                        System.err.println("*** ERROR: PUCT exploration constant must be positive (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.USE_PUCT = true;
+                    MCTSSetup.PUCT_C = c;
+                }
+                else if (words[0].equalsIgnoreCase("rave")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'rave' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int value = -1;
+                    try {
+                        value = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'rave' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (value <= 0) {
+                        System.err.println("*** ERROR: RAVE equivalence must be positive (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.USE_RAVE = true;
+                    MCTSSetup.RAVE_EQUIVALENCE = value;
+                }
+                else if (words[0].equalsIgnoreCase("early_stop")) {
+                    if (words.length > 2) {
+                        System.err.println("*** ERROR: Config file can have at most 1 token after 'early_stop' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    double confidence = 0;
+                    if (words.length == 2) {
+                        try {
+                            confidence = Double.parseDouble(words[1]);
+                        }
+                        catch (NumberFormatException e) {
+                            System.err.println("*** ERROR: In config file token after 'early_stop' must be double (line: " + currentLine + ").");
+                            System.exit(1);
+                        }
+
+                        if (confidence <= 0) {
+                            System.err.println("*** ERROR: Early stop confidence must be positive (line: " + currentLine + " ).");
+                            System.exit(1);
+                        }
+                    }
+
+                    MCTSSetup.EARLY_STOP = true;
+                    MCTSSetup.EARLY_STOP_CONFIDENCE = confidence;
+                }
+                else if (words[0].equalsIgnoreCase("pondering")) {
+                    if (words.length != 1) {
+                        System.err.println("There must be no other tokens after " + words[0] + " (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.PONDERING = true;
+                }
+                else if (words[0].equalsIgnoreCase("off_heap_budget")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'off_heap_budget' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    long megabytes = -1;
+                    try {
+                        megabytes = Long.parseLong(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'off_heap_budget' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (megabytes < 1 || megabytes > 2047) {
+                        System.err.println("*** ERROR: Off-heap budget must be between 1 and 2047 MB (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.OFF_HEAP_TREE_BUDGET = megabytes * 1024 * 1024;
+                }
+                else if (words[0].equalsIgnoreCase("time_per_move")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'time_per_move' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    long value = -1;
+                    try {
+                        value = Long.parseLong(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'time_per_move' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (value < 0) {
+                        System.err.println("*** ERROR: Time per move can't be negative (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.TIME_PER_MOVE = value;
+                }
+                else if (words[0].equalsIgnoreCase("node_budget")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'node_budget' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int value = -1;
+                    try {
+                        value = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'node_budget' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (value < 0) {
+                        System.err.println("*** ERROR: Node budget can't be negative (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.NODE_BUDGET = value;
+                }
+                else if (words[0].equalsIgnoreCase("playout_budget")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'playout_budget' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    long value = -1;
+                    try {
+                        value = Long.parseLong(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'playout_budget' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (value < 0) {
+                        System.err.println("*** ERROR: Playout budget can't be negative (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.PLAYOUT_BUDGET = value;
+                }
+                else if (words[0].equalsIgnoreCase("max_nodes")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'max_nodes' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    int value = -1;
+                    try {
+                        value = Integer.parseInt(words[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        System.err.println("*** ERROR: In config file token after 'max_nodes' must be an integer (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    if (value != 0 && value < 100) {
+                        System.err.println("*** ERROR: Maximum number of nodes must be 0 or at least 100 (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+
+                    MCTSSetup.MAXIMUM_NUMBER_OF_NODES = value;
+                }
+                else if (words[0].equalsIgnoreCase("tree_store")) {
+                    if (words.length != 2) {
+                        System.err.println("*** ERROR: Config file must have exactly 1 token after 'tree_store' (line: " + currentLine + ").");
+                        System.exit(1);
+                    }
+
+                    if (words[1].equalsIgnoreCase("objects")) {
+                        MCTSSetup.TREE_STORE = MCTTreeStore.OBJECTS;
+                    }
+                    else if (words[1].equalsIgnoreCase("pool")) {
+                        MCTSSetup.TREE_STORE = MCTTreeStore.POOL;
+                    }
+                    else if (words[1].equalsIgnoreCase("offheap")) {
+                        MCTSSetup.TREE_STORE = MCTTreeStore.OFF_HEAP;
+                    }
+                    else {
+                        System.err.println(words[1] + " is not valid tree store (line: " + currentLine + " ).");
+                        System.exit(1);
+                    }
+                }
                 /* *************************************************************************************************
                  * *****************************HEURISTICS***********************
                  * ********************************
@@ -747,6 +1230,17 @@ public class MCTSSetup {
             System.err.print(rez);
             System.exit(1);
         }
+
+        // nodes of pool and off heap store are neither shared between
+        // transpositions nor searched by more than one thread
+        if (MCTSSetup.TREE_STORE != MCTTreeStore.OBJECTS && MCTSSetup.USE_TRANSPOSITION_TABLE) {
+            System.err.println("*** ERROR: 'transposition_table' can only be used with 'tree_store objects' (tree store: " + MCTSSetup.TREE_STORE + ").");
+            System.exit(1);
+        }
+        if (MCTSSetup.TREE_STORE != MCTTreeStore.OBJECTS && MCTSSetup.NUMBER_OF_TREE_PARALLEL_THREADS > 1) {
+            System.err.println("*** ERROR: 'tree_parallel_threads' above 1 can only be used with 'tree_store objects' (tree store: " + MCTSSetup.TREE_STORE + ").");
+            System.exit(1);
+        }
     }
 
 
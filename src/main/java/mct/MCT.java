@@ -1,8 +1,16 @@
 package mct;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import moveChoosers.BlackMoveChooser;
@@ -13,9 +21,9 @@ import moveFinders.WhiteFinderStrategy;
 import utils.ChessboardUtils;
 import utils.MCTUtils;
 import chess.Move;
-import chess.chessboard.Chessboard;
+import chess.MoveList;
 import chess.chessboard.ChessboardEvalState;
-import chess.chessboard.SimpleChessboard;
+import chess.chessboard.IChessboard;
 import config.MCTSSetup;
 import exceptions.ChessboardException;
 
@@ -27,22 +35,92 @@ import exceptions.ChessboardException;
 public class MCT {
 
     /** Chess board on which match is played on */
-    private Chessboard mainChessboard       = new Chessboard("Main board");
+    private IChessboard mainChessboard;
 
     /** Chess board used for simulations */
-    private Chessboard simulationChessboard = new Chessboard(this.mainChessboard, "Simulation board");
+    private IChessboard simulationChessboard;
 
-    /** MCT root node */
-    private MCTNode    root                 = new MCTNode(this.mainChessboard);
+    /** Store that holds nodes of the tree, shared by all searches of it */
+    private MCTNodeStore store;
+
+    /** Id of MCT root node in {@link #store} */
+    private int         root;
 
     /** random used by this class */
-    private Random     random               = new Random();
+    private Random      random               = new Random();
 
     /** Statistics produced by MCT algorithm */
-    private MCTStats   stats                = new MCTStats();
+    private MCTStats    stats                = new MCTStats();
 
     /** Logger */
-    private Logger     log;
+    private Logger      log;
+
+    /**
+     * Independent trees that are searched in parallel with this tree when root
+     * parallelization is used (empty otherwise).
+     */
+    private MCT[]       rootParallelTrees;
+
+    /**
+     * Searches that share this tree when tree parallelization is used (empty
+     * otherwise). Each of them has its own simulation chess board.
+     */
+    private MCT[]       treeParallelSearches;
+
+    /** If <code>true</code> selection adds virtual loss to selected nodes */
+    private boolean     usesVirtualLoss;
+
+    /**
+     * Index of deepest node on {@link #selectedPath} to which virtual loss was
+     * added in current step
+     */
+    private int         virtualLossIndex;
+
+    /**
+     * Ids of nodes visited in current step, from the root down. With
+     * transpositions node can have more parents, so backpropagation follows
+     * this path.
+     */
+    private int[]       selectedPath         = new int[64];
+
+    /** Moves made to get to nodes on {@link #selectedPath} */
+    private int[]       selectedMoves        = new int[64];
+
+    /** Number of nodes on {@link #selectedPath} */
+    private int         selectedPathLength;
+
+    /** Moves made in simulations of current step, used for RAVE */
+    private MCTAmafMoves amafMoves           = new MCTAmafMoves();
+
+    /**
+     * Priors of legal moves of node that is expanded, reused by every
+     * expansion
+     */
+    private float[]     movePriors           = new float[64];
+
+    /**
+     * Limits of running pondering search, <code>null</code> if tree isn't
+     * pondering
+     */
+    private MCTSearchLimits    ponderingLimits;
+
+    /** Result of running pondering search */
+    private Future<Integer>    pondering;
+
+    /** Executor shared by all parallel searches */
+    private static ExecutorService executor;
+
+    /** Executor that runs leaf parallel simulations */
+    private static ForkJoinPool    leafExecutor;
+
+    /** Randoms used by leaf parallel simulations, one for every thread */
+    private static final ThreadLocal<Random> LEAF_RANDOM = new ThreadLocal<Random>() {
+
+                                                             @Override
+                                                             protected Random initialValue() {
+                                                                 return new Random();
+                                                             }
+                                                         };
 
 
     /**
@@ -52,7 +130,70 @@ public class MCT {
      *            where details are logged
      */
     public MCT(Logger log) {
+        this(log, MCTSSetup.NUMBER_OF_ROOT_PARALLEL_TREES - 1);
+    }
+
+
+    /**
+     * Constructor
+     * 
+     * @param log
+     *            where details are logged
+     * @param numberOfRootParallelTrees
+     *            number of additional trees searched in parallel with this one
+     */
+    private MCT(Logger log, int numberOfRootParallelTrees) {
         this.log = log;
+        this.mainChessboard = ChessboardUtils.newChessboard("Main board");
+        this.simulationChessboard = this.mainChessboard.copy("Simulation board");
+        this.store = MCT.newNodeStore();
+        this.root = this.store.addRoot(0, 0, this.mainChessboard.evaluateChessboardFromWhitesPerpective());
+
+        this.rootParallelTrees = new MCT[Math.max(numberOfRootParallelTrees, 0)];
+        for (int x = 0; x < this.rootParallelTrees.length; x++) {
+            this.rootParallelTrees[x] = new MCT(log, 0);
+        }
+
+        this.treeParallelSearches = new MCT[Math.max(MCTSSetup.NUMBER_OF_TREE_PARALLEL_THREADS - 1, 0)];
+        for (int x = 0; x < this.treeParallelSearches.length; x++) {
+            this.treeParallelSearches[x] = new MCT(this);
+        }
+        this.usesVirtualLoss = this.treeParallelSearches.length > 0;
+    }
+
+
+    /**
+     * Constructor for search that shares tree with <code>tree</code>.
+     * 
+     * @param tree
+     *            search whose tree is shared
+     */
+    private MCT(MCT tree) {
+        this.log = tree.log;
+        this.mainChessboard = tree.mainChessboard;
+        this.simulationChessboard = tree.mainChessboard.copy("Simulation board");
+        this.store = tree.store;
+        this.root = tree.root;
+        this.rootParallelTrees = new MCT[0];
+        this.treeParallelSearches = new MCT[0];
+        this.usesVirtualLoss = true;
+    }
+
+
+    /**
+     * Creates store of nodes chosen by {@link MCTSSetup#TREE_STORE}.
+     * 
+     * @return empty node store
+     */
+    private static MCTNodeStore newNodeStore() {
+        switch (MCTSSetup.TREE_STORE) {
+            case POOL:
+                return new MCTNodePool(1024);
+            case OFF_HEAP:
+                return new MCTOffHeapNodeStore(MCTSSetup.OFF_HEAP_TREE_BUDGET);
+            default:
+                return new MCTObjectNodeStore(1024, MCTSSetup.USE_TRANSPOSITION_TABLE);
+        }
     }
 
 
@@ -63,102 +204,249 @@ public class MCT {
      * children added or has been visited fewer times than the value of the
      * threshold T.<br/>
      * If it reaches a child that represent a terminal game state, it just
-     * returns that node.
+     * returns that node. Tree is descended iteratively, so depth of the tree
+     * is not limited by stack size.
      * 
      * @param node
-     *            node to be evaluated
-     * @return last node where selection stopped or the node that has been added
-     *         to the tree.
+     *            id of node to be evaluated
+     * @return id of last node where selection stopped or of the node that has
+     *         been added to the tree.
      * @throws ChessboardException
      */
-    private MCTNode selection(MCTNode node) throws ChessboardException {
-        if (node.getEvalFromWhitesPerspective() != ChessboardEvalState.NORMAl) { return this.expansion(node); }
-
-        boolean terminaStateReached = node.getEvalFromWhitesPerspective() != ChessboardEvalState.NORMAl;
-        boolean gobanStrategy = node.visitCount < MCTSSetup.THRESHOLD_T;
-        boolean nerazvitiNasledniki = node.children == null;
+    private int selection(int node) throws ChessboardException {
+        while (this.store.getEval(node) == ChessboardEvalState.NORMAl && !this.isSolved(node)) {
+            if (!this.store.areAllChildrenAdded(node)) {
+                int addedNode = this.expansion(node);
+                if (addedNode != MCTNodeStore.NO_NODE) { return addedNode; }
+
+                // other threads added remaining children, so we select one
+                continue;
+            }
+            if (this.store.getVisitCount(node) < MCTSSetup.THRESHOLD_T) { return this.simulationAddsOneNode(node); }
 
-        if (terminaStateReached || nerazvitiNasledniki || node.children.size() == 0 || !node.areAllChildrenAdded()) { return this.expansion(node); }
-        if (gobanStrategy) { return this.simulationAddsOneNode(node); }
+            // select one of children with highest UCT value
+            int edge = MCTUtils.selectEdgeWithMaxRating(this.store, node, this.random);
+            int selectedNode = this.store.getEdgeChild(node, edge);
 
-        // get children with highest UCT value
-        ArrayList<MCTNode> maxRatingNodes = MCTUtils.getNodesWithMaxRating(node);
+            // other threads should rather search elsewhere
+            if (this.usesVirtualLoss) {
+                this.store.addVirtualLoss(selectedNode, MCTSSetup.VIRTUAL_LOSS);
+                this.virtualLossIndex = this.selectedPathLength;
+            }
 
-        // select random node
-        int selectedMove = this.random.nextInt(maxRatingNodes.size());
-        MCTNode selectedNode = maxRatingNodes.get(selectedMove);
+            int moveNumber = this.store.getEdgeMove(node, edge);
+            this.simulationChessboard.makeAMove(moveNumber);
+            this.addToSelectedPath(selectedNode, moveNumber);
+            node = selectedNode;
+        }
 
-        this.simulationChessboard.makeAMove(selectedNode.moveNumber);
-        return this.selection(selectedNode);
+        return node;
     }
 
 
     /**
-     * Expands given node. If node represents terminal chessboard state then
-     * this method just returns given node. Otherwise it adds a new child to the
-     * node.
+     * Expands given node. If node represents terminal chessboard state or
+     * store is full then this method just returns given node. Otherwise it
+     * adds a new child to the node. Valid moves are generated on simulation
+     * chess board, which must be in state represented by <code>node</code>,
+     * unless store kept them when node was expanded before. With
+     * {@link MCTSSetup#USE_PUCT} child is chosen among unexpanded moves with
+     * highest prior.
      * 
      * @param node
-     * @return node if the node represent the terminal game state, otherwise it
-     *         returns the newly added node.
+     *            id of node
+     * @return id of node if it represents terminal game state or store is
+     *         full, {@link MCTNodeStore#NO_NODE} if other threads have added
+     *         all remaining children in the meantime, otherwise id of the
+     *         newly added node.
      * @throws ChessboardException
      *             if a new child cannot be added.
      */
-    private MCTNode expansion(MCTNode node) throws ChessboardException {
-        if (node.getEvalFromWhitesPerspective() != ChessboardEvalState.NORMAl) { return node; }
-
-        if (node.children == null) {
-            node.children = new HashMap<Move, MCTNode>();
+    private int expansion(int node) throws ChessboardException {
+        if (this.store.getEval(node) != ChessboardEvalState.NORMAl) { return node; }
+
+        // full store can't grow, so node is evaluated as a leaf
+        if (this.store.isFull()) { return node; }
+
+        // moves are read before their priors, so priors kept with them are
+        // seen
+        MoveList validMoves = this.store.getValidMoves(node);
+        float[] priors = this.store.getMovePriors(node);
+        MoveList generatedMoves = null;
+        if (validMoves == null) {
+            // other threads would generate same moves, so there is no need to
+            // synchronize
+            generatedMoves = MoveList.acquire();
+            this.simulationChessboard.getLegalMoves(generatedMoves);
+            priors = MCTSSetup.USE_PUCT ? this.computeMovePriors(generatedMoves) : null;
+            this.store.setValidMoves(node, generatedMoves, priors);
+            validMoves = generatedMoves;
+        }
+        if (MCTSSetup.USE_SOLVER && this.store.getNumberOfLegalMoves(node) < 0) {
+            this.store.setNumberOfLegalMoves(node, MCTUtils.countAllLegalMoves(this.simulationChessboard));
         }
 
-        if (!node.areAllChildrenAdded()) {
-            ArrayList<Move> unexpandedMoves = new ArrayList<Move>();
-            for (Move move : node.validMoves) {
-                if (node.children.get(move) == null) {
-                    unexpandedMoves.add(move);
+        MoveList unexpandedMoves = MoveList.acquire();
+        float maxPrior = -1;
+        for (int x = 0; x < validMoves.size(); x++) {
+            if (this.store.getChild(node, validMoves.get(x)) != MCTNodeStore.NO_NODE) {
+                continue;
+            }
+            if (priors != null) {
+                if (priors[x] < maxPrior) {
+                    continue;
+                }
+                if (priors[x] > maxPrior) {
+                    maxPrior = priors[x];
+                    unexpandedMoves.clear();
                 }
             }
+            unexpandedMoves.add(validMoves.get(x));
+        }
+        if (generatedMoves != null) {
+            MoveList.release(generatedMoves);
+        }
+
+        if (unexpandedMoves.size() == 0) {
+            MoveList.release(unexpandedMoves);
 
-            Move addedMove = ChessboardUtils.getRandomMoveFromList(unexpandedMoves);
-            this.simulationChessboard.makeAMove(addedMove.moveNumber);
-            return node.addNextMove(addedMove);
+            // other threads could have added remaining children in the
+            // meantime
+            if (this.store.getNumberOfChildren(node) > 0) { return MCTNodeStore.NO_NODE; }
+
+            throw new ChessboardException("All children are allready added");
         }
 
-        throw new ChessboardException("All children are allready added");
+        int addedMove = unexpandedMoves.get(this.random.nextInt(unexpandedMoves.size()));
+        MoveList.release(unexpandedMoves);
+        this.simulationChessboard.makeAMove(addedMove);
+        return this.addChild(node, addedMove, priors != null ? maxPrior : 0);
     }
 
 
     /**
-     * Backpropagation phase of MCTS algorithm. It updates visitcount, value and
-     * other variables from the given node to the root node.
+     * Computes priors of valid moves from simulation chess board into
+     * {@link #movePriors}, which grows only if there are more moves than
+     * before.
+     * 
+     * @param validMoves
+     *            valid moves from simulation chess board's state
+     * @return priors of moves, array can be longer than list of moves
+     */
+    private float[] computeMovePriors(MoveList validMoves) {
+        if (this.movePriors.length < validMoves.size()) {
+            this.movePriors = new float[validMoves.size()];
+        }
+        MCTUtils.computeMovePriors(this.simulationChessboard, validMoves, this.movePriors);
+        return this.movePriors;
+    }
+
+
+    /**
+     * Gets prior probability of move made from expanded node. If store
+     * doesn't keep priors of moves, all moves have same prior.
      * 
      * @param node
-     *            node from which we start backpropagation
+     *            id of node
+     * @param moveNumber
+     *            move made from node
+     * @return prior probability of move, 0 if {@link MCTSSetup#USE_PUCT}
+     *         isn't set
+     */
+    private float getMovePrior(int node, int moveNumber) {
+        if (!MCTSSetup.USE_PUCT) { return 0; }
+
+        MoveList validMoves = this.store.getValidMoves(node);
+        float[] priors = this.store.getMovePriors(node);
+        if (priors != null) {
+            for (int x = 0; x < validMoves.size(); x++) {
+                if (validMoves.get(x) == moveNumber) { return priors[x]; }
+            }
+        }
+        return 1f / this.store.getNumberOfValidMoves(node);
+    }
+
+
+    /**
+     * Adds child that represents <code>moveNumber</code> to <code>node</code>
+     * and appends it to selected path. Simulation chess board must already be
+     * in child's state.
+     * 
+     * @param node
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @param prior
+     *            prior probability of the move
+     * @return id of added child
+     */
+    private int addChild(int node, int moveNumber, float prior) {
+        int child = this.store.addChild(node, moveNumber, prior, this.simulationChessboard);
+        this.addToSelectedPath(child, moveNumber);
+        return child;
+    }
+
+
+    /**
+     * Appends node to path of nodes visited in current step.
+     * 
+     * @param node
+     *            id of node
+     * @param moveNumber
+     *            move made from previous node on path to get to node
+     */
+    private void addToSelectedPath(int node, int moveNumber) {
+        if (this.selectedPathLength == this.selectedPath.length) {
+            this.selectedPath = Arrays.copyOf(this.selectedPath, this.selectedPathLength * 2);
+            this.selectedMoves = Arrays.copyOf(this.selectedMoves, this.selectedPathLength * 2);
+        }
+        this.selectedPath[this.selectedPathLength] = node;
+        this.selectedMoves[this.selectedPathLength] = moveNumber;
+        this.selectedPathLength++;
+    }
+
+
+    /**
+     * Backpropagation phase of MCTS algorithm. It updates visitcount, value and
+     * other variables of nodes on selected path, from the last one to the
+     * root node. Subtree sizes are not updated here, they are counted when
+     * nodes are added. With {@link MCTSSetup#USE_SOLVER} proven values are
+     * propagated as long as they prove parents.
+     * 
      * @param numberOfMats
      *            number of check mates that appeared in the simulations
-     * @param numberOfSimulationsPerNode
-     *            number of simulation used to evaluate node
      * @param addedNodeDepth
      *            depth of node from which backpropagation starts
+     * @param doesAddedNodeRepresentsMat
+     *            <code>true</code> if node from which backpropagation starts
+     *            represents check mate
      */
-    private void backPropagation(MCTNode node, int numberOfMats, int addedNodeDepth, boolean doesAddedNodeRepresentsMat) {
+    private void backPropagation(int numberOfMats, int addedNodeDepth, boolean doesAddedNodeRepresentsMat) {
+        int lastNode = this.selectedPathLength - 1;
+        boolean isChildProven = MCTSSetup.USE_SOLVER && this.store.getProofState(this.selectedPath[lastNode]) != MCTProofState.UNPROVEN;
 
-        // update subtree size
-        node.updateNumberOfSuccessors();
+        for (int x = lastNode; x >= 0; x--) {
+            int node = this.selectedPath[x];
+            this.store.addVisits(node, MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION, numberOfMats);
 
-        node.numberOfMatsInNode += numberOfMats;
-        node.visitCount += MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION;
+            // proven value of child can prove its parent
+            if (isChildProven && x < lastNode) {
+                isChildProven = this.updateProofState(node);
+            }
 
-        if (addedNodeDepth > node.maximumSubTreeDepth) {
-            node.maximumSubTreeDepth = addedNodeDepth - node.mcDepth;
-        }
+            // remove virtual loss that was added during selection
+            if (x > 0 && x <= this.virtualLossIndex) {
+                this.store.addVirtualLoss(node, -MCTSSetup.VIRTUAL_LOSS);
+            }
 
-        if (doesAddedNodeRepresentsMat && (addedNodeDepth < node.minimumDepthOfDescendadWhoRepresentsCheckMate)) {
-            node.minimumDepthOfDescendadWhoRepresentsCheckMate = addedNodeDepth - node.mcDepth;
-        }
+            int depth = this.store.getMoveDepth(node);
+            if (addedNodeDepth > this.store.getMaximumSubTreeDepth(node)) {
+                this.store.setMaximumSubTreeDepth(node, addedNodeDepth - depth);
+            }
 
-        if (node.parent != null) {
-            this.backPropagation(node.parent, numberOfMats, addedNodeDepth, doesAddedNodeRepresentsMat);
+            if (doesAddedNodeRepresentsMat && (addedNodeDepth < this.store.getMinimumDepthOfMate(node))) {
+                this.store.setMinimumDepthOfMate(node, addedNodeDepth - depth);
+            }
         }
     }
 
@@ -170,34 +458,39 @@ public class MCT {
      * the tree or until a node that represent terminal game state is reached.
      * 
      * @param node
-     *            added node or the node that represent a terminal game state.
-     * @return added node or current node if no node was added
+     *            id of node from which simulation starts
+     * @return id of added node or current node if no node was added
      * @throws ChessboardException
      */
-    private MCTNode simulationAddsOneNode(MCTNode node) throws ChessboardException {
+    private int simulationAddsOneNode(int node) throws ChessboardException {
+        while (this.store.getEval(node) == ChessboardEvalState.NORMAl && !this.isSolved(node)) {
+            if (this.store.getNumberOfChildren(node) == 0) {
+                int addedNode = this.expansion(node);
+                if (addedNode != MCTNodeStore.NO_NODE) { return addedNode; }
+                continue;
+            }
+            int moveNo = MCTUtils.findNextMove(this.simulationChessboard, MCTSSetup.WHITE_SIMULATION_STRATEGY, MCTSSetup.BLACK_SIMULATION_STRATEGY);
 
-        MCTNode currNode = node;
-        while (currNode.getEvalFromWhitesPerspective() == ChessboardEvalState.NORMAl) {
-            if (currNode.children == null) { return this.expansion(currNode); }
-            int moveNo = MCTUtils.findNextMove(currNode, MCTSSetup.WHITE_SIMULATION_STRATEGY, MCTSSetup.BLACK_SIMULATION_STRATEGY);
+            int child = this.store.getChild(node, moveNo);
+            if (child == MCTNodeStore.NO_NODE && this.store.isFull()) { return node; }
 
-            // if the move is not in currNode's children
-            if (currNode.children.get(new Move(moveNo)) == null) {
+            // if the move is not in node's children; its prior comes from
+            // moves kept in node
+            if (child == MCTNodeStore.NO_NODE) {
+                float prior = this.getMovePrior(node, moveNo);
                 this.simulationChessboard.makeAMove(moveNo);
-                return currNode.addNextMove(new Move(moveNo));
-            }
-            else {
-                this.simulationChessboard.makeAMove(moveNo);
-                currNode = currNode.children.get(new Move(moveNo));
+                return this.addChild(node, moveNo, prior);
             }
+            this.simulationChessboard.makeAMove(moveNo);
+            this.addToSelectedPath(child, moveNo);
+            node = child;
         }
 
-        if (currNode.getEvalFromWhitesPerspective() == ChessboardEvalState.BLACK_KING_MATED) {
+        if (this.store.getEval(node) == ChessboardEvalState.BLACK_KING_MATED) {
             ++this.stats.numberOfMatsInSimAddsOneNode;
         }
 
-        return currNode;
-
+        return node;
     }
 
 
@@ -205,43 +498,138 @@ public class MCT {
      * Runs simulations to evaluate the node. Simulations start at the
      * chessboard state represented by the given node. It chooses moves at
      * random according to {@link WhiteFinderStrategy} and
-     * {@link BlackFinderStrategy}.
+     * {@link BlackFinderStrategy}.<br/>
+     * Simulation chess board must be in state represented by
+     * <code>node</code>. Every simulation is played on simulation chess board
+     * and then taken back, so the board is left in the same state.
      * 
-     * @param node
-     *            node from which we run simulations
      * @return number of mats that happened in simulations.
      * @throws ChessboardException
      */
-    private int simulation(MCTNode node) throws ChessboardException {
+    private int simulation() throws ChessboardException {
+        int numberOfSimulations = MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION;
+        int numberOfTasks = Math.min(MCTSSetup.NUMBER_OF_LEAF_PARALLEL_THREADS, numberOfSimulations);
+
+        MCTAmafMoves amaf = MCTSSetup.USE_RAVE ? this.amafMoves : null;
+
         int rez = 0;
-        Chessboard temp = new Chessboard("resetBoard", node);
+        if (numberOfTasks <= 1) {
+            rez = MCT.runPlayouts(this.simulationChessboard, numberOfSimulations, this.random, amaf);
+        }
+        else {
+            // every task plays its share of simulations on its own copy of
+            // simulation chess board
+            ArrayList<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(numberOfTasks);
+            ArrayList<MCTAmafMoves> taskAmafMoves = new ArrayList<MCTAmafMoves>(numberOfTasks);
+            for (int x = 0; x < numberOfTasks; x++) {
+                int numberOfPlayouts = numberOfSimulations / numberOfTasks + (x < numberOfSimulations % numberOfTasks ? 1 : 0);
+                MCTAmafMoves taskAmaf = amaf == null ? null : new MCTAmafMoves();
+                tasks.add(MCT.playoutsTask(this.simulationChessboard.copy("Leaf simulation board"), numberOfPlayouts, taskAmaf));
+                taskAmafMoves.add(taskAmaf);
+            }
+
+            try {
+                for (Future<Integer> result : MCT.getLeafExecutor().invokeAll(tasks)) {
+                    rez += result.get();
+                }
+                if (amaf != null) {
+                    for (MCTAmafMoves taskAmaf : taskAmafMoves) {
+                        amaf.addAll(taskAmaf);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChessboardException("leaf parallel simulation was interrupted");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof ChessboardException) { throw (ChessboardException) e.getCause(); }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        this.stats.numberOfMatsInSimulation += rez;
+        return rez;
+    }
 
-        for (int x = 0; x < MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION; x++) {
-            this.simulationChessboard = new Chessboard(temp, "simulation Chessboard");
+
+    /**
+     * Plays random simulations from current state of <code>board</code>. Every
+     * simulation is taken back, so the board is left in the same state.
+     * 
+     * @param board
+     *            chess board on which simulations are played
+     * @param numberOfPlayouts
+     *            number of simulations
+     * @param random
+     *            random used for choosing moves
+     * @param amaf
+     *            where moves made in simulations are recorded,
+     *            <code>null</code> if they aren't recorded
+     * @return number of mats that happened in simulations
+     * @throws ChessboardException
+     */
+    private static int runPlayouts(IChessboard board, int numberOfPlayouts, Random random, MCTAmafMoves amaf) throws ChessboardException {
+        int rez = 0;
+        int nodePly = board.getNumberOfPliesMade();
+        MoveList legalMoves = MoveList.acquire();
+
+        for (int x = 0; x < numberOfPlayouts; x++) {
 
             while (true) {
-                ChessboardEvalState gameState = this.simulationChessboard.evaluateChessboardFromWhitesPerpective();
+                ChessboardEvalState gameState = board.evaluateChessboardFromWhitesPerpective();
                 if (gameState == ChessboardEvalState.NORMAl) {
-                    ArrayList<Move> legalMoves = this.simulationChessboard.getLegalMoves();
-                    Random random = new Random();
-                    Move selectedMove = legalMoves.get(random.nextInt(legalMoves.size()));
-                    this.simulationChessboard.makeAMove(selectedMove.moveNumber);
+                    legalMoves.clear();
+                    board.getLegalMoves(legalMoves);
+                    int selectedMove = legalMoves.get(random.nextInt(legalMoves.size()));
+                    board.makeAMove(selectedMove);
+                    if (amaf != null) {
+                        amaf.addMove(selectedMove);
+                    }
                 }
                 else {
                     if (gameState == ChessboardEvalState.BLACK_KING_MATED) {
-                        ++this.stats.numberOfMatsInSimulation;
                         ++rez;
                     }
+                    if (amaf != null) {
+                        amaf.endPlayout(gameState == ChessboardEvalState.BLACK_KING_MATED);
+                    }
                     break;
                 }
             }
 
+            board.unmakeMovesToPly(nodePly);
         }
 
+        MoveList.release(legalMoves);
         return rez;
     }
 
 
+    /**
+     * Creates task that plays simulations on given chess board with random of
+     * thread that runs it.
+     * 
+     * @param board
+     *            chess board that is used only by this task
+     * @param numberOfPlayouts
+     *            number of simulations
+     * @param amaf
+     *            where moves made in simulations are recorded,
+     *            <code>null</code> if they aren't recorded
+     * @return task that returns number of mats
+     */
+    private static Callable<Integer> playoutsTask(final IChessboard board, final int numberOfPlayouts, final MCTAmafMoves amaf) {
+        return new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws ChessboardException {
+                return MCT.runPlayouts(board, numberOfPlayouts, MCT.LEAF_RANDOM.get(), amaf);
+            }
+        };
+    }
+
+
     /**
      * Makes one step in MCT algorithm (selection, expansion, simulation,
      * backpropagation ).
@@ -249,45 +637,796 @@ public class MCT {
      * @throws ChessboardException
      */
     public void oneMCTStep() throws ChessboardException {
+        if (MCTSSetup.USE_RAVE) {
+            this.amafMoves.clear();
+        }
+
+        this.selectedPathLength = 0;
+        this.virtualLossIndex = 0;
+        this.addToSelectedPath(this.root, this.store.getMoveNumber(this.root));
+        int node = this.selection(this.root);
+        int diff = this.isSolved(node) ? MCT.getProvenNumberOfMats(this.store.getProofState(node)) : this.simulation();
+
+        // node already holds evaluation of its chess board state
+        boolean nodeIsMat = this.store.getEval(node) == ChessboardEvalState.BLACK_KING_MATED;
+
+        this.backPropagation(diff, this.store.getMoveDepth(node), nodeIsMat);
+        if (MCTSSetup.USE_RAVE) {
+            this.updateAmafStatistics(diff);
+        }
+
         this.resetSimulationChessboard();
+    }
+
+
+    /**
+     * Updates all moves as first statistics of children of nodes on selected
+     * path. Child gets statistics of all simulations of current step in which
+     * its move was made after its parent's state, either lower on selected
+     * path or in simulation. Moves of different players never match, because
+     * move number holds moved piece.
+     * 
+     * @param numberOfMats
+     *            number of check mates that appeared in the simulations
+     */
+    private void updateAmafStatistics(int numberOfMats) {
+        MoveList pathMoves = MoveList.acquire();
+        int lastNode = this.selectedPathLength - 1;
+
+        for (int x = lastNode; x >= 0; x--) {
+            int node = this.selectedPath[x];
+            if (x < lastNode) {
+                pathMoves.add(this.selectedMoves[x + 1]);
+            }
+
+            for (int edge = this.store.getFirstEdge(node); edge != MCTNodeStore.NO_NODE; edge = this.store.getNextEdge(node, edge)) {
+                int moveNumber = this.store.getEdgeMove(node, edge);
+                int child = this.store.getEdgeChild(node, edge);
+                if (pathMoves.contains(moveNumber)) {
+                    // move on selected path was made in every simulation
+                    this.store.addAmafVisits(child, MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION, numberOfMats);
+                }
+                else if (this.amafMoves.getNumberOfPlayouts(moveNumber) > 0) {
+                    this.store.addAmafVisits(child, this.amafMoves.getNumberOfPlayouts(moveNumber), this.amafMoves.getNumberOfMats(moveNumber));
+                }
+            }
+        }
+
+        MoveList.release(pathMoves);
+    }
+
+
+    /**
+     * Checks if node's value is proven when {@link MCTSSetup#USE_SOLVER} is
+     * set. Node that isn't proven yet is proven from its children if
+     * possible, so proofs missed by backpropagation are not lost.
+     * 
+     * @param node
+     *            id of node
+     * @return <code>true</code> if solver is used and node is proven
+     */
+    private boolean isSolved(int node) {
+        return MCTSSetup.USE_SOLVER && (this.store.getProofState(node) != MCTProofState.UNPROVEN || this.updateProofState(node));
+    }
+
+
+    /**
+     * Tries to prove value of node from its children. Player on the move wins
+     * if any child is his win. He loses if all his legal moves have been added
+     * and every child is his loss.
+     * 
+     * @param node
+     *            id of node
+     * @return <code>true</code> if node was proven by this call
+     */
+    private boolean updateProofState(int node) {
+        if (this.store.getProofState(node) != MCTProofState.UNPROVEN || this.store.getFirstEdge(node) == MCTNodeStore.NO_NODE) { return false; }
+
+        boolean isWhitesMove = this.store.isWhitesMove(node);
+        MCTProofState win = MCTProofState.winOf(isWhitesMove);
+        MCTProofState loss = MCTProofState.lossOf(isWhitesMove);
+        boolean areAllChildrenLost = this.store.areAllLegalMovesAdded(node);
+        for (int edge = this.store.getFirstEdge(node); edge != MCTNodeStore.NO_NODE; edge = this.store.getNextEdge(node, edge)) {
+            MCTProofState childProofState = this.store.getProofState(this.store.getEdgeChild(node, edge));
+            if (childProofState == win) {
+                this.store.setProofState(node, win);
+                return true;
+            }
+            if (childProofState != loss) {
+                areAllChildrenLost = false;
+            }
+        }
+
+        if (areAllChildrenLost) {
+            this.store.setProofState(node, loss);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Checks if value of root is proven, so further search can't change it.
+     * 
+     * @return <code>true</code> if solver is used and root is proven
+     */
+    private boolean isRootSolved() {
+        return this.isSolved(this.root);
+    }
+
+
+    /**
+     * Gets result of simulations from proven node, they don't have to be
+     * played.
+     * 
+     * @param proofState
+     *            value of node
+     * @return number of check mates in simulations
+     */
+    private static int getProvenNumberOfMats(MCTProofState proofState) {
+        return proofState == MCTProofState.WHITE_WINS ? MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION : 0;
+    }
+
+
+    /**
+     * Runs <code>numberOfSteps</code> MCT steps. If root parallelization is
+     * used every tree runs <code>numberOfSteps</code> steps on its own thread.
+     * 
+     * @param numberOfSteps
+     *            number of steps run by every tree
+     * @throws ChessboardException
+     */
+    public void runSteps(final int numberOfSteps) throws ChessboardException {
+        this.search(new MCTSearchLimits(numberOfSteps));
+    }
+
+
+    /**
+     * Runs MCT steps until any of the search limits is reached. Time limit is
+     * checked before every step, so search ends at most one step after the
+     * deadline. If root parallelization is used every tree searches on its
+     * own thread until the same deadline.
+     * 
+     * @param limits
+     *            search limits, if none is set no steps are run
+     * @return number of steps run on this tree
+     * @throws ChessboardException
+     */
+    public int search(MCTSearchLimits limits) throws ChessboardException {
+        if (!limits.isLimited()) { return 0; }
+
+        long deadline = limits.getTimeLimit() > 0 ? System.nanoTime() + limits.getTimeLimit() * 1000000L : Long.MAX_VALUE;
+
+        if (this.rootParallelTrees.length == 0) { return this.searchTree(limits, deadline); }
+
+        AtomicInteger steps = new AtomicInteger();
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        tasks.add(this.searchTask(this, limits, deadline, steps));
+        for (MCT tree : this.rootParallelTrees) {
+            tasks.add(this.searchTask(tree, limits, deadline, null));
+        }
+        MCT.runInParallel(tasks);
+        return steps.get();
+    }
+
+
+    /**
+     * Searches this tree until any of the limits is reached. If tree
+     * parallelization is used threads that share this tree also share its
+     * budget. When tree reaches {@link MCTSSetup#MAXIMUM_NUMBER_OF_NODES}
+     * search pauses, least valuable subtrees are pruned and search continues.
+     * With {@link MCTSSetup#EARLY_STOP} search ends as soon as best move is
+     * known and steps it saved are added to statistics.
+     * 
+     * @param limits
+     *            search limits
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @return number of steps run on this tree
+     * @throws ChessboardException
+     */
+    private int searchTree(MCTSearchLimits limits, long deadline) throws ChessboardException {
+        AtomicInteger steps = new AtomicInteger();
+        int maximumNumberOfSteps = limits.getMaximumNumberOfSteps();
+        int maximumTreeSize = limits.getNumberOfNodes() > 0 ? this.getCurrentTreeSize() + limits.getNumberOfNodes() : Integer.MAX_VALUE;
+        int treeSizeCap = MCTSSetup.MAXIMUM_NUMBER_OF_NODES > 0 ? MCTSSetup.MAXIMUM_NUMBER_OF_NODES : Integer.MAX_VALUE;
+
+        while (true) {
+            this.runSearches(limits, steps, maximumNumberOfSteps, Math.min(maximumTreeSize, treeSizeCap), deadline);
+
+            // continue only if search was paused because tree is full
+            int treeSize = this.getCurrentTreeSize();
+            if (treeSize < treeSizeCap || treeSize >= maximumTreeSize || limits.isStopped() || System.nanoTime() >= deadline
+                    || steps.get() >= maximumNumberOfSteps) {
+                break;
+            }
+
+            int numberOfPrunedNodes = this.pruneTree(treeSizeCap - treeSizeCap / 4);
+            if (numberOfPrunedNodes == 0) {
+                break;
+            }
+
+            // pruned nodes don't count to node budget
+            if (maximumTreeSize != Integer.MAX_VALUE) {
+                maximumTreeSize -= numberOfPrunedNodes;
+            }
+        }
+
+        // search that ended before other limits were reached was stopped
+        // early
+        int treeSize = this.getCurrentTreeSize();
+        if (MCTSSetup.EARLY_STOP && !limits.isStopped() && !this.isRootSolved() && treeSize < maximumTreeSize && treeSize < treeSizeCap) {
+            long savedSteps = this.estimateRemainingSteps(limits, steps.get(), maximumNumberOfSteps, deadline);
+            if (savedSteps != Long.MAX_VALUE) {
+                this.stats.numberOfSavedSteps += savedSteps;
+            }
+        }
+
+        return steps.get();
+    }
+
+
+    /**
+     * Estimates how many more steps search could run. With time limit it is
+     * estimated from number of steps run so far.
+     * 
+     * @param limits
+     *            search limits
+     * @param steps
+     *            number of steps run on tree
+     * @param maximumNumberOfSteps
+     *            maximum number of steps run on tree
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @return number of remaining steps or {@link Long#MAX_VALUE} if it's
+     *         not known
+     */
+    private long estimateRemainingSteps(MCTSearchLimits limits, int steps, int maximumNumberOfSteps, long deadline) {
+        long rez = maximumNumberOfSteps == Integer.MAX_VALUE ? Long.MAX_VALUE : maximumNumberOfSteps - steps;
+
+        if (limits.getTimeLimit() > 0 && steps > 0) {
+            long now = System.nanoTime();
+            long elapsed = now - (deadline - limits.getTimeLimit() * 1000000L);
+            if (elapsed > 0) {
+                rez = Math.min(rez, (long) ((double) steps * Math.max(deadline - now, 0) / elapsed));
+            }
+        }
+        return Math.max(rez, 0);
+    }
+
+
+    /**
+     * Checks if white would choose same move, if search ran until its budget
+     * is used up. It is so when root child with most visits has more visits
+     * than any other child could get in remaining steps. With
+     * {@link MCTSSetup#EARLY_STOP_CONFIDENCE} it is enough that confidence
+     * intervals of values of two most visited children are separated. With
+     * {@link MCTSSetup#USE_SOLVER} proven children are chosen by their proof
+     * instead of visits, so search doesn't stop early once any root child is
+     * proven. Only proof that would be found in remaining steps could change
+     * the move.
+     * 
+     * @param limits
+     *            search limits
+     * @param steps
+     *            number of steps run on tree
+     * @param maximumNumberOfSteps
+     *            maximum number of steps run on tree
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @return <code>true</code> if search can stop
+     */
+    private boolean isBestRootMoveDecided(MCTSearchLimits limits, int steps, int maximumNumberOfSteps, long deadline) {
+        if (!MCTSSetup.EARLY_STOP || MCTSSetup.WHITE_MOVE_CHOOSER_STRATEGY != WhiteChooserStrategy.MAX_VISIT_COUNT
+                || MCTSSetup.NUMBER_OF_ROOT_PARALLEL_TREES > 1) { return false; }
+
+        // visits and mats of two most visited children
+        int bestVisits = 0;
+        int bestMats = 0;
+        int secondVisits = 0;
+        int secondMats = 0;
+        if (!this.store.isWhitesMove(this.root)) { return false; }
+
+        for (int edge = this.store.getFirstEdge(this.root); edge != MCTNodeStore.NO_NODE; edge = this.store.getNextEdge(this.root, edge)) {
+            int child = this.store.getEdgeChild(this.root, edge);
+            if (MCTSSetup.USE_SOLVER && this.store.getProofState(child) != MCTProofState.UNPROVEN) { return false; }
+            int visits = this.store.getVisitCount(child);
+            if (visits > bestVisits) {
+                secondVisits = bestVisits;
+                secondMats = bestMats;
+                bestVisits = visits;
+                bestMats = this.store.getNumberOfMats(child);
+            }
+            else if (visits > secondVisits) {
+                secondVisits = visits;
+                secondMats = this.store.getNumberOfMats(child);
+            }
+        }
+        if (bestVisits == 0) { return false; }
+
+        // other threads could be running steps that are already counted
+        long remainingSteps = this.estimateRemainingSteps(limits, steps, maximumNumberOfSteps, deadline);
+        if (remainingSteps != Long.MAX_VALUE) {
+            long remainingVisits = (remainingSteps + MCTSSetup.NUMBER_OF_TREE_PARALLEL_THREADS - 1) * MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION;
+            if (bestVisits - secondVisits > remainingVisits) { return true; }
+        }
+
+        if (MCTSSetup.EARLY_STOP_CONFIDENCE > 0 && secondVisits > 0 && bestVisits > secondVisits) {
+            // standard deviation of mean of simulation results is at most
+            // 1 / (2 * sqrt(n))
+            double bestLowerBound = (double) bestMats / bestVisits - MCTSSetup.EARLY_STOP_CONFIDENCE / (2 * Math.sqrt(bestVisits));
+            double secondUpperBound = (double) secondMats / secondVisits + MCTSSetup.EARLY_STOP_CONFIDENCE / (2 * Math.sqrt(secondVisits));
+            if (bestLowerBound > secondUpperBound) { return true; }
+        }
+        return false;
+    }
 
-        MCTNode node = this.selection(this.root);
-        int diff = this.simulation(node);
 
-        SimpleChessboard newCB = new Chessboard("temp eval", node);
+    /**
+     * Runs MCT steps on this tree until any of the limits is reached. If tree
+     * parallelization is used steps are run by all searches that share this
+     * tree.
+     * 
+     * @param limits
+     *            search limits
+     * @param steps
+     *            counter of steps run on tree
+     * @param maximumNumberOfSteps
+     *            maximum number of steps run on tree
+     * @param maximumTreeSize
+     *            tree size at which search stops
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @throws ChessboardException
+     */
+    private void runSearches(MCTSearchLimits limits, AtomicInteger steps, int maximumNumberOfSteps, int maximumTreeSize, long deadline)
+            throws ChessboardException {
+        if (this.treeParallelSearches.length == 0) {
+            this.searchSerial(limits, steps, maximumNumberOfSteps, maximumTreeSize, deadline);
+            return;
+        }
+
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        tasks.add(this.serialSearchTask(this, limits, steps, maximumNumberOfSteps, maximumTreeSize, deadline));
+        for (MCT search : this.treeParallelSearches) {
+            tasks.add(this.serialSearchTask(search, limits, steps, maximumNumberOfSteps, maximumTreeSize, deadline));
+        }
+        MCT.runInParallel(tasks);
 
-        boolean nodeIsMat = newCB.evaluateChessboard() == ChessboardEvalState.BLACK_KING_MATED;
+        // collect statistics of other searches
+        for (MCT search : this.treeParallelSearches) {
+            this.stats.numberOfMatsInSimulation += search.stats.numberOfMatsInSimulation;
+            this.stats.numberOfMatsInSimAddsOneNode += search.stats.numberOfMatsInSimAddsOneNode;
+            search.stats = new MCTStats();
+        }
+    }
+
+
+    /**
+     * Prunes least valuable subtrees until tree has at most
+     * <code>treeSize</code> nodes. Subtrees of least visited nodes are
+     * removed first, node whose subtree was removed becomes leaf that keeps
+     * its statistics and can be expanded again. Removed nodes are reclaimed by
+     * compaction of the store. It must not be called while tree is searched.
+     * 
+     * @param treeSize
+     *            tree size that should be reached
+     * @return number of removed nodes
+     */
+    private int pruneTree(int treeSize) {
+        int initialTreeSize = this.getCurrentTreeSize();
+
+        // with transpositions subtree of pruned node can still be reachable
+        // through other parents, so tree is recounted after every pass
+        while (this.prunePass(treeSize)) {
+            this.setRoot(this.store.compact(this.root));
+            if (this.getCurrentTreeSize() <= treeSize) {
+                break;
+            }
+        }
 
-        this.backPropagation(node, diff, node.mcDepth, nodeIsMat);
+        int numberOfPrunedNodes = initialTreeSize - this.getCurrentTreeSize();
+        this.stats.numberOfPrunedNodes += numberOfPrunedNodes;
+        this.log.fine("Iz drevesa je bilo odstranjenih " + numberOfPrunedNodes + " vozlisc");
+        return numberOfPrunedNodes;
+    }
+
+
+    /**
+     * Removes children of least visited inner nodes until sizes of removed
+     * subtrees reach difference between current and wanted tree size.
+     * 
+     * @param treeSize
+     *            tree size that should be reached
+     * @return <code>true</code> if any node was removed
+     */
+    private boolean prunePass(int treeSize) {
+        int maximumNumberOfNodes = this.store.size();
+        int[] preorder = new int[maximumNumberOfNodes];
+        int[] stack = new int[maximumNumberOfNodes];
+        long[] keys = new long[maximumNumberOfNodes];
+        int numberOfNodes = 0;
+        int numberOfInnerNodes = 0;
+        int stackSize = 0;
+        stack[stackSize++] = this.root;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            int index = numberOfNodes++;
+            preorder[index] = node;
+            if (node != this.root && this.store.getFirstEdge(node) != MCTNodeStore.NO_NODE) {
+                // visits in high bits, descendants come later in preorder so
+                // reversed index puts them first among nodes with same visits
+                keys[numberOfInnerNodes++] = (long) this.store.getVisitCount(node) << 32 | (maximumNumberOfNodes - 1 - index);
+            }
+
+            // with transpositions node is reached only from the parent it
+            // points to, so every node is collected once
+            for (int edge = this.store.getFirstEdge(node); edge != MCTNodeStore.NO_NODE; edge = this.store.getNextEdge(node, edge)) {
+                int child = this.store.getEdgeChild(node, edge);
+                if (this.store.getParent(child) == node) {
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+
+        // node has no more visits than its parent, so descendants are pruned
+        // before their ancestors; shared node can have more visits, but its
+        // removed descendants have no path to the root
+        Arrays.sort(keys, 0, numberOfInnerNodes);
+
+        int currentTreeSize = this.getCurrentTreeSize();
+        int numberOfPrunedNodes = 0;
+        for (int x = 0; x < numberOfInnerNodes; x++) {
+            if (currentTreeSize - numberOfPrunedNodes <= treeSize) {
+                break;
+            }
+
+            numberOfPrunedNodes += this.store.removeChildren(preorder[maximumNumberOfNodes - 1 - (int) keys[x]]);
+        }
+
+        return numberOfPrunedNodes > 0;
+    }
+
+
+    /**
+     * Runs MCT steps on current thread until any of the limits is reached,
+     * search is stopped or value of root is proven. Step is reserved in <code>steps</code> before it is
+     * run, so threads that share the counter don't exceed step limit together.
+     *
+     * @param limits
+     *            search limits, used to check if search was stopped
+     * @param steps
+     *            counter of steps run on tree
+     * @param maximumNumberOfSteps
+     *            maximum number of steps run on tree
+     * @param maximumTreeSize
+     *            tree size at which search stops
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @throws ChessboardException
+     */
+    private void searchSerial(MCTSearchLimits limits, AtomicInteger steps, int maximumNumberOfSteps, int maximumTreeSize, long deadline)
+            throws ChessboardException {
+        while (!limits.isStopped() && System.nanoTime() < deadline && this.getCurrentTreeSize() < maximumTreeSize && !this.isRootSolved()
+                && !this.isBestRootMoveDecided(limits, steps.get(), maximumNumberOfSteps, deadline)) {
+            if (steps.incrementAndGet() > maximumNumberOfSteps) {
+                steps.decrementAndGet();
+                return;
+            }
+            this.oneMCTStep();
+        }
+    }
+
+
+    /**
+     * Starts searching this tree on background thread, until
+     * {@link #stopPondering()} is called. Meanwhile main chess board must not
+     * change, but it can be read (for example by black move chooser). Does
+     * nothing if tree is already pondering.
+     */
+    public void startPondering() {
+        if (this.pondering != null) { return; }
+
+        this.ponderingLimits = MCTSearchLimits.untilStopped();
+        final MCTSearchLimits limits = this.ponderingLimits;
+        this.pondering = MCT.getExecutor().submit(new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws ChessboardException {
+                return MCT.this.search(limits);
+            }
+        });
+    }
+
+
+    /**
+     * Stops pondering and waits until background search finishes, steps it
+     * ran stay in the tree. Does nothing if tree isn't pondering.
+     * 
+     * @throws ChessboardException
+     *             if pondering search threw it
+     */
+    public void stopPondering() throws ChessboardException {
+        if (this.pondering == null) { return; }
+
+        this.ponderingLimits.stop();
+        try {
+            int steps = this.pondering.get();
+            this.stats.numberOfPonderedSteps += steps;
+            this.log.fine("Med razmisljanjem crnega je bilo narejenih " + steps + " korakov");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChessboardException("pondering was interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ChessboardException) { throw (ChessboardException) e.getCause(); }
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            this.pondering = null;
+            this.ponderingLimits = null;
+        }
+    }
+
+
+    /**
+     * Runs tasks on shared executor and waits until all of them are finished.
+     * 
+     * @param tasks
+     *            tasks
+     * @throws ChessboardException
+     *             if any of the tasks threw it
+     */
+    private static void runInParallel(ArrayList<Callable<Void>> tasks) throws ChessboardException {
+        ExecutorService executor = MCT.getExecutor();
+        ArrayList<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (Callable<Void> task : tasks) {
+            results.add(executor.submit(task));
+        }
+
+        try {
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChessboardException("parallel search was interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ChessboardException) { throw (ChessboardException) e.getCause(); }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+
+    /**
+     * Creates task that searches given tree.
+     * 
+     * @param tree
+     *            tree which is searched
+     * @param limits
+     *            search limits
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @param steps
+     *            counter to which number of steps run on tree is added, can
+     *            be <code>null</code>
+     * @return task
+     */
+    private Callable<Void> searchTask(final MCT tree, final MCTSearchLimits limits, final long deadline, final AtomicInteger steps) {
+        return new Callable<Void>() {
+
+            @Override
+            public Void call() throws ChessboardException {
+                int treeSteps = tree.searchTree(limits, deadline);
+                if (steps != null) {
+                    steps.addAndGet(treeSteps);
+                }
+                return null;
+            }
+        };
+    }
+
+
+    /**
+     * Creates task that runs MCT steps of given search on task's thread.
+     * 
+     * @param search
+     *            search that runs steps
+     * @param limits
+     *            search limits
+     * @param steps
+     *            counter of steps run on tree
+     * @param maximumNumberOfSteps
+     *            maximum number of steps run on tree
+     * @param maximumTreeSize
+     *            tree size at which search stops
+     * @param deadline
+     *            {@link System#nanoTime()} at which search stops
+     * @return task
+     */
+    private Callable<Void> serialSearchTask(final MCT search, final MCTSearchLimits limits, final AtomicInteger steps, final int maximumNumberOfSteps,
+            final int maximumTreeSize, final long deadline) {
+        return new Callable<Void>() {
+
+            @Override
+            public Void call() throws ChessboardException {
+                search.searchSerial(limits, steps, maximumNumberOfSteps, maximumTreeSize, deadline);
+                return null;
+            }
+        };
+    }
+
+
+    /**
+     * Gets executor used by parallel searches. Executor threads are
+     * daemons, so they don't keep application alive.
+     * 
+     * @return executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (MCT.executor == null) {
+            MCT.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "MCT parallel search");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return MCT.executor;
+    }
+
+
+    /**
+     * Gets executor used by leaf parallel simulations. Its parallelism is
+     * {@link MCTSSetup#NUMBER_OF_LEAF_PARALLEL_THREADS}.
+     * 
+     * @return executor
+     */
+    private static synchronized ForkJoinPool getLeafExecutor() {
+        if (MCT.leafExecutor == null || MCT.leafExecutor.getParallelism() != MCTSSetup.NUMBER_OF_LEAF_PARALLEL_THREADS) {
+            if (MCT.leafExecutor != null) {
+                MCT.leafExecutor.shutdown();
+            }
+            MCT.leafExecutor = new ForkJoinPool(MCTSSetup.NUMBER_OF_LEAF_PARALLEL_THREADS);
+        }
+        return MCT.leafExecutor;
+    }
+
+
+    /**
+     * Merges root children of all root parallel trees. Visit counts and
+     * number of check mates of children that represent same move are summed.
+     * 
+     * @return snapshot of root whose children hold merged statistics
+     */
+    private MCTNode mergeRootParallelTrees() {
+        MCTNode root = this.getRootNode();
+        MCTNode merged = new MCTNode(root);
+        merged.getOrCreateChildren();
+        this.mergeRootChildren(merged, root);
+
+        for (MCT tree : this.rootParallelTrees) {
+            MCTNode treeRoot = tree.getRootNode();
+            merged.visitCount += treeRoot.visitCount;
+            merged.numberOfMatsInNode += treeRoot.numberOfMatsInNode;
+            this.mergeRootChildren(merged, treeRoot);
+        }
+
+        return merged;
+    }
+
+
+    /**
+     * Adds statistics of <code>root</code>'s children to children of
+     * <code>merged</code>.
+     * 
+     * @param merged
+     *            snapshot root into which statistics are merged
+     * @param root
+     *            root of one of root parallel trees
+     */
+    private void mergeRootChildren(MCTNode merged, MCTNode root) {
+        if (root.children == null) { return; }
+
+        for (MCTNode child : root.children.values()) {
+            Move move = new Move(child.moveNumber);
+            MCTNode mergedChild = merged.children.get(move);
+            if (mergedChild == null) {
+                mergedChild = new MCTNode(child);
+                mergedChild.parent = merged;
+                merged.children.put(move, mergedChild);
+            }
+            else {
+                if (child.isProven()) {
+                    mergedChild.proofState = child.proofState;
+                }
+                mergedChild.visitCount += child.visitCount;
+                mergedChild.numberOfMatsInNode += child.numberOfMatsInNode;
+                mergedChild.maximumSubTreeDepth = Math.max(mergedChild.maximumSubTreeDepth, child.maximumSubTreeDepth);
+                mergedChild.minimumDepthOfDescendadWhoRepresentsCheckMate = Math.min(mergedChild.minimumDepthOfDescendadWhoRepresentsCheckMate,
+                        child.minimumDepthOfDescendadWhoRepresentsCheckMate);
+            }
+        }
     }
 
 
     /**
      * Chooses a root child that represent move number. If such child does not
-     * exist then a new root node is created (a tree collapse happens).
+     * exist then a new root node is created (a tree collapse happens). If tree
+     * is pondering, pondering is stopped first, so its work is kept in chosen
+     * child.
      * 
      * @param moveNumber
      *            move that will be made
      * @throws ChessboardException
      */
     public void makeMCMove(int moveNumber) throws ChessboardException {
+        this.stopPondering();
 
-        Move move = new Move(moveNumber);
+        int depth = this.store.getMoveDepth(this.root) + 1;
+        int child = this.store.getChild(this.root, moveNumber);
 
-        if (this.root.children.get(move) == null) {
-            this.log.fine("V polpotezi " + (this.root.moveDepth + 1) + " je prilo do zruitve drevesa");
-            this.stats.numberOfMCTreeColapses++;
-            this.root = new MCTNode(moveNumber, this.root.moveDepth + 1, this.mainChessboard);
+        if (child != MCTNodeStore.NO_NODE) {
+            // rest of the tree is discarded, store reclaims it when it decides
+            // so
+            child = this.store.makeRoot(child);
+
+            // if kept subtree alone fills the store, search starts with new
+            // tree
+            if (this.store.isFull()) {
+                this.log.fine("V polpotezi " + depth + " je shramba vozlisc polna, drevo se zacne znova");
+                child = MCTNodeStore.NO_NODE;
+            }
         }
-        else {
-            this.root = this.root.children.get(move);
+
+        if (child == MCTNodeStore.NO_NODE) {
+            this.log.fine("V polpotezi " + depth + " je prilo do zruitve drevesa");
+            this.stats.numberOfMCTreeColapses++;
+
+            IChessboard temp = this.mainChessboard.copy("temp");
+            temp.makeAMove(moveNumber);
+            this.store.clear();
+            child = this.store.addRoot(moveNumber, depth, temp.evaluateChessboardFromWhitesPerpective());
         }
+        this.setRoot(child);
+        this.selectedPathLength = 0;
 
         this.mainChessboard.makeAMove(moveNumber);
+        this.simulationChessboard.makeAMove(moveNumber);
+
+        for (MCT tree : this.rootParallelTrees) {
+            tree.makeMCMove(moveNumber);
+        }
+
+        for (MCT search : this.treeParallelSearches) {
+            search.selectedPathLength = 0;
+            search.simulationChessboard.makeAMove(moveNumber);
+        }
 
     }
 
 
+    /**
+     * Sets root of the tree in this search and in all searches that share the
+     * tree.
+     * 
+     * @param root
+     *            id of new root
+     */
+    private void setRoot(int root) {
+        this.root = root;
+        for (MCT search : this.treeParallelSearches) {
+            search.root = root;
+        }
+    }
+
+
     /**
      * Finds a legal move that can be played.
      * 
@@ -301,16 +1440,20 @@ public class MCT {
     public int chooseAMoveNumber(WhiteChooserStrategy whiteChoosingStrategy, BlackFinderStrategy blackChoosingStrategy) throws ChessboardException {
         int rez = -1;
 
-        if (this.root.isWhitesMove) {
+        if (this.store.isWhitesMove(this.root)) {
+
+            // with root parallelization we choose from merged statistics of
+            // all trees
+            MCTNode root = this.rootParallelTrees.length == 0 ? this.getRootNode() : this.mergeRootParallelTrees();
 
             // update MCTS related statistics
-            this.stats.updateNodeStats(this.root);
+            this.stats.updateNodeStats(root);
 
             // choose white move
-            rez = WhiteMoveChooser.chooseAMove(this.root, whiteChoosingStrategy, this.log);
+            rez = WhiteMoveChooser.chooseAMove(root, whiteChoosingStrategy, this.log);
 
             // node that was chosen by move chooser
-            MCTNode selectedNode = this.root.children.get(new Move(rez));
+            MCTNode selectedNode = root.children.get(new Move(rez));
 
             // update selected node statistics
             this.stats.getNodesSelectedStatistics().updateSingleNodeStats(selectedNode);
@@ -363,8 +1506,29 @@ public class MCT {
      * @return MC tree size
      */
     public int getCurrentTreeSize() {
+        return this.store.getNumberOfSuccessors(this.root) + 1;
+    }
 
-        return this.root.getNumberOfSuccessors() + 1;
+
+    /**
+     * Gets snapshot of root and its children. Root becomes parent of all its
+     * children, so their move numbers are moves from root. Snapshots have no
+     * chess boards, they are used by move choosers and statistics.
+     * 
+     * @return root node
+     */
+    private MCTNode getRootNode() {
+        MCTNode snapshot = new MCTNode(this.store, this.root);
+        snapshot.getOrCreateChildren();
+        for (int edge = this.store.getFirstEdge(this.root); edge != MCTNodeStore.NO_NODE; edge = this.store.getNextEdge(this.root, edge)) {
+            MCTNode childSnapshot = new MCTNode(this.store, this.store.getEdgeChild(this.root, edge));
+
+            // root children could have been added by root's former siblings
+            childSnapshot.moveNumber = this.store.getEdgeMove(this.root, edge);
+            childSnapshot.parent = snapshot;
+            snapshot.children.put(new Move(childSnapshot.moveNumber), childSnapshot);
+        }
+        return snapshot;
     }
 
 
@@ -373,14 +1537,19 @@ public class MCT {
      * 
      * @return main chess board
      */
-    public Chessboard getMainChessboard() {
+    public IChessboard getMainChessboard() {
         return this.mainChessboard;
     }
 
 
-    /** Sets simulation chess board state to main chess board state */
-    private void resetSimulationChessboard() {
-        this.simulationChessboard = new Chessboard(this.mainChessboard, "Simulation board");
+    /**
+     * Sets simulation chess board state to main chess board state by taking
+     * back moves made during MCT step.
+     * 
+     * @throws ChessboardException
+     */
+    private void resetSimulationChessboard() throws ChessboardException {
+        this.simulationChessboard.unmakeMovesToPly(this.mainChessboard.getNumberOfPliesMade());
     }
 
 }
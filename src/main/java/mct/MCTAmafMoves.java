@@ -0,0 +1,129 @@
+package mct;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import chess.MoveList;
+import config.MCTSSetup;
+
+/**
+ * All moves as first (AMAF) statistics of simulations run in one MCT step.
+ * For every move that was made in simulations it counts in how many
+ * simulations it was made and how many of those ended with check mate. Move
+ * that was made more times in same simulation is counted once. Moves are
+ * recorded only when {@link MCTSSetup#USE_RAVE} is set.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTAmafMoves {
+
+    /**
+     * Statistics of moves, every value holds number of simulations, number of
+     * mats and number of last simulation in which move was made.
+     */
+    private HashMap<Integer, int[]> moves            = new HashMap<Integer, int[]>();
+
+    /** Moves made in current simulation */
+    private MoveList                playoutMoves     = new MoveList();
+
+    /** Number of finished simulations */
+    private int                     numberOfPlayouts = 0;
+
+
+    /**
+     * Records move made in current simulation.
+     *
+     * @param moveNumber
+     *            move number
+     */
+    public void addMove(int moveNumber) {
+        int[] counts = this.moves.get(moveNumber);
+        if (counts == null) {
+            counts = new int[3];
+            this.moves.put(moveNumber, counts);
+        }
+
+        // simulations are numbered from 1, so new move is never marked
+        if (counts[2] != this.numberOfPlayouts + 1) {
+            counts[2] = this.numberOfPlayouts + 1;
+            counts[0]++;
+            this.playoutMoves.add(moveNumber);
+        }
+    }
+
+
+    /**
+     * Finishes current simulation.
+     *
+     * @param isMat
+     *            <code>true</code> if simulation ended with check mate
+     */
+    public void endPlayout(boolean isMat) {
+        if (isMat) {
+            for (int x = 0; x < this.playoutMoves.size(); x++) {
+                this.moves.get(this.playoutMoves.get(x))[1]++;
+            }
+        }
+        this.playoutMoves.clear();
+        this.numberOfPlayouts++;
+    }
+
+
+    /**
+     * Adds statistics of simulations that were recorded by other instance (ie.
+     * by leaf parallel task).
+     *
+     * @param other
+     *            statistics of other simulations
+     */
+    public void addAll(MCTAmafMoves other) {
+        for (Map.Entry<Integer, int[]> entry : other.moves.entrySet()) {
+            int[] counts = this.moves.get(entry.getKey());
+            if (counts == null) {
+                counts = new int[3];
+                this.moves.put(entry.getKey(), counts);
+            }
+            counts[0] += entry.getValue()[0];
+            counts[1] += entry.getValue()[1];
+        }
+        this.numberOfPlayouts += other.numberOfPlayouts;
+    }
+
+
+    /**
+     * Gets number of simulations in which move was made.
+     *
+     * @param moveNumber
+     *            move number
+     * @return number of simulations
+     */
+    public int getNumberOfPlayouts(int moveNumber) {
+        int[] counts = this.moves.get(moveNumber);
+        return counts == null ? 0 : counts[0];
+    }
+
+
+    /**
+     * Gets number of simulations in which move was made and that ended with
+     * check mate.
+     *
+     * @param moveNumber
+     *            move number
+     * @return number of mats
+     */
+    public int getNumberOfMats(int moveNumber) {
+        int[] counts = this.moves.get(moveNumber);
+        return counts == null ? 0 : counts[1];
+    }
+
+
+    /**
+     * Removes all statistics, so instance can be used for next MCT step.
+     */
+    public void clear() {
+        this.moves.clear();
+        this.playoutMoves.clear();
+        this.numberOfPlayouts = 0;
+    }
+
+}
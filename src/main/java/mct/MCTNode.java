@@ -1,66 +1,109 @@
 package mct;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-
-import javax.management.RuntimeErrorException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import moveFinders.WhiteFinderStrategy;
 import utils.MCTUtils;
 import utils.Utils;
 import chess.Move;
-import chess.chessboard.Chessboard;
+import chess.MoveList;
 import chess.chessboard.ChessboardEvalState;
-import chess.chessboard.SimpleChessboard;
 import config.MCTSSetup;
-import exceptions.ChessboardException;
 
 /**
- * Class that represents node in Monte Carlo tree.
+ * Class that represents node in Monte Carlo tree. Nodes of
+ * {@link MCTObjectNodeStore} are records that MCT algorithm searches through
+ * their ids, they link their children through {@link #childNodes}. Move
+ * choosers and statistics get snapshots of nodes, which hold their children in
+ * {@link #children}.
  * 
  * @author Andraz Kohne
  */
 public class MCTNode {
 
-    /** Parent of current node */
+    /** Atomically updates <code>visitCount</code> */
+    private static final AtomicIntegerFieldUpdater<MCTNode>                      VISIT_COUNT_UPDATER    = AtomicIntegerFieldUpdater.newUpdater(MCTNode.class,
+                                                                                                                   "visitCount");
+
+    /** Atomically updates <code>numberOfMatsInNode</code> */
+    private static final AtomicIntegerFieldUpdater<MCTNode>                      NUMBER_OF_MATS_UPDATER = AtomicIntegerFieldUpdater.newUpdater(MCTNode.class,
+                                                                                                                   "numberOfMatsInNode");
+
+    /** Atomically updates <code>virtualLoss</code> */
+    private static final AtomicIntegerFieldUpdater<MCTNode>                      VIRTUAL_LOSS_UPDATER   = AtomicIntegerFieldUpdater.newUpdater(MCTNode.class,
+                                                                                                                   "virtualLoss");
+
+    /** Atomically updates <code>amafVisitCount</code> */
+    private static final AtomicIntegerFieldUpdater<MCTNode>                      AMAF_VISITS_UPDATER    = AtomicIntegerFieldUpdater.newUpdater(MCTNode.class,
+                                                                                                                   "amafVisitCount");
+
+    /** Atomically updates <code>amafNumberOfMats</code> */
+    private static final AtomicIntegerFieldUpdater<MCTNode>                      AMAF_MATS_UPDATER      = AtomicIntegerFieldUpdater.newUpdater(MCTNode.class,
+                                                                                                                   "amafNumberOfMats");
+
+    /**
+     * Parent of current node. If node is shared through
+     * {@link MCTTranspositionTable} this is the parent that added it.
+     */
     public MCTNode                parent;
 
-    /** This nodes descendants */
-    public HashMap<Move, MCTNode> children;
+    /**
+     * Children of snapshot by their moves, map is created with
+     * {@link #getOrCreateChildren()}. Nodes of {@link MCTObjectNodeStore}
+     * don't use it.
+     */
+    public ConcurrentHashMap<Move, MCTNode> children;
+
+    /**
+     * Id of node in {@link MCTObjectNodeStore}, {@link MCTNodeStore#NO_NODE}
+     * if node was discarded by compaction
+     */
+    int                           id                                            = MCTNodeStore.NO_NODE;
+
+    /**
+     * Children of node in {@link MCTObjectNodeStore}, only first
+     * {@link #numberOfChildren} of them are valid
+     */
+    MCTNode[]                     childNodes;
+
+    /** Moves that lead from node to {@link #childNodes} */
+    int[]                         childMoves;
+
+    /**
+     * Number of node's children in {@link MCTObjectNodeStore}. It is written
+     * after added child, so thread that reads it sees the child.
+     */
+    volatile int                  numberOfChildren                              = 0;
 
     /**
      * consecutive ply number of node (consecutive ply made in chess game).
      */
     public int                    moveDepth;
 
-    /** Nodes depth in MCT tree. */
-    public int                    mcDepth                                       = 1;
-
     /** Ply number. */
     public int                    moveNumber;
 
     /** How many times has this node been visited. */
-    public int                    visitCount;
+    public volatile int           visitCount;
 
     /**
      * Number of times check mate has been achieved when NCT algorithm visited
      * this node
      */
-    public int                    numberOfMatsInNode                            = 0;
+    public volatile int           numberOfMatsInNode                            = 0;
 
     /**
-     * C constant in MCT algorithm. Represents exploration/exploitation ration.
-     * Higher that C value is more it favors exploration, lower the C value is
-     * more it favors exploitation.
+     * Number of search threads that are currently searching below this node
+     * (multiplied by {@link MCTSSetup#VIRTUAL_LOSS}). Node looks to those
+     * threads as if it was visited without success.
      */
-    public double                 c;
+    public volatile int           virtualLoss                                   = 0;
 
     /** Tells if its whites turn in current ply */
     public boolean                isWhitesMove;
 
-    /** Chess board state belonging to this ply */
-    public Chessboard             chessboard;
-
     /**
      * Tells depth difference between this node and it's deepest descendant.
      */
@@ -78,38 +121,73 @@ public class MCTNode {
     private ChessboardEvalState   evalFromWhitesPerspective;
 
     /**
-     * Number of nodes successors (subtree size)
+     * Number of nodes successors (subtree size). It is incremented on every
+     * ancestor when node is added.
      */
-    private int                   numberOfSuccessors                            = 0;
+    volatile int                  numberOfSuccessors                            = 0;
 
     /**
      * All moves that are possible from this node according to
-     * {@link WhiteFinderStrategy}
+     * {@link WhiteFinderStrategy}. They are kept when node is first
+     * expanded, <code>null</code> before that.
+     */
+    volatile MoveList             validMoves;
+
+    /**
+     * Number of all legal moves of player on the move, including those that
+     * {@link #validMoves} leave out. It is counted with
+     * {@link MCTSSetup#USE_SOLVER} when node is first expanded, -1 otherwise.
+     */
+    volatile int                  numberOfLegalMoves                            = -1;
+
+    /**
+     * Game theoretic value of this node, it is proven from values of children
+     * when {@link MCTSSetup#USE_SOLVER} is set.
      */
-    public ArrayList<Move>        validMoves;
+    public volatile MCTProofState proofState;
+
+    /**
+     * Prior probability of move that leads to this node, used by PUCT
+     * selection. Node shared through {@link MCTTranspositionTable} keeps
+     * prior from parent that added it.
+     */
+    public float                  prior;
+
+    /**
+     * Prior probabilities of {@link #validMoves}, <code>null</code> if
+     * {@link MCTSSetup#USE_PUCT} isn't set.
+     */
+    volatile float[]              movePriors;
+
+    /**
+     * Number of simulations in which move that leads to this node was made
+     * after parent's state (all moves as first statistics), used if
+     * {@link MCTSSetup#USE_RAVE} is set.
+     */
+    public volatile int           amafVisitCount                                = 0;
+
+    /** Number of check mates in simulations counted in {@link #amafVisitCount} */
+    public volatile int           amafNumberOfMats                              = 0;
 
 
     /**
-     * Constructor that has receives board state from <code>board</code>.
+     * Constructor of node without parent.
      * 
-     * @param board
-     *            chess board representation from which we get chess board state
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
      */
-    public MCTNode(SimpleChessboard board) {
+    MCTNode(int moveNumber, int moveDepth, ChessboardEvalState eval) {
         this.parent = null;
-        this.moveDepth = 0;
-        this.moveNumber = 0;
+        this.moveDepth = moveDepth;
+        this.moveNumber = moveNumber;
         this.visitCount = 1;
-        this.c = MCTSSetup.C;
-        this.isWhitesMove = true;
-        this.chessboard = (Chessboard) board.clone();
-        try {
-            this.evalFromWhitesPerspective = board.evaluateChessboardFromWhitesPerpective();
-            this.validMoves = this.chessboard.getLegalMoves();
-        }
-        catch (ChessboardException e) {
-            throw new RuntimeErrorException(new Error(e));
-        }
+        this.isWhitesMove = Utils.isWhitesMoveAtDepth(moveDepth);
+        this.evalFromWhitesPerspective = eval;
+        this.proofState = MCTProofState.fromEval(eval);
     }
 
 
@@ -120,69 +198,187 @@ public class MCTNode {
      *            node parent
      * @param moveNumber
      *            numerical ply representation
-     * @throws ChessboardException
+     * @param prior
+     *            prior probability of the move
+     * @param eval
+     *            evaluation of chess board state we get by making
+     *            <code>moveNumber</code> from parent's state
      */
-    public MCTNode(MCTNode parent, int moveNumber) throws ChessboardException {
+    MCTNode(MCTNode parent, int moveNumber, float prior, ChessboardEvalState eval) {
         this.parent = parent;
-        this.moveDepth = this.parent.moveDepth + 1;
+        this.moveDepth = parent.moveDepth + 1;
         this.moveNumber = moveNumber;
         this.visitCount = 0;
-        this.c = MCTSSetup.C;
         this.isWhitesMove = !parent.isWhitesMove;
-        this.mcDepth = parent.mcDepth + 1;
+        this.evalFromWhitesPerspective = eval;
+        this.proofState = MCTProofState.fromEval(eval);
+        this.prior = prior;
+    }
+
 
-        Chessboard temp = new Chessboard("temp", parent);
-        temp.makeAMove(moveNumber);
-        this.chessboard = temp;
-        this.evalFromWhitesPerspective = temp.evaluateChessboardFromWhitesPerpective();
-        this.validMoves = this.chessboard.getLegalMoves();
+    /**
+     * Constructor that creates snapshot of <code>node</code>'s statistics.
+     * Snapshot has no parent and no children.
+     * 
+     * @param node
+     *            node from which statistics are copied
+     */
+    public MCTNode(MCTNode node) {
+        this.parent = null;
+        this.moveDepth = node.moveDepth;
+        this.moveNumber = node.moveNumber;
+        this.visitCount = node.visitCount;
+        this.numberOfMatsInNode = node.numberOfMatsInNode;
+        this.isWhitesMove = node.isWhitesMove;
+        this.maximumSubTreeDepth = node.maximumSubTreeDepth;
+        this.minimumDepthOfDescendadWhoRepresentsCheckMate = node.minimumDepthOfDescendadWhoRepresentsCheckMate;
+        this.evalFromWhitesPerspective = node.evalFromWhitesPerspective;
+        this.numberOfSuccessors = node.numberOfSuccessors;
+        this.validMoves = node.validMoves;
+        this.numberOfLegalMoves = node.numberOfLegalMoves;
+        this.proofState = node.proofState;
+        this.prior = node.prior;
+        this.movePriors = node.movePriors;
+        this.amafVisitCount = node.amafVisitCount;
+        this.amafNumberOfMats = node.amafNumberOfMats;
     }
 
 
     /**
-     * This constructor is used for setting up new root after MCT tree has
-     * collapsed
+     * Constructor that creates snapshot of node with id <code>node</code> from
+     * <code>store</code>. Snapshot has no parent, no children and no chess
+     * board.
      * 
-     * @param moveNumber
-     *            this nodes move number
-     * @param depth
-     *            this nodes depth
-     * @param boardState
-     *            chessboard that belong to this node
-     * @throws ChessboardException
-     */
-    public MCTNode(int moveNumber, int depth, SimpleChessboard boardState) throws ChessboardException {
+     * @param store
+     *            store that holds the node
+     * @param node
+     *            node id
+     */
+    MCTNode(MCTNodeStore store, int node) {
         this.parent = null;
-        this.moveDepth = depth;
-        this.moveNumber = moveNumber;
-        this.visitCount = 1;
-        this.c = MCTSSetup.C;
-        this.isWhitesMove = Utils.isWhitesMoveAtDepth(depth);
-
-        Chessboard temp = new Chessboard(boardState, "temp");
-        temp.makeAMove(moveNumber);
-        this.chessboard = temp;
-        this.evalFromWhitesPerspective = temp.evaluateChessboardFromWhitesPerpective();
-        this.validMoves = this.chessboard.getLegalMoves();
+        this.moveDepth = store.getMoveDepth(node);
+        this.moveNumber = store.getMoveNumber(node);
+        this.visitCount = store.getVisitCount(node);
+        this.numberOfMatsInNode = store.getNumberOfMats(node);
+        this.isWhitesMove = store.isWhitesMove(node);
+        this.maximumSubTreeDepth = store.getMaximumSubTreeDepth(node);
+        this.minimumDepthOfDescendadWhoRepresentsCheckMate = store.getMinimumDepthOfMate(node);
+        this.evalFromWhitesPerspective = store.getEval(node);
+        this.numberOfSuccessors = store.getNumberOfSuccessors(node);
+        this.proofState = store.getProofState(node);
+        this.prior = store.getPrior(node);
+        this.amafVisitCount = store.getAmafVisitCount(node);
+        this.amafNumberOfMats = store.getAmafNumberOfMats(node);
     }
 
 
     /**
-     * Creates child node that represents chess board state that we get by
-     * making a move from current instance's chess board state.
+     * Finds child of this node in {@link MCTObjectNodeStore} that represents
+     * given move.
      * 
-     * @param move
-     *            the move made from this instance
-     * @throws ChessboardException
+     * @param moveNumber
+     *            move made from this node
+     * @return child or <code>null</code> if there is no such child
      */
-    public MCTNode addNextMove(Move move) throws ChessboardException {
+    MCTNode getChild(int moveNumber) {
+        int numberOfChildren = this.numberOfChildren;
+        int[] childMoves = this.childMoves;
+        for (int x = 0; x < numberOfChildren; x++) {
+            if (childMoves[x] == moveNumber) { return this.childNodes[x]; }
+        }
+        return null;
+    }
+
+
+    /**
+     * Appends child to children of this node in {@link MCTObjectNodeStore}.
+     * Arrays grow before child is written, so reader that sees new number of
+     * children also sees arrays that hold the child.
+     * 
+     * @param moveNumber
+     *            move made from this node
+     * @param child
+     *            node that represents chess board state after the move
+     */
+    void addChild(int moveNumber, MCTNode child) {
+        int numberOfChildren = this.numberOfChildren;
+        if (this.childNodes == null) {
+            this.childNodes = new MCTNode[4];
+            this.childMoves = new int[4];
+        }
+        else if (numberOfChildren == this.childNodes.length) {
+            this.childNodes = Arrays.copyOf(this.childNodes, numberOfChildren * 2);
+            this.childMoves = Arrays.copyOf(this.childMoves, numberOfChildren * 2);
+        }
+        this.childNodes[numberOfChildren] = child;
+        this.childMoves[numberOfChildren] = moveNumber;
+        this.numberOfChildren = numberOfChildren + 1;
+    }
+
+
+    /**
+     * Tells if value of this node is proven.
+     * 
+     * @return <code>true</code> if node is proven win or loss
+     */
+    public boolean isProven() {
+        return this.proofState != MCTProofState.UNPROVEN;
+    }
+
+
+    /**
+     * Gets map of this nodes children, if there is no map yet it is created.
+     * 
+     * @return map of children
+     */
+    public ConcurrentHashMap<Move, MCTNode> getOrCreateChildren() {
         if (this.children == null) {
-            this.children = new HashMap<Move, MCTNode>();
+            this.children = new ConcurrentHashMap<Move, MCTNode>(4, 0.75f, 1);
         }
+        return this.children;
+    }
+
 
-        final MCTNode newNode = new MCTNode(this, move.moveNumber);
-        this.children.put(move, newNode);
-        return newNode;
+    /**
+     * Atomically adds results of simulations to this node.
+     * 
+     * @param visits
+     *            number of visits
+     * @param mats
+     *            number of check mates
+     */
+    public void addVisits(int visits, int mats) {
+        MCTNode.VISIT_COUNT_UPDATER.addAndGet(this, visits);
+        if (mats != 0) {
+            MCTNode.NUMBER_OF_MATS_UPDATER.addAndGet(this, mats);
+        }
+    }
+
+
+    /**
+     * Atomically adds all moves as first results of simulations to this node.
+     * 
+     * @param visits
+     *            number of simulations in which node's move was made
+     * @param mats
+     *            number of check mates in those simulations
+     */
+    public void addAmafVisits(int visits, int mats) {
+        MCTNode.AMAF_VISITS_UPDATER.addAndGet(this, visits);
+        if (mats != 0) {
+            MCTNode.AMAF_MATS_UPDATER.addAndGet(this, mats);
+        }
+    }
+
+
+    /**
+     * Atomically changes virtual loss of this node.
+     * 
+     * @param delta
+     *            virtual loss that is added (negative when it's removed)
+     */
+    public void addVirtualLoss(int delta) {
+        MCTNode.VIRTUAL_LOSS_UPDATER.addAndGet(this, delta);
     }
 
 
@@ -220,7 +416,7 @@ public class MCTNode {
         if (this.children != null) {
             for (MCTNode son : this.children.values()) {
                 sb.append("\t" + (x + 1) + ",\t" + son.moveDepth + ",\t" + Utils.singleMoveNumberToString(son.moveNumber) + ",\t" + son.numberOfMatsInNode
-                        + ",\t" + son.visitCount + ",\t" + MCTUtils.computeNodeRating(son) + ",\t" + son.maximumSubTreeDepth + ",\t"
+                        + ",\t" + son.visitCount + ",\t" + MCTUtils.computeNodeRating(son, this.visitCount) + ",\t" + son.maximumSubTreeDepth + ",\t"
                         + (son.minimumDepthOfDescendadWhoRepresentsCheckMate != Integer.MAX_VALUE ? son.minimumDepthOfDescendadWhoRepresentsCheckMate : "-1")
                         + ",\t" + (son.numberOfMatsInNode / (double) son.visitCount) + newLine);
                 ++x;
@@ -243,23 +439,6 @@ public class MCTNode {
     }
 
 
-    /**
-     * Updates number of successor nodes. If the result is to be correct all
-     * successor nodes must also be updated.
-     */
-    public void updateNumberOfSuccessors() {
-        if (this.children != null) {
-            // initialize to number of child nodes
-            this.numberOfSuccessors = this.children.size();
-
-            // add number of child nodes successors
-            for (MCTNode subNode : this.children.values()) {
-                this.numberOfSuccessors += subNode.getNumberOfSuccessors();
-            }
-        }
-    }
-
-
     /**
      * Return number of all successors in MC tree
      * 
@@ -269,18 +448,4 @@ public class MCTNode {
         return this.numberOfSuccessors;
     }
 
-
-    public ArrayList<Move> getLegalMoves() {
-        return this.validMoves;
-    }
-
-
-    /**
-     * Check is each possible move (according to {@link WhiteFinderStrategy} )
-     * has been added as a child node.
-     */
-    public boolean areAllChildrenAdded() {
-        return this.validMoves.size() == this.children.size();
-    }
-
 }
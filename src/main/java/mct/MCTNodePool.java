@@ -0,0 +1,915 @@
+package mct;
+
+import java.util.Arrays;
+
+import utils.Utils;
+import chess.MoveList;
+import chess.chessboard.ChessboardEvalState;
+import chess.chessboard.IChessboard;
+
+/**
+ * MC tree store that keeps node fields in parallel primitive arrays instead of
+ * {@link MCTNode} objects. Node id is index in those arrays. Children of a
+ * node are linked through <code>firstChild</code> and
+ * <code>nextSibling</code>, edge of child is its id. Pool is used by single
+ * search thread, so it has no virtual loss, and keeps only number of node's
+ * valid moves.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTNodePool implements MCTNodeStore {
+
+    /** Cached values of {@link ChessboardEvalState#values()} */
+    private static final ChessboardEvalState[] EVAL_STATES  = ChessboardEvalState.values();
+
+    /** Cached values of {@link MCTProofState#values()} */
+    private static final MCTProofState[]       PROOF_STATES = MCTProofState.values();
+
+    /** How many times has node been visited */
+    private int[]                              visitCount;
+
+    /** Number of check mates achieved when MCT algorithm visited node */
+    private int[]                              numberOfMats;
+
+    /** Id of node's parent */
+    private int[]                              parent;
+
+    /** Id of node's first child */
+    private int[]                              firstChild;
+
+    /** Id of next child of node's parent */
+    private int[]                              nextSibling;
+
+    /** Move that was made from parent to get to node */
+    private int[]                              moveNumber;
+
+    /** Consecutive ply number of node */
+    private int[]                              moveDepth;
+
+    /** Number of node's children */
+    private int[]                              numberOfChildren;
+
+    /**
+     * Number of moves that are possible from node, -1 if node hasn't been
+     * expanded yet
+     */
+    private int[]                              numberOfValidMoves;
+
+    /**
+     * Number of all legal moves of player on the move, -1 if they haven't
+     * been counted
+     */
+    private int[]                              numberOfLegalMoves;
+
+    /** Depth difference between node and it's deepest descendant */
+    private int[]                              maximumSubTreeDepth;
+
+    /**
+     * Depth difference between node and it's highest descendant that
+     * represents check mate
+     */
+    private int[]                              minimumDepthOfMate;
+
+    /** Number of node's successors (subtree size) */
+    private int[]                              numberOfSuccessors;
+
+    /** Ordinal of node's chess board evaluation from whites perspective */
+    private byte[]                             eval;
+
+    /** Ordinal of node's game theoretic value */
+    private byte[]                             proofState;
+
+    /** Prior probability of move that leads to node */
+    private float[]                            prior;
+
+    /** Number of simulations in which node's move was made after its parent */
+    private int[]                              amafVisitCount;
+
+    /** Number of mats in simulations counted in {@link #amafVisitCount} */
+    private int[]                              amafNumberOfMats;
+
+    /** Number of nodes in pool */
+    private int                                size         = 0;
+
+    /** New ids of nodes, reused by compaction */
+    private int[]                              compactionMap;
+
+
+    /**
+     * Constructor
+     * 
+     * @param initialCapacity
+     *            number of nodes pool can hold before it has to grow
+     */
+    public MCTNodePool(int initialCapacity) {
+        this.allocate(Math.max(initialCapacity, 16));
+    }
+
+
+    /**
+     * Removes all nodes from pool.
+     */
+    @Override
+    public void clear() {
+        this.size = 0;
+    }
+
+
+    /**
+     * Adds node without parent.
+     * 
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of added node
+     */
+    @Override
+    public int addRoot(int moveNumber, int moveDepth, ChessboardEvalState eval) {
+        int node = this.newNode(moveNumber, moveDepth, eval);
+        this.visitCount[node] = 1;
+        return node;
+    }
+
+
+    /**
+     * Adds child to <code>parent</code>, unless it has already been added.
+     * 
+     * @param parent
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @param prior
+     *            prior probability of the move
+     * @param board
+     *            chess board in child's state
+     * @return id of child
+     */
+    @Override
+    public int addChild(int parent, int moveNumber, float prior, IChessboard board) {
+        int node = this.getChild(parent, moveNumber);
+        if (node != MCTNodeStore.NO_NODE) { return node; }
+
+        node = this.newNode(moveNumber, this.moveDepth[parent] + 1, board.evaluateChessboardFromWhitesPerpective());
+        this.parent[node] = parent;
+        this.nextSibling[node] = this.firstChild[parent];
+        this.firstChild[parent] = node;
+        this.prior[node] = prior;
+        this.numberOfChildren[parent]++;
+        for (int ancestor = parent; ancestor != MCTNodeStore.NO_NODE; ancestor = this.parent[ancestor]) {
+            this.numberOfSuccessors[ancestor]++;
+        }
+        return node;
+    }
+
+
+    /**
+     * Finds child of <code>node</code> that represents given move.
+     * 
+     * @param node
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @return id of child or {@link #NO_NODE} if there is no such child
+     */
+    @Override
+    public int getChild(int node, int moveNumber) {
+        for (int child = this.firstChild[node]; child != MCTNodeStore.NO_NODE; child = this.nextSibling[child]) {
+            if (this.moveNumber[child] == moveNumber) { return child; }
+        }
+        return MCTNodeStore.NO_NODE;
+    }
+
+
+    /**
+     * Gets first child of node, edge of child is its id.
+     * 
+     * @param node
+     *            node id
+     * @return id of first child or {@link #NO_NODE}
+     */
+    @Override
+    public int getFirstEdge(int node) {
+        return this.firstChild[node];
+    }
+
+
+    /**
+     * Gets next sibling of child <code>edge</code>.
+     * 
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return id of next child or {@link #NO_NODE}
+     */
+    @Override
+    public int getNextEdge(int node, int edge) {
+        return this.nextSibling[edge];
+    }
+
+
+    /**
+     * Gets child to which edge leads, it is the edge itself.
+     * 
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return id of child
+     */
+    @Override
+    public int getEdgeChild(int node, int edge) {
+        return edge;
+    }
+
+
+    /**
+     * Gets move that leads to child <code>edge</code>.
+     * 
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return move number
+     */
+    @Override
+    public int getEdgeMove(int node, int edge) {
+        return this.moveNumber[edge];
+    }
+
+
+    /**
+     * Adds results of simulations to node.
+     * 
+     * @param node
+     *            node id
+     * @param visits
+     *            number of visits
+     * @param mats
+     *            number of check mates
+     */
+    @Override
+    public void addVisits(int node, int visits, int mats) {
+        this.visitCount[node] += visits;
+        this.numberOfMats[node] += mats;
+    }
+
+
+    /**
+     * Pool isn't shared by search threads, so it has no virtual loss.
+     * 
+     * @param node
+     *            node id
+     * @return 0
+     */
+    @Override
+    public int getVirtualLoss(int node) {
+        return 0;
+    }
+
+
+    /**
+     * Pool isn't shared by search threads, so virtual loss can't be added.
+     * 
+     * @param node
+     *            node id
+     * @param delta
+     *            virtual loss
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addVirtualLoss(int node, int delta) {
+        throw new UnsupportedOperationException("node pool can't be shared by search threads");
+    }
+
+
+    /**
+     * Check is each possible move has been added as a child node. Node that
+     * hasn't been expanded yet doesn't have all children added.
+     * 
+     * @param node
+     *            node id
+     * @return <code>true</code> if all children have been added
+     */
+    @Override
+    public boolean areAllChildrenAdded(int node) {
+        return this.numberOfValidMoves[node] >= 0 && this.numberOfChildren[node] >= this.numberOfValidMoves[node];
+    }
+
+
+    /**
+     * Check is each legal move, including moves that simulation strategies
+     * filter out, has been added as a child node. It is known only if number
+     * of legal moves was set.
+     * 
+     * @param node
+     *            node id
+     * @return <code>true</code> if all legal moves have been added
+     */
+    @Override
+    public boolean areAllLegalMovesAdded(int node) {
+        return this.numberOfLegalMoves[node] >= 0 && this.numberOfChildren[node] >= this.numberOfLegalMoves[node];
+    }
+
+
+    /**
+     * Gets how many times has node been visited.
+     * 
+     * @param node
+     *            node id
+     * @return visit count
+     */
+    @Override
+    public int getVisitCount(int node) {
+        return this.visitCount[node];
+    }
+
+
+    /**
+     * Gets number of check mates achieved in simulations that visited node.
+     * 
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getNumberOfMats(int node) {
+        return this.numberOfMats[node];
+    }
+
+
+    /**
+     * Gets parent of node.
+     * 
+     * @param node
+     *            node id
+     * @return id of parent or {@link #NO_NODE} if node has no parent
+     */
+    @Override
+    public int getParent(int node) {
+        return this.parent[node];
+    }
+
+
+    /**
+     * Gets id of node's first child.
+     * 
+     * @param node
+     *            node id
+     * @return id of first child or {@link #NO_NODE} if node has no children
+     */
+    public int getFirstChild(int node) {
+        return this.firstChild[node];
+    }
+
+
+    /**
+     * Gets id of next child of node's parent.
+     * 
+     * @param node
+     *            node id
+     * @return id of next sibling or {@link #NO_NODE} if node is last child
+     */
+    public int getNextSibling(int node) {
+        return this.nextSibling[node];
+    }
+
+
+    /**
+     * Gets move that was made from node's parent to get to node.
+     * 
+     * @param node
+     *            node id
+     * @return move number
+     */
+    @Override
+    public int getMoveNumber(int node) {
+        return this.moveNumber[node];
+    }
+
+
+    /**
+     * Gets consecutive ply number of node.
+     * 
+     * @param node
+     *            node id
+     * @return ply number
+     */
+    @Override
+    public int getMoveDepth(int node) {
+        return this.moveDepth[node];
+    }
+
+
+    /**
+     * Tells if it is whites turn in node's chess board state.
+     * 
+     * @param node
+     *            node id
+     * @return <code>true</code> if white is on the move
+     */
+    @Override
+    public boolean isWhitesMove(int node) {
+        return Utils.isWhitesMoveAtDepth(this.moveDepth[node]);
+    }
+
+
+    /**
+     * Gets number of node's children.
+     * 
+     * @param node
+     *            node id
+     * @return number of children
+     */
+    @Override
+    public int getNumberOfChildren(int node) {
+        return this.numberOfChildren[node];
+    }
+
+
+    /**
+     * Pool keeps only number of valid moves.
+     * 
+     * @param node
+     *            node id
+     * @return <code>null</code>
+     */
+    @Override
+    public MoveList getValidMoves(int node) {
+        return null;
+    }
+
+
+    /**
+     * Pool doesn't keep priors of moves.
+     * 
+     * @param node
+     *            node id
+     * @return <code>null</code>
+     */
+    @Override
+    public float[] getMovePriors(int node) {
+        return null;
+    }
+
+
+    /**
+     * Sets number of moves that are possible from node, moves and their
+     * priors are not kept.
+     * 
+     * @param node
+     *            node id
+     * @param moves
+     *            moves possible from node
+     * @param priors
+     *            prior probabilities of moves, they are ignored
+     */
+    @Override
+    public void setValidMoves(int node, MoveList moves, float[] priors) {
+        this.numberOfValidMoves[node] = moves.size();
+    }
+
+
+    /**
+     * Gets number of moves that are possible from node.
+     * 
+     * @param node
+     *            node id
+     * @return number of moves or -1 if they haven't been set yet
+     */
+    @Override
+    public int getNumberOfValidMoves(int node) {
+        return this.numberOfValidMoves[node];
+    }
+
+
+    /**
+     * Sets number of all legal moves of player on the move in node, used by
+     * MCTS-Solver.
+     * 
+     * @param node
+     *            node id
+     * @param numberOfLegalMoves
+     *            number of legal moves
+     */
+    @Override
+    public void setNumberOfLegalMoves(int node, int numberOfLegalMoves) {
+        this.numberOfLegalMoves[node] = numberOfLegalMoves;
+    }
+
+
+    /**
+     * Gets number of all legal moves of player on the move in node.
+     * 
+     * @param node
+     *            node id
+     * @return number of legal moves or -1 if they haven't been counted
+     */
+    @Override
+    public int getNumberOfLegalMoves(int node) {
+        return this.numberOfLegalMoves[node];
+    }
+
+
+    /**
+     * Gets depth difference between node and it's deepest descendant.
+     * 
+     * @param node
+     *            node id
+     * @return depth difference, -1 if it hasn't been set
+     */
+    @Override
+    public int getMaximumSubTreeDepth(int node) {
+        return this.maximumSubTreeDepth[node];
+    }
+
+
+    /**
+     * Sets depth difference between node and it's deepest descendant.
+     * 
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMaximumSubTreeDepth(int node, int depth) {
+        this.maximumSubTreeDepth[node] = depth;
+    }
+
+
+    /**
+     * Gets depth difference between node and it's highest descendant that
+     * represents check mate.
+     * 
+     * @param node
+     *            node id
+     * @return depth difference, {@link Integer#MAX_VALUE} if no mate was found
+     */
+    @Override
+    public int getMinimumDepthOfMate(int node) {
+        return this.minimumDepthOfMate[node];
+    }
+
+
+    /**
+     * Sets depth difference between node and it's highest descendant that
+     * represents check mate.
+     * 
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMinimumDepthOfMate(int node, int depth) {
+        this.minimumDepthOfMate[node] = depth;
+    }
+
+
+    /**
+     * Gets number of node's successors (subtree size without the node).
+     * 
+     * @param node
+     *            node id
+     * @return number of successors
+     */
+    @Override
+    public int getNumberOfSuccessors(int node) {
+        return this.numberOfSuccessors[node];
+    }
+
+
+    /**
+     * Gets node's chess board evaluation from whites perspective.
+     * 
+     * @param node
+     *            node id
+     * @return evaluation
+     */
+    @Override
+    public ChessboardEvalState getEval(int node) {
+        return MCTNodePool.EVAL_STATES[this.eval[node]];
+    }
+
+
+    /**
+     * Removes all children of node together with their subtrees. Node has to
+     * be expanded again, so number of its moves is reset.
+     * 
+     * @param node
+     *            node id
+     * @return number of removed nodes
+     */
+    @Override
+    public int removeChildren(int node) {
+        for (int child = this.firstChild[node]; child != MCTNodeStore.NO_NODE; child = this.nextSibling[child]) {
+            this.parent[child] = MCTNodeStore.NO_NODE;
+        }
+
+        int removedNodes = this.numberOfSuccessors[node];
+        this.firstChild[node] = MCTNodeStore.NO_NODE;
+        this.numberOfChildren[node] = 0;
+        this.numberOfValidMoves[node] = -1;
+        this.numberOfLegalMoves[node] = -1;
+        for (int ancestor = node; ancestor != MCTNodeStore.NO_NODE; ancestor = this.parent[ancestor]) {
+            this.numberOfSuccessors[ancestor] -= removedNodes;
+        }
+        return removedNodes;
+    }
+
+
+    /**
+     * Moves subtree of <code>root</code> to the beginning of the pool, so free
+     * space is one dense region. Relative order of kept nodes doesn't change,
+     * so parent still has lower id than its children.
+     * 
+     * @param root
+     *            id of node whose subtree is kept
+     * @return new id of <code>root</code>
+     */
+    @Override
+    public int compact(int root) {
+        if (this.compactionMap == null || this.compactionMap.length < this.size) {
+            this.compactionMap = new int[this.visitCount.length];
+        }
+        int[] map = this.compactionMap;
+
+        // child is always added after its parent, so parent of every node is
+        // mapped before the node itself
+        int newSize = 0;
+        map[root] = newSize++;
+        for (int node = root + 1; node < this.size; node++) {
+            int parent = this.parent[node];
+            map[node] = parent >= root && map[parent] != MCTNodeStore.NO_NODE ? newSize++ : MCTNodeStore.NO_NODE;
+        }
+
+        // new id is never higher than old one, so no kept node is
+        // overwritten before it is moved
+        for (int node = root; node < this.size; node++) {
+            int newNode = map[node];
+            if (newNode == MCTNodeStore.NO_NODE) {
+                continue;
+            }
+
+            int parent = node == root ? MCTNodeStore.NO_NODE : map[this.parent[node]];
+            int firstChild = MCTNodePool.remap(map, this.firstChild[node]);
+            int nextSibling = node == root ? MCTNodeStore.NO_NODE : MCTNodePool.remap(map, this.nextSibling[node]);
+
+            this.visitCount[newNode] = this.visitCount[node];
+            this.numberOfMats[newNode] = this.numberOfMats[node];
+            this.parent[newNode] = parent;
+            this.firstChild[newNode] = firstChild;
+            this.nextSibling[newNode] = nextSibling;
+            this.moveNumber[newNode] = this.moveNumber[node];
+            this.moveDepth[newNode] = this.moveDepth[node];
+            this.numberOfChildren[newNode] = this.numberOfChildren[node];
+            this.numberOfValidMoves[newNode] = this.numberOfValidMoves[node];
+            this.numberOfLegalMoves[newNode] = this.numberOfLegalMoves[node];
+            this.maximumSubTreeDepth[newNode] = this.maximumSubTreeDepth[node];
+            this.minimumDepthOfMate[newNode] = this.minimumDepthOfMate[node];
+            this.numberOfSuccessors[newNode] = this.numberOfSuccessors[node];
+            this.eval[newNode] = this.eval[node];
+            this.proofState[newNode] = this.proofState[node];
+            this.prior[newNode] = this.prior[node];
+            this.amafVisitCount[newNode] = this.amafVisitCount[node];
+            this.amafNumberOfMats[newNode] = this.amafNumberOfMats[node];
+        }
+
+        this.size = newSize;
+        return map[root];
+    }
+
+
+    /**
+     * Makes node root of the tree. Discarded nodes are reclaimed when they
+     * take at least half of the pool.
+     * 
+     * @param node
+     *            id of node that becomes root
+     * @return new id of <code>node</code>
+     */
+    @Override
+    public int makeRoot(int node) {
+        if (this.size >= 2 * (this.numberOfSuccessors[node] + 1)) { return this.compact(node); }
+
+        this.parent[node] = MCTNodeStore.NO_NODE;
+        return node;
+    }
+
+
+    /**
+     * Gets game theoretic value of node.
+     * 
+     * @param node
+     *            node id
+     * @return proof state
+     */
+    @Override
+    public MCTProofState getProofState(int node) {
+        return MCTNodePool.PROOF_STATES[this.proofState[node]];
+    }
+
+
+    /**
+     * Sets game theoretic value of node, when it is proven by MCTS-Solver.
+     * 
+     * @param node
+     *            node id
+     * @param proofState
+     *            proof state
+     */
+    @Override
+    public void setProofState(int node, MCTProofState proofState) {
+        this.proofState[node] = (byte) proofState.ordinal();
+    }
+
+
+    /**
+     * Gets prior probability of move that leads to node, used by PUCT
+     * selection.
+     * 
+     * @param node
+     *            node id
+     * @return prior probability of node's move, 0 if it wasn't set
+     */
+    @Override
+    public float getPrior(int node) {
+        return this.prior[node];
+    }
+
+
+    /**
+     * Gets number of simulations in which move that leads to node was made
+     * after node's parent (all moves as first statistics).
+     * 
+     * @param node
+     *            node id
+     * @return number of simulations
+     */
+    @Override
+    public int getAmafVisitCount(int node) {
+        return this.amafVisitCount[node];
+    }
+
+
+    /**
+     * Gets number of check mates in simulations counted in
+     * {@link #getAmafVisitCount(int)}.
+     * 
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getAmafNumberOfMats(int node) {
+        return this.amafNumberOfMats[node];
+    }
+
+
+    /**
+     * Adds all moves as first results of simulations to node.
+     * 
+     * @param node
+     *            node id
+     * @param visits
+     *            number of simulations in which node's move was made
+     * @param mats
+     *            number of check mates in those simulations
+     */
+    @Override
+    public void addAmafVisits(int node, int visits, int mats) {
+        this.amafVisitCount[node] += visits;
+        this.amafNumberOfMats[node] += mats;
+    }
+
+
+    /**
+     * Pool grows when it runs out of space, so it is never full.
+     *
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+
+
+    /**
+     * Gets number of nodes in pool.
+     * 
+     * @return number of nodes
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Takes next free id and initializes its fields.
+     * 
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of new node
+     */
+    private int newNode(int moveNumber, int moveDepth, ChessboardEvalState eval) {
+        if (this.size == this.visitCount.length) {
+            this.allocate(this.size * 2);
+        }
+
+        int node = this.size++;
+        this.visitCount[node] = 0;
+        this.numberOfMats[node] = 0;
+        this.parent[node] = MCTNodeStore.NO_NODE;
+        this.firstChild[node] = MCTNodeStore.NO_NODE;
+        this.nextSibling[node] = MCTNodeStore.NO_NODE;
+        this.moveNumber[node] = moveNumber;
+        this.moveDepth[node] = moveDepth;
+        this.numberOfChildren[node] = 0;
+        this.numberOfValidMoves[node] = -1;
+        this.numberOfLegalMoves[node] = -1;
+        this.maximumSubTreeDepth[node] = -1;
+        this.minimumDepthOfMate[node] = Integer.MAX_VALUE;
+        this.numberOfSuccessors[node] = 0;
+        this.eval[node] = (byte) eval.ordinal();
+        this.proofState[node] = (byte) MCTProofState.fromEval(eval).ordinal();
+        this.prior[node] = 0;
+        this.amafVisitCount[node] = 0;
+        this.amafNumberOfMats[node] = 0;
+        return node;
+    }
+
+
+    /**
+     * Gets new id of node after compaction.
+     * 
+     * @param map
+     *            new ids by old ids
+     * @param node
+     *            old id or {@link MCTNodeStore#NO_NODE}
+     * @return new id or {@link MCTNodeStore#NO_NODE}
+     */
+    private static int remap(int[] map, int node) {
+        return node == MCTNodeStore.NO_NODE ? MCTNodeStore.NO_NODE : map[node];
+    }
+
+
+    /**
+     * Grows all arrays to <code>capacity</code>, existing nodes are kept.
+     * 
+     * @param capacity
+     *            new capacity
+     */
+    private void allocate(int capacity) {
+        if (this.visitCount == null) {
+            this.visitCount = new int[capacity];
+            this.numberOfMats = new int[capacity];
+            this.parent = new int[capacity];
+            this.firstChild = new int[capacity];
+            this.nextSibling = new int[capacity];
+            this.moveNumber = new int[capacity];
+            this.moveDepth = new int[capacity];
+            this.numberOfChildren = new int[capacity];
+            this.numberOfValidMoves = new int[capacity];
+            this.numberOfLegalMoves = new int[capacity];
+            this.maximumSubTreeDepth = new int[capacity];
+            this.minimumDepthOfMate = new int[capacity];
+            this.numberOfSuccessors = new int[capacity];
+            this.eval = new byte[capacity];
+            this.proofState = new byte[capacity];
+            this.prior = new float[capacity];
+            this.amafVisitCount = new int[capacity];
+            this.amafNumberOfMats = new int[capacity];
+        }
+        else {
+            this.visitCount = Arrays.copyOf(this.visitCount, capacity);
+            this.numberOfMats = Arrays.copyOf(this.numberOfMats, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+            this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+            this.moveNumber = Arrays.copyOf(this.moveNumber, capacity);
+            this.moveDepth = Arrays.copyOf(this.moveDepth, capacity);
+            this.numberOfChildren = Arrays.copyOf(this.numberOfChildren, capacity);
+            this.numberOfValidMoves = Arrays.copyOf(this.numberOfValidMoves, capacity);
+            this.numberOfLegalMoves = Arrays.copyOf(this.numberOfLegalMoves, capacity);
+            this.maximumSubTreeDepth = Arrays.copyOf(this.maximumSubTreeDepth, capacity);
+            this.minimumDepthOfMate = Arrays.copyOf(this.minimumDepthOfMate, capacity);
+            this.numberOfSuccessors = Arrays.copyOf(this.numberOfSuccessors, capacity);
+            this.eval = Arrays.copyOf(this.eval, capacity);
+            this.proofState = Arrays.copyOf(this.proofState, capacity);
+            this.prior = Arrays.copyOf(this.prior, capacity);
+            this.amafVisitCount = Arrays.copyOf(this.amafVisitCount, capacity);
+            this.amafNumberOfMats = Arrays.copyOf(this.amafNumberOfMats, capacity);
+        }
+    }
+
+}
@@ -43,7 +43,7 @@ public class MCTNodeStatistics {
             this.sumOfCheckmatesPerNode += son.numberOfMatsInNode;
             this.sumOfVisitCountPerNode += son.visitCount;
             this.sumOfMaxSubTreeDepthPerNode += son.maximumSubTreeDepth;
-            this.sumOfUCTRankingsPerNode += MCTUtils.computeNodeRating(son);
+            this.sumOfUCTRankingsPerNode += MCTUtils.computeNodeRating(son, node.visitCount);
             this.numberOfNodesChecked++;
         }
     }
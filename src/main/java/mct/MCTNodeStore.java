@@ -0,0 +1,507 @@
+package mct;
+
+import chess.MoveList;
+import chess.chessboard.ChessboardEvalState;
+import chess.chessboard.IChessboard;
+
+/**
+ * Store of MC tree nodes that are represented by int node ids. MCT algorithm
+ * searches every store the same way, stores differ only in how they keep node
+ * fields. Nodes don't hold chess boards, position of a node is rebuilt on
+ * simulation chess board while MCT algorithm descends from the root.<br/>
+ * Children of a node are reached through edges. Edge is a move made from the
+ * node together with child it leads to, child shared through
+ * {@link MCTTranspositionTable} can be reached by different moves from
+ * different parents.
+ *
+ * @author Andraz Kohne
+ */
+public interface MCTNodeStore {
+
+    /** Id that represents no node (and no edge) */
+    public static final int NO_NODE = -1;
+
+
+    /**
+     * Removes all nodes from store.
+     */
+    public void clear();
+
+
+    /**
+     * Adds node without parent.
+     *
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of added node
+     */
+    public int addRoot(int moveNumber, int moveDepth, ChessboardEvalState eval);
+
+
+    /**
+     * Adds child to <code>parent</code> and counts it in subtree sizes of
+     * parent and its ancestors. Store must not be full. If child of the move
+     * has already been added (for example by other thread), that child is
+     * returned instead.
+     *
+     * @param parent
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @param prior
+     *            prior probability of the move
+     * @param board
+     *            chess board in state we get by making <code>moveNumber</code>
+     *            from parent's state
+     * @return id of child
+     */
+    public int addChild(int parent, int moveNumber, float prior, IChessboard board);
+
+
+    /**
+     * Finds child of <code>node</code> that represents given move.
+     *
+     * @param node
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @return id of child or {@link #NO_NODE} if there is no such child
+     */
+    public int getChild(int node, int moveNumber);
+
+
+    /**
+     * Gets first edge that leads from node to one of its children.
+     *
+     * @param node
+     *            node id
+     * @return edge or {@link #NO_NODE} if node has no children
+     */
+    public int getFirstEdge(int node);
+
+
+    /**
+     * Gets edge that follows <code>edge</code> among node's edges.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            one of node's edges
+     * @return next edge or {@link #NO_NODE} if <code>edge</code> was last
+     */
+    public int getNextEdge(int node, int edge);
+
+
+    /**
+     * Gets child to which edge leads.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            one of node's edges
+     * @return id of child
+     */
+    public int getEdgeChild(int node, int edge);
+
+
+    /**
+     * Gets move that is made from node along edge.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            one of node's edges
+     * @return move number
+     */
+    public int getEdgeMove(int node, int edge);
+
+
+    /**
+     * Adds results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of visits
+     * @param mats
+     *            number of check mates
+     */
+    public void addVisits(int node, int visits, int mats);
+
+
+    /**
+     * Gets virtual loss of node, added by search threads that are currently
+     * searching below it.
+     *
+     * @param node
+     *            node id
+     * @return virtual loss, 0 if store isn't shared by search threads
+     */
+    public int getVirtualLoss(int node);
+
+
+    /**
+     * Changes virtual loss of node.
+     *
+     * @param node
+     *            node id
+     * @param delta
+     *            virtual loss that is added (negative when it's removed)
+     * @throws UnsupportedOperationException
+     *             if store can't be shared by search threads
+     */
+    public void addVirtualLoss(int node, int delta);
+
+
+    /**
+     * Check is each possible move has been added as a child node. Node that
+     * hasn't been expanded yet doesn't have all children added.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all children have been added
+     */
+    public boolean areAllChildrenAdded(int node);
+
+
+    /**
+     * Check is each legal move, including moves that simulation strategies
+     * filter out, has been added as a child node. It is known only if number
+     * of legal moves was set.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all legal moves have been added
+     */
+    public boolean areAllLegalMovesAdded(int node);
+
+
+    /**
+     * Removes all children of node together with their subtrees. Node becomes
+     * leaf that keeps its statistics and can be expanded again. Sizes of
+     * subtrees of node's ancestors are updated. Removed children lose their
+     * parent, their space is reclaimed by {@link #compact(int)}.
+     *
+     * @param node
+     *            node id
+     * @return number of removed nodes
+     */
+    public int removeChildren(int node);
+
+
+    /**
+     * Removes all nodes that are not in subtree of <code>root</code>, so
+     * their space can be reused. Ids of kept nodes can change.
+     *
+     * @param root
+     *            id of node whose subtree is kept, it becomes node without
+     *            parent
+     * @return new id of <code>root</code>
+     */
+    public int compact(int root);
+
+
+    /**
+     * Makes <code>node</code> root of the tree after a move was made. Rest of
+     * the tree is discarded, store decides if it is reclaimed at once with
+     * {@link #compact(int)}.
+     *
+     * @param node
+     *            id of node that becomes root
+     * @return new id of <code>node</code>
+     */
+    public int makeRoot(int node);
+
+
+    /**
+     * Tells if store can't hold any more nodes.
+     *
+     * @return <code>true</code> if no more nodes can be added
+     */
+    public boolean isFull();
+
+
+    /**
+     * Gets number of nodes in store, including discarded nodes that haven't
+     * been reclaimed yet.
+     *
+     * @return number of nodes
+     */
+    public int size();
+
+
+    /**
+     * Gets how many times has node been visited.
+     *
+     * @param node
+     *            node id
+     * @return visit count
+     */
+    public int getVisitCount(int node);
+
+
+    /**
+     * Gets number of check mates achieved in simulations that visited node.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    public int getNumberOfMats(int node);
+
+
+    /**
+     * Gets parent of node. Node shared through {@link MCTTranspositionTable}
+     * has parent that added it.
+     *
+     * @param node
+     *            node id
+     * @return id of parent or {@link #NO_NODE} if node has no parent
+     */
+    public int getParent(int node);
+
+
+    /**
+     * Gets move that was made from node's parent to get to node.
+     *
+     * @param node
+     *            node id
+     * @return move number
+     */
+    public int getMoveNumber(int node);
+
+
+    /**
+     * Gets consecutive ply number of node.
+     *
+     * @param node
+     *            node id
+     * @return ply number
+     */
+    public int getMoveDepth(int node);
+
+
+    /**
+     * Tells if it is whites turn in node's chess board state.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if white is on the move
+     */
+    public boolean isWhitesMove(int node);
+
+
+    /**
+     * Gets number of node's children.
+     *
+     * @param node
+     *            node id
+     * @return number of children
+     */
+    public int getNumberOfChildren(int node);
+
+
+    /**
+     * Gets moves that are possible from node, if store keeps them.
+     *
+     * @param node
+     *            node id
+     * @return moves or <code>null</code> if they haven't been set or store
+     *         keeps only their number
+     */
+    public MoveList getValidMoves(int node);
+
+
+    /**
+     * Gets prior probabilities of moves returned by
+     * {@link #getValidMoves(int)}.
+     *
+     * @param node
+     *            node id
+     * @return priors or <code>null</code> if store doesn't keep them
+     */
+    public float[] getMovePriors(int node);
+
+
+    /**
+     * Sets moves that are possible from node, when it is expanded. Store
+     * copies what it keeps, so caller can reuse both arrays.
+     *
+     * @param node
+     *            node id
+     * @param moves
+     *            moves possible from node
+     * @param priors
+     *            prior probabilities of moves, <code>null</code> if they
+     *            aren't used
+     */
+    public void setValidMoves(int node, MoveList moves, float[] priors);
+
+
+    /**
+     * Gets number of moves that are possible from node.
+     *
+     * @param node
+     *            node id
+     * @return number of moves or -1 if they haven't been set yet
+     */
+    public int getNumberOfValidMoves(int node);
+
+
+    /**
+     * Sets number of all legal moves of player on the move in node, used by
+     * MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param numberOfLegalMoves
+     *            number of legal moves
+     */
+    public void setNumberOfLegalMoves(int node, int numberOfLegalMoves);
+
+
+    /**
+     * Gets number of all legal moves of player on the move in node.
+     *
+     * @param node
+     *            node id
+     * @return number of legal moves or -1 if they haven't been counted
+     */
+    public int getNumberOfLegalMoves(int node);
+
+
+    /**
+     * Gets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, -1 if it hasn't been set
+     */
+    public int getMaximumSubTreeDepth(int node);
+
+
+    /**
+     * Sets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    public void setMaximumSubTreeDepth(int node, int depth);
+
+
+    /**
+     * Gets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, {@link Integer#MAX_VALUE} if no mate was found
+     */
+    public int getMinimumDepthOfMate(int node);
+
+
+    /**
+     * Sets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    public void setMinimumDepthOfMate(int node, int depth);
+
+
+    /**
+     * Gets number of node's successors (subtree size without the node).
+     *
+     * @param node
+     *            node id
+     * @return number of successors
+     */
+    public int getNumberOfSuccessors(int node);
+
+
+    /**
+     * Gets node's chess board evaluation from whites perspective.
+     *
+     * @param node
+     *            node id
+     * @return evaluation
+     */
+    public ChessboardEvalState getEval(int node);
+
+
+    /**
+     * Gets game theoretic value of node.
+     *
+     * @param node
+     *            node id
+     * @return proof state
+     */
+    public MCTProofState getProofState(int node);
+
+
+    /**
+     * Sets game theoretic value of node, when it is proven by MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param proofState
+     *            proof state
+     */
+    public void setProofState(int node, MCTProofState proofState);
+
+
+    /**
+     * Gets prior probability of move that leads to node, used by PUCT
+     * selection.
+     *
+     * @param node
+     *            node id
+     * @return prior probability of node's move, 0 if it wasn't set
+     */
+    public float getPrior(int node);
+
+
+    /**
+     * Gets number of simulations in which move that leads to node was made
+     * after node's parent (all moves as first statistics).
+     *
+     * @param node
+     *            node id
+     * @return number of simulations
+     */
+    public int getAmafVisitCount(int node);
+
+
+    /**
+     * Gets number of check mates in simulations counted in
+     * {@link #getAmafVisitCount(int)}.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    public int getAmafNumberOfMats(int node);
+
+
+    /**
+     * Adds all moves as first results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of simulations in which node's move was made
+     * @param mats
+     *            number of check mates in those simulations
+     */
+    public void addAmafVisits(int node, int visits, int mats);
+
+}
@@ -0,0 +1,798 @@
+package mct;
+
+import java.util.Arrays;
+
+import chess.MoveList;
+import chess.chessboard.ChessboardEvalState;
+import chess.chessboard.IChessboard;
+
+/**
+ * MC tree store whose nodes are {@link MCTNode} objects, node id is index in
+ * array of nodes. It is the only store that can be shared by tree parallel
+ * search threads: statistics of nodes are updated atomically, children are
+ * added while store is locked and are read without locking. Edge of child is
+ * its index among children of the parent.<br/>
+ * If transposition table is used, nodes of same chess board state are shared
+ * between parents, so tree becomes directed acyclic graph.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTObjectNodeStore implements MCTNodeStore {
+
+    /** Nodes by their ids, array is replaced when it grows */
+    private volatile MCTNode[]          nodes;
+
+    /** Number of nodes in store */
+    private volatile int                size = 0;
+
+    /** Array into which compaction moves kept nodes, reused by compactions */
+    private MCTNode[]                   compactedNodes;
+
+    /** Table of shared nodes, <code>null</code> if it's not used */
+    private final MCTTranspositionTable transpositions;
+
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity
+     *            number of nodes store can hold before it has to grow
+     * @param usesTranspositionTable
+     *            if <code>true</code> nodes of same chess board state are
+     *            shared through {@link MCTTranspositionTable}
+     */
+    public MCTObjectNodeStore(int initialCapacity, boolean usesTranspositionTable) {
+        this.nodes = new MCTNode[Math.max(initialCapacity, 16)];
+        this.transpositions = usesTranspositionTable ? new MCTTranspositionTable() : null;
+    }
+
+
+    /**
+     * Removes all nodes from store and from transposition table.
+     */
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(this.nodes, 0, this.size, null);
+        this.size = 0;
+        if (this.transpositions != null) {
+            this.transpositions.clear();
+        }
+    }
+
+
+    /**
+     * Adds node without parent.
+     *
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of added node
+     */
+    @Override
+    public synchronized int addRoot(int moveNumber, int moveDepth, ChessboardEvalState eval) {
+        return this.register(new MCTNode(moveNumber, moveDepth, eval));
+    }
+
+
+    /**
+     * Adds child to <code>parent</code>. If other thread has added child of
+     * the move in the meantime, that child is returned. If transposition
+     * table holds node of child's state, that node becomes child of
+     * <code>parent</code>. State includes how many times position has
+     * appeared, because draw by repetition depends on path.
+     *
+     * @param parent
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @param prior
+     *            prior probability of the move
+     * @param board
+     *            chess board in child's state
+     * @return id of child
+     */
+    @Override
+    public int addChild(int parent, int moveNumber, float prior, IChessboard board) {
+        MCTNode parentNode = this.nodes[parent];
+        MCTNode child = parentNode.getChild(moveNumber);
+        if (child != null) { return child.id; }
+
+        // chess board is evaluated before store is locked
+        MCTNode newNode = new MCTNode(parentNode, moveNumber, prior, board.evaluateChessboardFromWhitesPerpective());
+        long key = this.transpositions != null ? board.getZobristKey() : 0;
+        int repetitions = this.transpositions != null ? board.howManyTimeHasCurrentStateAppeared() : 0;
+
+        synchronized (this) {
+            // some other thread might have added same move in the meantime
+            child = parentNode.getChild(moveNumber);
+            if (child != null) { return child.id; }
+
+            child = this.transpositions != null ? this.transpositions.get(key, newNode.moveDepth, repetitions) : null;
+            if (child == null) {
+                child = newNode;
+                this.register(child);
+                if (this.transpositions != null) {
+                    this.transpositions.putIfAbsent(key, repetitions, child);
+                }
+
+                // update subtree sizes
+                for (MCTNode ancestor = parentNode; ancestor != null; ancestor = ancestor.parent) {
+                    ancestor.numberOfSuccessors++;
+                }
+            }
+
+            parentNode.addChild(moveNumber, child);
+            return child.id;
+        }
+    }
+
+
+    /**
+     * Finds child of <code>node</code> that represents given move.
+     *
+     * @param node
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @return id of child or {@link #NO_NODE} if there is no such child
+     */
+    @Override
+    public int getChild(int node, int moveNumber) {
+        MCTNode child = this.nodes[node].getChild(moveNumber);
+        return child == null ? MCTNodeStore.NO_NODE : child.id;
+    }
+
+
+    /**
+     * Gets first edge of node, edge is index of child among node's children.
+     *
+     * @param node
+     *            node id
+     * @return 0 or {@link #NO_NODE} if node has no children
+     */
+    @Override
+    public int getFirstEdge(int node) {
+        return this.nodes[node].numberOfChildren > 0 ? 0 : MCTNodeStore.NO_NODE;
+    }
+
+
+    /**
+     * Gets index of next child of node.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            index of child
+     * @return next index or {@link #NO_NODE} if <code>edge</code> was last
+     */
+    @Override
+    public int getNextEdge(int node, int edge) {
+        return edge + 1 < this.nodes[node].numberOfChildren ? edge + 1 : MCTNodeStore.NO_NODE;
+    }
+
+
+    /**
+     * Gets child at index <code>edge</code> among node's children.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            index of child
+     * @return id of child
+     */
+    @Override
+    public int getEdgeChild(int node, int edge) {
+        return this.nodes[node].childNodes[edge].id;
+    }
+
+
+    /**
+     * Gets move that leads from node to child at index <code>edge</code>.
+     * Shared child keeps move from parent that added it, so move of edge can
+     * differ from move of child.
+     *
+     * @param node
+     *            node id
+     * @param edge
+     *            index of child
+     * @return move number
+     */
+    @Override
+    public int getEdgeMove(int node, int edge) {
+        return this.nodes[node].childMoves[edge];
+    }
+
+
+    /**
+     * Atomically adds results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of visits
+     * @param mats
+     *            number of check mates
+     */
+    @Override
+    public void addVisits(int node, int visits, int mats) {
+        this.nodes[node].addVisits(visits, mats);
+    }
+
+
+    /**
+     * Gets virtual loss of node.
+     *
+     * @param node
+     *            node id
+     * @return virtual loss
+     */
+    @Override
+    public int getVirtualLoss(int node) {
+        return this.nodes[node].virtualLoss;
+    }
+
+
+    /**
+     * Atomically changes virtual loss of node.
+     *
+     * @param node
+     *            node id
+     * @param delta
+     *            virtual loss that is added (negative when it's removed)
+     */
+    @Override
+    public void addVirtualLoss(int node, int delta) {
+        this.nodes[node].addVirtualLoss(delta);
+    }
+
+
+    /**
+     * Check is each valid move has been added as a child node.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all children have been added
+     */
+    @Override
+    public boolean areAllChildrenAdded(int node) {
+        MCTNode record = this.nodes[node];
+        MoveList validMoves = record.validMoves;
+        return validMoves != null && record.numberOfChildren >= validMoves.size();
+    }
+
+
+    /**
+     * Check is each legal move has been added as a child node.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all legal moves have been added
+     */
+    @Override
+    public boolean areAllLegalMovesAdded(int node) {
+        MCTNode record = this.nodes[node];
+        int numberOfLegalMoves = record.numberOfLegalMoves;
+        return numberOfLegalMoves >= 0 && record.numberOfChildren >= numberOfLegalMoves;
+    }
+
+
+    /**
+     * Removes all children of node together with their subtrees, valid moves
+     * of node are kept. With transpositions removed child can still be
+     * reached through other parents, so sizes of subtrees are only estimated
+     * until {@link #compact(int)} recounts them. It must not be called while
+     * tree is searched.
+     *
+     * @param node
+     *            node id
+     * @return number of removed nodes
+     */
+    @Override
+    public int removeChildren(int node) {
+        MCTNode record = this.nodes[node];
+        int removedNodes = record.numberOfSuccessors;
+        for (int x = 0; x < record.numberOfChildren; x++) {
+            if (record.childNodes[x].parent == record) {
+                record.childNodes[x].parent = null;
+            }
+        }
+
+        record.numberOfChildren = 0;
+        record.childNodes = null;
+        record.childMoves = null;
+        for (MCTNode ancestor = record; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.numberOfSuccessors -= removedNodes;
+        }
+        return removedNodes;
+    }
+
+
+    /**
+     * Keeps only nodes that can be reached from <code>root</code>, so other
+     * nodes can be garbage collected and are removed from transposition
+     * table. Kept nodes get ids in breadth first order. Every node is adopted
+     * by parent from which it is found first, so sizes of subtrees are
+     * recounted and every node is counted once, through its parent. It must
+     * not be called while tree is searched.
+     *
+     * @param root
+     *            id of node whose subtree is kept
+     * @return new id of <code>root</code>, it is always 0
+     */
+    @Override
+    public int compact(int root) {
+        MCTNode[] nodes = this.nodes;
+        int size = this.size;
+        for (int x = 0; x < size; x++) {
+            nodes[x].id = MCTNodeStore.NO_NODE;
+        }
+
+        MCTNode[] keptNodes = this.compactedNodes != null && this.compactedNodes.length == nodes.length ? this.compactedNodes : new MCTNode[nodes.length];
+        MCTNode rootNode = nodes[root];
+        rootNode.parent = null;
+        rootNode.id = 0;
+        keptNodes[0] = rootNode;
+        int newSize = 1;
+
+        // breadth first, so every node is adopted by its first found parent
+        for (int x = 0; x < newSize; x++) {
+            MCTNode node = keptNodes[x];
+            node.numberOfSuccessors = 0;
+            for (int edge = 0; edge < node.numberOfChildren; edge++) {
+                MCTNode child = node.childNodes[edge];
+                if (child.id == MCTNodeStore.NO_NODE) {
+                    child.parent = node;
+                    child.moveNumber = node.childMoves[edge];
+                    child.id = newSize;
+                    keptNodes[newSize++] = child;
+                }
+            }
+        }
+
+        // node is found after its parent, so in reverse order subtree of
+        // node is counted before it is added to its parent
+        for (int x = newSize - 1; x > 0; x--) {
+            MCTNode node = keptNodes[x];
+            node.parent.numberOfSuccessors += node.numberOfSuccessors + 1;
+        }
+
+        // old array is reused by next compaction
+        Arrays.fill(nodes, 0, size, null);
+        this.compactedNodes = nodes;
+        this.nodes = keptNodes;
+        this.size = newSize;
+        if (this.transpositions != null) {
+            this.transpositions.removeDiscardedNodes();
+        }
+        return 0;
+    }
+
+
+    /**
+     * Makes node root of the tree. With transpositions discarded nodes are
+     * always reclaimed, because shared nodes can point to parents outside of
+     * new tree. Otherwise they are reclaimed when they take at least half of
+     * the store.
+     *
+     * @param node
+     *            id of node that becomes root
+     * @return new id of <code>node</code>
+     */
+    @Override
+    public int makeRoot(int node) {
+        MCTNode record = this.nodes[node];
+        if (this.transpositions != null || this.size >= 2 * (record.numberOfSuccessors + 1)) { return this.compact(node); }
+
+        record.parent = null;
+        return node;
+    }
+
+
+    /**
+     * Store grows when it runs out of space, so it is never full.
+     *
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+
+
+    /**
+     * Gets number of nodes in store, including discarded nodes that haven't
+     * been reclaimed yet.
+     *
+     * @return number of nodes
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Gets how many times has node been visited.
+     *
+     * @param node
+     *            node id
+     * @return visit count
+     */
+    @Override
+    public int getVisitCount(int node) {
+        return this.nodes[node].visitCount;
+    }
+
+
+    /**
+     * Gets number of check mates achieved in simulations that visited node.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getNumberOfMats(int node) {
+        return this.nodes[node].numberOfMatsInNode;
+    }
+
+
+    /**
+     * Gets parent of node. Node shared through {@link MCTTranspositionTable}
+     * has parent that added it.
+     *
+     * @param node
+     *            node id
+     * @return id of parent or {@link #NO_NODE} if node has no parent
+     */
+    @Override
+    public int getParent(int node) {
+        MCTNode parent = this.nodes[node].parent;
+        return parent == null ? MCTNodeStore.NO_NODE : parent.id;
+    }
+
+
+    /**
+     * Gets move that was made from node's parent to get to node.
+     *
+     * @param node
+     *            node id
+     * @return move number
+     */
+    @Override
+    public int getMoveNumber(int node) {
+        return this.nodes[node].moveNumber;
+    }
+
+
+    /**
+     * Gets consecutive ply number of node.
+     *
+     * @param node
+     *            node id
+     * @return ply number
+     */
+    @Override
+    public int getMoveDepth(int node) {
+        return this.nodes[node].moveDepth;
+    }
+
+
+    /**
+     * Tells if it is whites turn in node's chess board state.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if white is on the move
+     */
+    @Override
+    public boolean isWhitesMove(int node) {
+        return this.nodes[node].isWhitesMove;
+    }
+
+
+    /**
+     * Gets number of node's children.
+     *
+     * @param node
+     *            node id
+     * @return number of children
+     */
+    @Override
+    public int getNumberOfChildren(int node) {
+        return this.nodes[node].numberOfChildren;
+    }
+
+
+    /**
+     * Gets moves that are possible from node. They must be read before their
+     * priors, so priors set together with them are seen.
+     *
+     * @param node
+     *            node id
+     * @return moves or <code>null</code> if they haven't been set yet
+     */
+    @Override
+    public MoveList getValidMoves(int node) {
+        return this.nodes[node].validMoves;
+    }
+
+
+    /**
+     * Gets prior probabilities of moves returned by
+     * {@link #getValidMoves(int)}, they are set together with moves.
+     *
+     * @param node
+     *            node id
+     * @return priors or <code>null</code> if moves have no priors
+     */
+    @Override
+    public float[] getMovePriors(int node) {
+        return this.nodes[node].movePriors;
+    }
+
+
+    /**
+     * Keeps copies of moves that are possible from node and their priors.
+     * Other threads would set same moves, so if moves have already been set
+     * they are not changed.
+     *
+     * @param node
+     *            node id
+     * @param moves
+     *            moves possible from node
+     * @param priors
+     *            prior probabilities of moves, <code>null</code> if they
+     *            aren't used
+     */
+    @Override
+    public void setValidMoves(int node, MoveList moves, float[] priors) {
+        MCTNode record = this.nodes[node];
+        if (record.validMoves != null) { return; }
+
+        MoveList validMoves = new MoveList();
+        validMoves.copyFrom(moves);
+        if (priors != null) {
+            record.movePriors = Arrays.copyOf(priors, moves.size());
+        }
+
+        // moves are written last, so readers who see them also see priors
+        record.validMoves = validMoves;
+    }
+
+
+    /**
+     * Gets number of moves that are possible from node.
+     *
+     * @param node
+     *            node id
+     * @return number of moves or -1 if they haven't been set yet
+     */
+    @Override
+    public int getNumberOfValidMoves(int node) {
+        MoveList validMoves = this.nodes[node].validMoves;
+        return validMoves == null ? -1 : validMoves.size();
+    }
+
+
+    /**
+     * Sets number of all legal moves of player on the move in node, used by
+     * MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param numberOfLegalMoves
+     *            number of legal moves
+     */
+    @Override
+    public void setNumberOfLegalMoves(int node, int numberOfLegalMoves) {
+        this.nodes[node].numberOfLegalMoves = numberOfLegalMoves;
+    }
+
+
+    /**
+     * Gets number of all legal moves of player on the move in node.
+     *
+     * @param node
+     *            node id
+     * @return number of legal moves or -1 if they haven't been counted
+     */
+    @Override
+    public int getNumberOfLegalMoves(int node) {
+        return this.nodes[node].numberOfLegalMoves;
+    }
+
+
+    /**
+     * Gets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, -1 if it hasn't been set
+     */
+    @Override
+    public int getMaximumSubTreeDepth(int node) {
+        return this.nodes[node].maximumSubTreeDepth;
+    }
+
+
+    /**
+     * Sets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMaximumSubTreeDepth(int node, int depth) {
+        this.nodes[node].maximumSubTreeDepth = depth;
+    }
+
+
+    /**
+     * Gets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, {@link Integer#MAX_VALUE} if no mate was found
+     */
+    @Override
+    public int getMinimumDepthOfMate(int node) {
+        return this.nodes[node].minimumDepthOfDescendadWhoRepresentsCheckMate;
+    }
+
+
+    /**
+     * Sets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMinimumDepthOfMate(int node, int depth) {
+        this.nodes[node].minimumDepthOfDescendadWhoRepresentsCheckMate = depth;
+    }
+
+
+    /**
+     * Gets number of node's successors (subtree size without the node).
+     *
+     * @param node
+     *            node id
+     * @return number of successors
+     */
+    @Override
+    public int getNumberOfSuccessors(int node) {
+        return this.nodes[node].numberOfSuccessors;
+    }
+
+
+    /**
+     * Gets node's chess board evaluation from whites perspective.
+     *
+     * @param node
+     *            node id
+     * @return evaluation
+     */
+    @Override
+    public ChessboardEvalState getEval(int node) {
+        return this.nodes[node].getEvalFromWhitesPerspective();
+    }
+
+
+    /**
+     * Gets game theoretic value of node.
+     *
+     * @param node
+     *            node id
+     * @return proof state
+     */
+    @Override
+    public MCTProofState getProofState(int node) {
+        return this.nodes[node].proofState;
+    }
+
+
+    /**
+     * Sets game theoretic value of node, when it is proven by MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param proofState
+     *            proof state
+     */
+    @Override
+    public void setProofState(int node, MCTProofState proofState) {
+        this.nodes[node].proofState = proofState;
+    }
+
+
+    /**
+     * Gets prior probability of move that leads to node, used by PUCT
+     * selection.
+     *
+     * @param node
+     *            node id
+     * @return prior probability of node's move, 0 if it wasn't set
+     */
+    @Override
+    public float getPrior(int node) {
+        return this.nodes[node].prior;
+    }
+
+
+    /**
+     * Gets number of simulations in which move that leads to node was made
+     * after node's parent (all moves as first statistics).
+     *
+     * @param node
+     *            node id
+     * @return number of simulations
+     */
+    @Override
+    public int getAmafVisitCount(int node) {
+        return this.nodes[node].amafVisitCount;
+    }
+
+
+    /**
+     * Gets number of check mates in simulations counted in
+     * {@link #getAmafVisitCount(int)}.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getAmafNumberOfMats(int node) {
+        return this.nodes[node].amafNumberOfMats;
+    }
+
+
+    /**
+     * Adds all moves as first results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of simulations in which node's move was made
+     * @param mats
+     *            number of check mates in those simulations
+     */
+    @Override
+    public void addAmafVisits(int node, int visits, int mats) {
+        this.nodes[node].addAmafVisits(visits, mats);
+    }
+
+
+    /**
+     * Gives node next free id. Caller must hold lock of the store. Node is
+     * written before array is published, so thread that gets its id from
+     * added edge finds it.
+     *
+     * @param node
+     *            new node
+     * @return id of node
+     */
+    private int register(MCTNode node) {
+        MCTNode[] nodes = this.nodes;
+        int id = this.size;
+        if (id == nodes.length) {
+            nodes = Arrays.copyOf(nodes, id * 2);
+        }
+        nodes[id] = node;
+        node.id = id;
+        this.nodes = nodes;
+        this.size = id + 1;
+        return id;
+    }
+
+}
@@ -0,0 +1,922 @@
+package mct;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import utils.Utils;
+import chess.MoveList;
+import chess.chessboard.ChessboardEvalState;
+import chess.chessboard.IChessboard;
+
+/**
+ * MC tree store that keeps node records in direct (off-heap) memory, so nodes
+ * are not scanned by garbage collector. Memory is allocated once, store can
+ * hold as many nodes as fit in given byte budget. When store is full MCT
+ * algorithm stops adding nodes and evaluates leaves it reaches, until
+ * discarded nodes are reclaimed by {@link #compact(int)}.<br/>
+ * Every node is record of {@link #RECORD_SIZE} ints, node id is index of
+ * record. Children are linked like in {@link MCTNodePool}, edge of child is
+ * its id. Store is used by single search thread, so it has no virtual loss,
+ * and keeps only number of node's valid moves.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTOffHeapNodeStore implements MCTNodeStore {
+
+    /** How many times has node been visited */
+    private static final int                   VISIT_COUNT           = 0;
+
+    /** Number of check mates achieved when MCT algorithm visited node */
+    private static final int                   NUMBER_OF_MATS        = 1;
+
+    /** Id of node's parent */
+    private static final int                   PARENT                = 2;
+
+    /** Id of node's first child */
+    private static final int                   FIRST_CHILD           = 3;
+
+    /** Id of next child of node's parent */
+    private static final int                   NEXT_SIBLING          = 4;
+
+    /** Move that was made from parent to get to node */
+    private static final int                   MOVE_NUMBER           = 5;
+
+    /** Consecutive ply number of node */
+    private static final int                   MOVE_DEPTH            = 6;
+
+    /** Number of node's children */
+    private static final int                   NUMBER_OF_CHILDREN    = 7;
+
+    /** Number of moves possible from node, -1 if it hasn't been expanded yet */
+    private static final int                   NUMBER_OF_VALID_MOVES = 8;
+
+    /** Depth difference between node and it's deepest descendant */
+    private static final int                   MAXIMUM_SUBTREE_DEPTH = 9;
+
+    /** Depth difference between node and it's highest mate descendant */
+    private static final int                   MINIMUM_DEPTH_OF_MATE = 10;
+
+    /** Number of node's successors (subtree size) */
+    private static final int                   NUMBER_OF_SUCCESSORS  = 11;
+
+    /** Ordinal of node's chess board evaluation from whites perspective */
+    private static final int                   EVAL                  = 12;
+
+    /** Ordinal of node's game theoretic value */
+    private static final int                   PROOF_STATE           = 13;
+
+    /** Bits of prior probability of move that leads to node */
+    private static final int                   PRIOR                 = 14;
+
+    /** Number of simulations in which node's move was made after its parent */
+    private static final int                   AMAF_VISIT_COUNT      = 15;
+
+    /** Number of mats in simulations counted in AMAF visit count */
+    private static final int                   AMAF_NUMBER_OF_MATS   = 16;
+
+    /** Number of all legal moves of player on the move, -1 if not counted */
+    private static final int                   NUMBER_OF_LEGAL_MOVES = 17;
+
+    /** Number of ints in node record */
+    public static final int                    RECORD_SIZE           = 18;
+
+    /** Cached values of {@link ChessboardEvalState#values()} */
+    private static final ChessboardEvalState[] EVAL_STATES           = ChessboardEvalState.values();
+
+    /** Cached values of {@link MCTProofState#values()} */
+    private static final MCTProofState[]       PROOF_STATES          = MCTProofState.values();
+
+    /** Node records */
+    private final IntBuffer                    records;
+
+    /** Number of nodes store can hold */
+    private final int                          capacity;
+
+    /** Number of nodes in store */
+    private int                                size                  = 0;
+
+    /** New ids of nodes, reused by compaction */
+    private int[]                              compactionMap;
+
+
+    /**
+     * Constructor
+     *
+     * @param budget
+     *            number of bytes store can use, it must hold at least one node
+     */
+    public MCTOffHeapNodeStore(long budget) {
+        long capacity = budget / (MCTOffHeapNodeStore.RECORD_SIZE * 4);
+        this.capacity = (int) Math.min(capacity, Integer.MAX_VALUE / (MCTOffHeapNodeStore.RECORD_SIZE * 4));
+        if (this.capacity < 1) { throw new IllegalArgumentException("budget of " + budget + " bytes can't hold a single node"); }
+
+        this.records = ByteBuffer.allocateDirect(this.capacity * MCTOffHeapNodeStore.RECORD_SIZE * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+
+    /**
+     * Removes all nodes from store, memory is kept.
+     */
+    @Override
+    public void clear() {
+        this.size = 0;
+    }
+
+
+    /**
+     * Adds node without parent.
+     *
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of added node
+     */
+    @Override
+    public int addRoot(int moveNumber, int moveDepth, ChessboardEvalState eval) {
+        int node = this.newNode(moveNumber, moveDepth, eval);
+        this.set(node, MCTOffHeapNodeStore.VISIT_COUNT, 1);
+        return node;
+    }
+
+
+    /**
+     * Adds child to <code>parent</code>, unless it has already been added.
+     *
+     * @param parent
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @param prior
+     *            prior probability of the move
+     * @param board
+     *            chess board in child's state
+     * @return id of child
+     * @throws IllegalStateException
+     *             if store is full
+     */
+    @Override
+    public int addChild(int parent, int moveNumber, float prior, IChessboard board) {
+        int node = this.getChild(parent, moveNumber);
+        if (node != MCTNodeStore.NO_NODE) { return node; }
+
+        node = this.newNode(moveNumber, this.get(parent, MCTOffHeapNodeStore.MOVE_DEPTH) + 1, board.evaluateChessboardFromWhitesPerpective());
+        this.set(node, MCTOffHeapNodeStore.PARENT, parent);
+        this.set(node, MCTOffHeapNodeStore.NEXT_SIBLING, this.get(parent, MCTOffHeapNodeStore.FIRST_CHILD));
+        this.set(node, MCTOffHeapNodeStore.PRIOR, Float.floatToIntBits(prior));
+        this.set(parent, MCTOffHeapNodeStore.FIRST_CHILD, node);
+        this.add(parent, MCTOffHeapNodeStore.NUMBER_OF_CHILDREN, 1);
+        for (int ancestor = parent; ancestor != MCTNodeStore.NO_NODE; ancestor = this.getParent(ancestor)) {
+            this.add(ancestor, MCTOffHeapNodeStore.NUMBER_OF_SUCCESSORS, 1);
+        }
+        return node;
+    }
+
+
+    /**
+     * Finds child of <code>node</code> that represents given move.
+     *
+     * @param node
+     *            id of parent
+     * @param moveNumber
+     *            move made from parent
+     * @return id of child or {@link #NO_NODE} if there is no such child
+     */
+    @Override
+    public int getChild(int node, int moveNumber) {
+        for (int child = this.getFirstChild(node); child != MCTNodeStore.NO_NODE; child = this.getNextSibling(child)) {
+            if (this.getMoveNumber(child) == moveNumber) { return child; }
+        }
+        return MCTNodeStore.NO_NODE;
+    }
+
+
+    /**
+     * Gets first child of node, edge of child is its id.
+     *
+     * @param node
+     *            node id
+     * @return id of first child or {@link #NO_NODE}
+     */
+    @Override
+    public int getFirstEdge(int node) {
+        return this.getFirstChild(node);
+    }
+
+
+    /**
+     * Gets next sibling of child <code>edge</code>.
+     *
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return id of next child or {@link #NO_NODE}
+     */
+    @Override
+    public int getNextEdge(int node, int edge) {
+        return this.getNextSibling(edge);
+    }
+
+
+    /**
+     * Gets child to which edge leads, it is the edge itself.
+     *
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return id of child
+     */
+    @Override
+    public int getEdgeChild(int node, int edge) {
+        return edge;
+    }
+
+
+    /**
+     * Gets move that leads to child <code>edge</code>.
+     *
+     * @param node
+     *            id of parent
+     * @param edge
+     *            id of child
+     * @return move number
+     */
+    @Override
+    public int getEdgeMove(int node, int edge) {
+        return this.getMoveNumber(edge);
+    }
+
+
+    /**
+     * Adds results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of visits
+     * @param mats
+     *            number of check mates
+     */
+    @Override
+    public void addVisits(int node, int visits, int mats) {
+        this.add(node, MCTOffHeapNodeStore.VISIT_COUNT, visits);
+        this.add(node, MCTOffHeapNodeStore.NUMBER_OF_MATS, mats);
+    }
+
+
+    /**
+     * Store isn't shared by search threads, so it has no virtual loss.
+     *
+     * @param node
+     *            node id
+     * @return 0
+     */
+    @Override
+    public int getVirtualLoss(int node) {
+        return 0;
+    }
+
+
+    /**
+     * Store isn't shared by search threads, so virtual loss can't be added.
+     *
+     * @param node
+     *            node id
+     * @param delta
+     *            virtual loss
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addVirtualLoss(int node, int delta) {
+        throw new UnsupportedOperationException("off-heap node store can't be shared by search threads");
+    }
+
+
+    /**
+     * Check is each possible move has been added as a child node. Node that
+     * hasn't been expanded yet doesn't have all children added.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all children have been added
+     */
+    @Override
+    public boolean areAllChildrenAdded(int node) {
+        int numberOfValidMoves = this.get(node, MCTOffHeapNodeStore.NUMBER_OF_VALID_MOVES);
+        return numberOfValidMoves >= 0 && this.getNumberOfChildren(node) >= numberOfValidMoves;
+    }
+
+
+    /**
+     * Check is each legal move, including moves that simulation strategies
+     * filter out, has been added as a child node. It is known only if number
+     * of legal moves was set.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if all legal moves have been added
+     */
+    @Override
+    public boolean areAllLegalMovesAdded(int node) {
+        int numberOfLegalMoves = this.get(node, MCTOffHeapNodeStore.NUMBER_OF_LEGAL_MOVES);
+        return numberOfLegalMoves >= 0 && this.getNumberOfChildren(node) >= numberOfLegalMoves;
+    }
+
+
+    /**
+     * Removes all children of node together with their subtrees. Node has to
+     * be expanded again, so number of its moves is reset.
+     *
+     * @param node
+     *            node id
+     * @return number of removed nodes
+     */
+    @Override
+    public int removeChildren(int node) {
+        for (int child = this.getFirstChild(node); child != MCTNodeStore.NO_NODE; child = this.getNextSibling(child)) {
+            this.set(child, MCTOffHeapNodeStore.PARENT, MCTNodeStore.NO_NODE);
+        }
+
+        int removedNodes = this.getNumberOfSuccessors(node);
+        this.set(node, MCTOffHeapNodeStore.FIRST_CHILD, MCTNodeStore.NO_NODE);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_CHILDREN, 0);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_VALID_MOVES, -1);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_LEGAL_MOVES, -1);
+        for (int ancestor = node; ancestor != MCTNodeStore.NO_NODE; ancestor = this.getParent(ancestor)) {
+            this.add(ancestor, MCTOffHeapNodeStore.NUMBER_OF_SUCCESSORS, -removedNodes);
+        }
+        return removedNodes;
+    }
+
+
+    /**
+     * Moves subtree of <code>root</code> to the beginning of the store, so
+     * free space is one dense region. Relative order of kept nodes doesn't
+     * change, so parent still has lower id than its children.
+     *
+     * @param root
+     *            id of node whose subtree is kept
+     * @return new id of <code>root</code>
+     */
+    @Override
+    public int compact(int root) {
+        if (this.compactionMap == null) {
+            this.compactionMap = new int[this.capacity];
+        }
+        int[] map = this.compactionMap;
+
+        // child is always added after its parent, so parent of every node is
+        // mapped before the node itself
+        int newSize = 0;
+        map[root] = newSize++;
+        for (int node = root + 1; node < this.size; node++) {
+            int parent = this.getParent(node);
+            map[node] = parent >= root && map[parent] != MCTNodeStore.NO_NODE ? newSize++ : MCTNodeStore.NO_NODE;
+        }
+
+        // new id is never higher than old one, so no kept record is
+        // overwritten before it is moved
+        for (int node = root; node < this.size; node++) {
+            int newNode = map[node];
+            if (newNode == MCTNodeStore.NO_NODE) {
+                continue;
+            }
+
+            int parent = node == root ? MCTNodeStore.NO_NODE : map[this.getParent(node)];
+            int firstChild = MCTOffHeapNodeStore.remap(map, this.getFirstChild(node));
+            int nextSibling = node == root ? MCTNodeStore.NO_NODE : MCTOffHeapNodeStore.remap(map, this.getNextSibling(node));
+
+            for (int field = 0; field < MCTOffHeapNodeStore.RECORD_SIZE; field++) {
+                this.set(newNode, field, this.get(node, field));
+            }
+            this.set(newNode, MCTOffHeapNodeStore.PARENT, parent);
+            this.set(newNode, MCTOffHeapNodeStore.FIRST_CHILD, firstChild);
+            this.set(newNode, MCTOffHeapNodeStore.NEXT_SIBLING, nextSibling);
+        }
+
+        this.size = newSize;
+        return map[root];
+    }
+
+
+    /**
+     * Makes node root of the tree. Discarded nodes are reclaimed when they
+     * take at least half of the store or when store is full. If kept subtree
+     * alone fills the store, store stays full.
+     *
+     * @param node
+     *            id of node that becomes root
+     * @return new id of <code>node</code>
+     */
+    @Override
+    public int makeRoot(int node) {
+        if (this.isFull() || this.size >= 2 * (this.getNumberOfSuccessors(node) + 1)) { return this.compact(node); }
+
+        this.set(node, MCTOffHeapNodeStore.PARENT, MCTNodeStore.NO_NODE);
+        return node;
+    }
+
+
+    /**
+     * Tells if store can't hold any more nodes, until discarded nodes are
+     * reclaimed.
+     *
+     * @return <code>true</code> if no more nodes can be added
+     */
+    @Override
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+
+    /**
+     * Gets number of records in use, including discarded nodes that haven't
+     * been reclaimed yet.
+     *
+     * @return number of nodes
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Gets number of nodes store can hold.
+     *
+     * @return capacity of store
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+
+    /**
+     * Gets how many times has node been visited.
+     *
+     * @param node
+     *            node id
+     * @return visit count
+     */
+    @Override
+    public int getVisitCount(int node) {
+        return this.get(node, MCTOffHeapNodeStore.VISIT_COUNT);
+    }
+
+
+    /**
+     * Gets number of check mates achieved in simulations that visited node.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getNumberOfMats(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NUMBER_OF_MATS);
+    }
+
+
+    /**
+     * Gets parent of node.
+     *
+     * @param node
+     *            node id
+     * @return id of parent or {@link #NO_NODE} if node has no parent
+     */
+    @Override
+    public int getParent(int node) {
+        return this.get(node, MCTOffHeapNodeStore.PARENT);
+    }
+
+
+    /**
+     * Gets id of node's first child.
+     *
+     * @param node
+     *            node id
+     * @return id of first child or {@link #NO_NODE} if node has no children
+     */
+    public int getFirstChild(int node) {
+        return this.get(node, MCTOffHeapNodeStore.FIRST_CHILD);
+    }
+
+
+    /**
+     * Gets id of next child of node's parent.
+     *
+     * @param node
+     *            node id
+     * @return id of next sibling or {@link #NO_NODE} if node is last child
+     */
+    public int getNextSibling(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NEXT_SIBLING);
+    }
+
+
+    /**
+     * Gets move that was made from node's parent to get to node.
+     *
+     * @param node
+     *            node id
+     * @return move number
+     */
+    @Override
+    public int getMoveNumber(int node) {
+        return this.get(node, MCTOffHeapNodeStore.MOVE_NUMBER);
+    }
+
+
+    /**
+     * Gets consecutive ply number of node.
+     *
+     * @param node
+     *            node id
+     * @return ply number
+     */
+    @Override
+    public int getMoveDepth(int node) {
+        return this.get(node, MCTOffHeapNodeStore.MOVE_DEPTH);
+    }
+
+
+    /**
+     * Tells if it is whites turn in node's chess board state.
+     *
+     * @param node
+     *            node id
+     * @return <code>true</code> if white is on the move
+     */
+    @Override
+    public boolean isWhitesMove(int node) {
+        return Utils.isWhitesMoveAtDepth(this.getMoveDepth(node));
+    }
+
+
+    /**
+     * Gets number of node's children.
+     *
+     * @param node
+     *            node id
+     * @return number of children
+     */
+    @Override
+    public int getNumberOfChildren(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NUMBER_OF_CHILDREN);
+    }
+
+
+    /**
+     * Store keeps only number of valid moves.
+     *
+     * @param node
+     *            node id
+     * @return <code>null</code>
+     */
+    @Override
+    public MoveList getValidMoves(int node) {
+        return null;
+    }
+
+
+    /**
+     * Store doesn't keep priors of moves.
+     *
+     * @param node
+     *            node id
+     * @return <code>null</code>
+     */
+    @Override
+    public float[] getMovePriors(int node) {
+        return null;
+    }
+
+
+    /**
+     * Sets number of moves that are possible from node, moves and their
+     * priors are not kept.
+     *
+     * @param node
+     *            node id
+     * @param moves
+     *            moves possible from node
+     * @param priors
+     *            prior probabilities of moves, they are ignored
+     */
+    @Override
+    public void setValidMoves(int node, MoveList moves, float[] priors) {
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_VALID_MOVES, moves.size());
+    }
+
+
+    /**
+     * Gets number of moves that are possible from node.
+     *
+     * @param node
+     *            node id
+     * @return number of moves or -1 if they haven't been set yet
+     */
+    @Override
+    public int getNumberOfValidMoves(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NUMBER_OF_VALID_MOVES);
+    }
+
+
+    /**
+     * Sets number of all legal moves of player on the move in node, used by
+     * MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param numberOfLegalMoves
+     *            number of legal moves
+     */
+    @Override
+    public void setNumberOfLegalMoves(int node, int numberOfLegalMoves) {
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_LEGAL_MOVES, numberOfLegalMoves);
+    }
+
+
+    /**
+     * Gets number of all legal moves of player on the move in node.
+     *
+     * @param node
+     *            node id
+     * @return number of legal moves or -1 if they haven't been counted
+     */
+    @Override
+    public int getNumberOfLegalMoves(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NUMBER_OF_LEGAL_MOVES);
+    }
+
+
+    /**
+     * Gets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, -1 if it hasn't been set
+     */
+    @Override
+    public int getMaximumSubTreeDepth(int node) {
+        return this.get(node, MCTOffHeapNodeStore.MAXIMUM_SUBTREE_DEPTH);
+    }
+
+
+    /**
+     * Sets depth difference between node and it's deepest descendant.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMaximumSubTreeDepth(int node, int depth) {
+        this.set(node, MCTOffHeapNodeStore.MAXIMUM_SUBTREE_DEPTH, depth);
+    }
+
+
+    /**
+     * Gets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @return depth difference, {@link Integer#MAX_VALUE} if no mate was found
+     */
+    @Override
+    public int getMinimumDepthOfMate(int node) {
+        return this.get(node, MCTOffHeapNodeStore.MINIMUM_DEPTH_OF_MATE);
+    }
+
+
+    /**
+     * Sets depth difference between node and it's highest descendant that
+     * represents check mate.
+     *
+     * @param node
+     *            node id
+     * @param depth
+     *            depth difference
+     */
+    @Override
+    public void setMinimumDepthOfMate(int node, int depth) {
+        this.set(node, MCTOffHeapNodeStore.MINIMUM_DEPTH_OF_MATE, depth);
+    }
+
+
+    /**
+     * Gets number of node's successors (subtree size without the node).
+     *
+     * @param node
+     *            node id
+     * @return number of successors
+     */
+    @Override
+    public int getNumberOfSuccessors(int node) {
+        return this.get(node, MCTOffHeapNodeStore.NUMBER_OF_SUCCESSORS);
+    }
+
+
+    /**
+     * Gets node's chess board evaluation from whites perspective.
+     *
+     * @param node
+     *            node id
+     * @return evaluation
+     */
+    @Override
+    public ChessboardEvalState getEval(int node) {
+        return MCTOffHeapNodeStore.EVAL_STATES[this.get(node, MCTOffHeapNodeStore.EVAL)];
+    }
+
+
+    /**
+     * Gets game theoretic value of node.
+     *
+     * @param node
+     *            node id
+     * @return proof state
+     */
+    @Override
+    public MCTProofState getProofState(int node) {
+        return MCTOffHeapNodeStore.PROOF_STATES[this.get(node, MCTOffHeapNodeStore.PROOF_STATE)];
+    }
+
+
+    /**
+     * Sets game theoretic value of node, when it is proven by MCTS-Solver.
+     *
+     * @param node
+     *            node id
+     * @param proofState
+     *            proof state
+     */
+    @Override
+    public void setProofState(int node, MCTProofState proofState) {
+        this.set(node, MCTOffHeapNodeStore.PROOF_STATE, proofState.ordinal());
+    }
+
+
+    /**
+     * Gets prior probability of move that leads to node, used by PUCT
+     * selection.
+     *
+     * @param node
+     *            node id
+     * @return prior probability of node's move, 0 if it wasn't set
+     */
+    @Override
+    public float getPrior(int node) {
+        return Float.intBitsToFloat(this.get(node, MCTOffHeapNodeStore.PRIOR));
+    }
+
+
+    /**
+     * Gets number of simulations in which move that leads to node was made
+     * after node's parent (all moves as first statistics).
+     *
+     * @param node
+     *            node id
+     * @return number of simulations
+     */
+    @Override
+    public int getAmafVisitCount(int node) {
+        return this.get(node, MCTOffHeapNodeStore.AMAF_VISIT_COUNT);
+    }
+
+
+    /**
+     * Gets number of check mates in simulations counted in
+     * {@link #getAmafVisitCount(int)}.
+     *
+     * @param node
+     *            node id
+     * @return number of check mates
+     */
+    @Override
+    public int getAmafNumberOfMats(int node) {
+        return this.get(node, MCTOffHeapNodeStore.AMAF_NUMBER_OF_MATS);
+    }
+
+
+    /**
+     * Adds all moves as first results of simulations to node.
+     *
+     * @param node
+     *            node id
+     * @param visits
+     *            number of simulations in which node's move was made
+     * @param mats
+     *            number of check mates in those simulations
+     */
+    @Override
+    public void addAmafVisits(int node, int visits, int mats) {
+        this.add(node, MCTOffHeapNodeStore.AMAF_VISIT_COUNT, visits);
+        this.add(node, MCTOffHeapNodeStore.AMAF_NUMBER_OF_MATS, mats);
+    }
+
+
+    /**
+     * Takes next free id and initializes its record.
+     *
+     * @param moveNumber
+     *            move that was made to get to node
+     * @param moveDepth
+     *            consecutive ply number of node
+     * @param eval
+     *            node's chess board evaluation from whites perspective
+     * @return id of new node
+     */
+    private int newNode(int moveNumber, int moveDepth, ChessboardEvalState eval) {
+        if (this.isFull()) { throw new IllegalStateException("off-heap node store is full"); }
+
+        int node = this.size++;
+        this.set(node, MCTOffHeapNodeStore.VISIT_COUNT, 0);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_MATS, 0);
+        this.set(node, MCTOffHeapNodeStore.PARENT, MCTNodeStore.NO_NODE);
+        this.set(node, MCTOffHeapNodeStore.FIRST_CHILD, MCTNodeStore.NO_NODE);
+        this.set(node, MCTOffHeapNodeStore.NEXT_SIBLING, MCTNodeStore.NO_NODE);
+        this.set(node, MCTOffHeapNodeStore.MOVE_NUMBER, moveNumber);
+        this.set(node, MCTOffHeapNodeStore.MOVE_DEPTH, moveDepth);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_CHILDREN, 0);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_VALID_MOVES, -1);
+        this.set(node, MCTOffHeapNodeStore.MAXIMUM_SUBTREE_DEPTH, -1);
+        this.set(node, MCTOffHeapNodeStore.MINIMUM_DEPTH_OF_MATE, Integer.MAX_VALUE);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_SUCCESSORS, 0);
+        this.set(node, MCTOffHeapNodeStore.EVAL, eval.ordinal());
+        this.set(node, MCTOffHeapNodeStore.PROOF_STATE, MCTProofState.fromEval(eval).ordinal());
+        this.set(node, MCTOffHeapNodeStore.PRIOR, 0);
+        this.set(node, MCTOffHeapNodeStore.AMAF_VISIT_COUNT, 0);
+        this.set(node, MCTOffHeapNodeStore.AMAF_NUMBER_OF_MATS, 0);
+        this.set(node, MCTOffHeapNodeStore.NUMBER_OF_LEGAL_MOVES, -1);
+        return node;
+    }
+
+
+    /**
+     * Gets new id of node after compaction.
+     * 
+     * @param map
+     *            new ids by old ids
+     * @param node
+     *            old id or {@link MCTNodeStore#NO_NODE}
+     * @return new id or {@link MCTNodeStore#NO_NODE}
+     */
+    private static int remap(int[] map, int node) {
+        return node == MCTNodeStore.NO_NODE ? MCTNodeStore.NO_NODE : map[node];
+    }
+
+
+    /**
+     * Reads field of node record.
+     *
+     * @param node
+     *            node id
+     * @param field
+     *            offset of field in record
+     * @return value of field
+     */
+    private int get(int node, int field) {
+        return this.records.get(node * MCTOffHeapNodeStore.RECORD_SIZE + field);
+    }
+
+
+    /**
+     * Writes field of node record.
+     *
+     * @param node
+     *            node id
+     * @param field
+     *            offset of field in record
+     * @param value
+     *            new value of field
+     */
+    private void set(int node, int field, int value) {
+        this.records.put(node * MCTOffHeapNodeStore.RECORD_SIZE + field, value);
+    }
+
+
+    /**
+     * Adds value to field of node record.
+     *
+     * @param node
+     *            node id
+     * @param field
+     *            offset of field in record
+     * @param value
+     *            value that is added
+     */
+    private void add(int node, int field, int value) {
+        int index = node * MCTOffHeapNodeStore.RECORD_SIZE + field;
+        this.records.put(index, this.records.get(index) + value);
+    }
+
+}
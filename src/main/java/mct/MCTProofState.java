@@ -0,0 +1,57 @@
+package mct;
+
+import chess.chessboard.ChessboardEvalState;
+
+/**
+ * Game theoretic value of MC tree node, used by MCTS-Solver. Value is from
+ * whites perspective: white wins only by check mating black king, every
+ * other end of the game is whites loss.
+ *
+ * @author Andraz Kohne
+ */
+public enum MCTProofState {
+    /** Value of node is not known yet */
+    UNPROVEN,
+    /** White can force check mate from node */
+    WHITE_WINS,
+    /** Black can avoid check mate from node */
+    WHITE_LOSES;
+
+    /**
+     * Gets value of node from its chess board evaluation. Only terminal
+     * states are proven.
+     *
+     * @param eval
+     *            chess board evaluation from whites perspective
+     * @return value of node
+     */
+    public static MCTProofState fromEval(ChessboardEvalState eval) {
+        if (eval == ChessboardEvalState.NORMAl) { return MCTProofState.UNPROVEN; }
+        return eval == ChessboardEvalState.BLACK_KING_MATED ? MCTProofState.WHITE_WINS : MCTProofState.WHITE_LOSES;
+    }
+
+
+    /**
+     * Gets value of node that is won by player on the move.
+     *
+     * @param isWhitesMove
+     *            <code>true</code> if white is on the move
+     * @return value that is win for player on the move
+     */
+    public static MCTProofState winOf(boolean isWhitesMove) {
+        return isWhitesMove ? MCTProofState.WHITE_WINS : MCTProofState.WHITE_LOSES;
+    }
+
+
+    /**
+     * Gets value of node that is lost by player on the move.
+     *
+     * @param isWhitesMove
+     *            <code>true</code> if white is on the move
+     * @return value that is loss for player on the move
+     */
+    public static MCTProofState lossOf(boolean isWhitesMove) {
+        return isWhitesMove ? MCTProofState.WHITE_LOSES : MCTProofState.WHITE_WINS;
+    }
+
+}
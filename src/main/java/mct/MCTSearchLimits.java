@@ -0,0 +1,217 @@
+package mct;
+
+import config.MCTSSetup;
+
+/**
+ * Limits of one MCT search. Search runs until any of the set limits is
+ * reached, limit with value 0 is not set. Steps, playouts and nodes are
+ * counted per tree, so with root parallelization every tree can use whole
+ * budget, while time limit is shared by all of them.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTSearchLimits {
+
+    /** Maximum number of MCT steps */
+    private int              numberOfSteps    = 0;
+
+    /** Maximum number of simulations (playouts) */
+    private long             numberOfPlayouts = 0;
+
+    /** Maximum number of nodes added to the tree */
+    private int              numberOfNodes    = 0;
+
+    /** Maximum search time in milliseconds */
+    private long             timeLimit        = 0;
+
+    /** If <code>true</code> search runs until it's stopped */
+    private boolean          untilStopped     = false;
+
+    /** Set when search should stop regardless of other limits */
+    private volatile boolean stopped          = false;
+
+
+    /**
+     * Creates limits with only number of steps set.
+     *
+     * @param numberOfSteps
+     *            maximum number of MCT steps
+     */
+    public MCTSearchLimits(int numberOfSteps) {
+        this.numberOfSteps = numberOfSteps;
+    }
+
+
+    /**
+     * Creates limits from configuration, that is time per move, node budget
+     * and playout budget from {@link MCTSSetup} together with given number
+     * of steps.
+     *
+     * @param numberOfSteps
+     *            maximum number of MCT steps, 0 if search isn't limited by
+     *            steps
+     * @return search limits
+     */
+    public static MCTSearchLimits fromSetup(int numberOfSteps) {
+        MCTSearchLimits limits = new MCTSearchLimits(numberOfSteps);
+        limits.setTimeLimit(MCTSSetup.TIME_PER_MOVE);
+        limits.setNumberOfNodes(MCTSSetup.NODE_BUDGET);
+        limits.setNumberOfPlayouts(MCTSSetup.PLAYOUT_BUDGET);
+        return limits;
+    }
+
+
+    /**
+     * Creates limits of search that runs until {@link #stop()} is called.
+     *
+     * @return search limits
+     */
+    public static MCTSearchLimits untilStopped() {
+        MCTSearchLimits limits = new MCTSearchLimits(0);
+        limits.untilStopped = true;
+        return limits;
+    }
+
+
+    /**
+     * Tells if any limit is set. Search without limits would never end,
+     * unless it's run until stopped.
+     *
+     * @return <code>true</code> if at least one limit is set
+     */
+    public boolean isLimited() {
+        return this.untilStopped || this.numberOfSteps > 0 || this.numberOfPlayouts > 0 || this.numberOfNodes > 0 || this.timeLimit > 0;
+    }
+
+
+    /**
+     * Stops search that uses these limits. It can be called from any thread,
+     * search ends after its current steps.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+
+    /**
+     * Tells if {@link #stop()} has been called.
+     *
+     * @return <code>true</code> if search should stop
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+
+    /**
+     * Gets maximum number of steps, where playout budget is converted to
+     * steps, because every step runs
+     * {@link MCTSSetup#NUMBER_OF_SIMULATIONS_PER_EVALUATION} simulations.
+     *
+     * @return maximum number of steps or {@link Integer#MAX_VALUE} if steps
+     *         aren't limited
+     */
+    public int getMaximumNumberOfSteps() {
+        long steps = this.numberOfSteps > 0 ? this.numberOfSteps : Integer.MAX_VALUE;
+        if (this.numberOfPlayouts > 0) {
+            int simulationsPerStep = Math.max(MCTSSetup.NUMBER_OF_SIMULATIONS_PER_EVALUATION, 1);
+            steps = Math.min(steps, (this.numberOfPlayouts + simulationsPerStep - 1) / simulationsPerStep);
+        }
+        return (int) steps;
+    }
+
+
+    /**
+     * Gets maximum number of MCT steps.
+     *
+     * @return maximum number of steps, 0 if it isn't set
+     */
+    public int getNumberOfSteps() {
+        return this.numberOfSteps;
+    }
+
+
+    /**
+     * Sets maximum number of MCT steps.
+     *
+     * @param numberOfSteps
+     *            maximum number of steps, 0 if search isn't limited by
+     *            steps
+     */
+    public void setNumberOfSteps(int numberOfSteps) {
+        this.numberOfSteps = numberOfSteps;
+    }
+
+
+    /**
+     * Gets maximum number of simulations (playouts).
+     *
+     * @return maximum number of simulations, 0 if it isn't set
+     */
+    public long getNumberOfPlayouts() {
+        return this.numberOfPlayouts;
+    }
+
+
+    /**
+     * Sets maximum number of simulations (playouts).
+     *
+     * @param numberOfPlayouts
+     *            maximum number of simulations, 0 if search isn't limited
+     *            by simulations
+     */
+    public void setNumberOfPlayouts(long numberOfPlayouts) {
+        this.numberOfPlayouts = numberOfPlayouts;
+    }
+
+
+    /**
+     * Gets maximum number of nodes added to the tree.
+     *
+     * @return maximum number of added nodes, 0 if it isn't set
+     */
+    public int getNumberOfNodes() {
+        return this.numberOfNodes;
+    }
+
+
+    /**
+     * Sets maximum number of nodes added to the tree.
+     *
+     * @param numberOfNodes
+     *            maximum number of added nodes, 0 if search isn't limited
+     *            by nodes
+     */
+    public void setNumberOfNodes(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+
+    /**
+     * Gets maximum search time.
+     *
+     * @return maximum search time in milliseconds, 0 if it isn't set
+     */
+    public long getTimeLimit() {
+        return this.timeLimit;
+    }
+
+
+    /**
+     * Sets maximum search time.
+     *
+     * @param timeLimit
+     *            maximum search time in milliseconds, 0 if search isn't
+     *            limited by time
+     */
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+
+    @Override
+    public String toString() {
+        return "steps=" + this.numberOfSteps + ", playouts=" + this.numberOfPlayouts + ", nodes=" + this.numberOfNodes + ", time=" + this.timeLimit + "ms";
+    }
+
+}
@@ -20,6 +20,15 @@ public class MCTStats {
     /** Number of MC tree collapses in current match. */
     public int        numberOfMCTreeColapses       = 0;
 
+    /** Number of MC steps run while black was choosing its move. */
+    public int        numberOfPonderedSteps        = 0;
+
+    /** Number of nodes removed from MC tree because it reached its size cap. */
+    public int        numberOfPrunedNodes          = 0;
+
+    /** Number of MC steps that were not run because best move was already known. */
+    public long       numberOfSavedSteps           = 0;
+
     /** Statistics related to {@link MCTNode} */
     MCTNodeStatistics nodeStatistics               = new MCTNodeStatistics();
 
@@ -0,0 +1,114 @@
+package mct;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of MC tree nodes by chess board state. Nodes that represent same
+ * state are shared between parents, so MC tree becomes directed acyclic graph
+ * and statistics of transpositions are not split between duplicates.<br/>
+ * State is identified by zobrist key (which includes side to move), ply
+ * number, so a node can't become its own descendant, and number of times
+ * position has appeared. Evaluation of node that was reached by repeating
+ * position three times is draw, so it can't be shared with node of same
+ * position reached by other path.
+ *
+ * @author Andraz Kohne
+ */
+public class MCTTranspositionTable {
+
+    /**
+     * Number of appearances of position from which on it is draw by
+     * repetition, higher numbers are not distinguished
+     */
+    private static final int                       DRAW_REPETITIONS = 3;
+
+    /** Nodes by key of their chess board state */
+    private final ConcurrentHashMap<Long, MCTNode> nodes = new ConcurrentHashMap<Long, MCTNode>();
+
+
+    /**
+     * Finds node of chess board state.
+     *
+     * @param zobristKey
+     *            zobrist key of chess board state
+     * @param moveDepth
+     *            ply number of chess board state
+     * @param repetitions
+     *            how many times has position appeared
+     * @return node or <code>null</code> if table holds no such node
+     */
+    public MCTNode get(long zobristKey, int moveDepth, int repetitions) {
+        MCTNode node = this.nodes.get(MCTTranspositionTable.key(zobristKey, moveDepth, repetitions));
+        return node != null && node.moveDepth == moveDepth ? node : null;
+    }
+
+
+    /**
+     * Adds node to table, unless table already holds node of same state.
+     *
+     * @param zobristKey
+     *            zobrist key of node's chess board state
+     * @param repetitions
+     *            how many times has node's position appeared
+     * @param node
+     *            node
+     * @return node that table already held or <code>null</code> if
+     *         <code>node</code> was added
+     */
+    public MCTNode putIfAbsent(long zobristKey, int repetitions, MCTNode node) {
+        return this.nodes.putIfAbsent(MCTTranspositionTable.key(zobristKey, node.moveDepth, repetitions), node);
+    }
+
+
+    /**
+     * Removes nodes that were discarded by compaction of
+     * {@link MCTObjectNodeStore}, so table doesn't keep discarded parts of the
+     * tree alive.
+     */
+    public void removeDiscardedNodes() {
+        Iterator<MCTNode> iterator = this.nodes.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().id == MCTNodeStore.NO_NODE) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Removes all nodes from table.
+     */
+    public void clear() {
+        this.nodes.clear();
+    }
+
+
+    /**
+     * Gets number of nodes in table.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return this.nodes.size();
+    }
+
+
+    /**
+     * Combines zobrist key, ply number and number of appearances of position
+     * into table key.
+     *
+     * @param zobristKey
+     *            zobrist key of chess board state
+     * @param moveDepth
+     *            ply number of chess board state
+     * @param repetitions
+     *            how many times has position appeared
+     * @return table key
+     */
+    private static Long key(long zobristKey, int moveDepth, int repetitions) {
+        int repetitionState = Math.min(repetitions, MCTTranspositionTable.DRAW_REPETITIONS);
+        return zobristKey ^ (0x9E3779B97F4A7C15L * (moveDepth + 1)) ^ (0xC2B2AE3D27D4EB4FL * repetitionState);
+    }
+
+}
@@ -0,0 +1,15 @@
+package mct;
+
+/**
+ * Describes how MCT algorithm stores nodes of MC tree.
+ *
+ * @author Andraz Kohne
+ */
+public enum MCTTreeStore {
+    /** Every node is {@link MCTNode} object in {@link MCTObjectNodeStore} */
+    OBJECTS,
+    /** Node fields are kept in parallel primitive arrays of {@link MCTNodePool} */
+    POOL,
+    /** Node records are kept in direct memory of {@link MCTOffHeapNodeStore} */
+    OFF_HEAP
+}
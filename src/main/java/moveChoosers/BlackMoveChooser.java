@@ -5,7 +5,7 @@ import java.util.logging.Logger;
 import moveFinders.BlackFinderStrategy;
 import moveFinders.BlackMoveFinder;
 import utils.Utils;
-import chess.chessboard.Chessboard;
+import chess.chessboard.IChessboard;
 import exceptions.ChessboardException;
 
 /**
@@ -31,7 +31,7 @@ public class BlackMoveChooser {
      * @return selected move number
      * @throws ChessboardException
      */
-    public static int chooseBlackKingMove(Chessboard board, BlackFinderStrategy strategy, Logger log) throws ChessboardException {
+    public static int chooseBlackKingMove(IChessboard board, BlackFinderStrategy strategy, Logger log) throws ChessboardException {
         int rez = BlackMoveFinder.findBlackKingMove(board, strategy);
         log.fine("V polpotezi " + (board.getNumberOfPliesMade() + 1) + " je rni izbral potezo " + Utils.singleMoveNumberToString(rez).toLowerCase());
         return rez;
@@ -1,11 +1,14 @@
 package moveChoosers;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Random;
 import java.util.logging.Logger;
 
 import mct.MCTNode;
+import mct.MCTProofState;
 import utils.MCTUtils;
+import config.MCTSSetup;
 
 /**
  * Class that handles choosing moves for white from MC Tree.
@@ -22,7 +25,9 @@ public class WhiteMoveChooser {
 
 
     /**
-     * Chooses whites move from {@link MCTNode}.
+     * Chooses whites move from {@link MCTNode}. With
+     * {@link MCTSSetup#USE_SOLVER} proven mate is played regardless of
+     * strategy and children that are proven losses are avoided.
      * 
      * @param node
      *            root node
@@ -33,17 +38,21 @@ public class WhiteMoveChooser {
      * @return chosen move number of nodes child
      */
     public static int chooseAMove(MCTNode node, WhiteChooserStrategy strategy, Logger log) {
-        MCTNode rez = null;
-        switch (strategy) {
-            case RANDOM:
-                rez = WhiteMoveChooser.chooseRandomNode(node);
-                break;
-            case MAX_VISIT_COUNT:
-                rez = WhiteMoveChooser.chooseMaxVisitCountMove(node);
-                break;
-            case MAX_UCT:
-                rez = WhiteMoveChooser.chooseMaxRatingNode(node);
-                break;
+        MCTNode rez = MCTSSetup.USE_SOLVER ? WhiteMoveChooser.chooseProvenMate(node) : null;
+
+        if (rez == null) {
+            Collection<MCTNode> candidates = MCTSSetup.USE_SOLVER ? WhiteMoveChooser.getNotLostNodes(node) : node.children.values();
+            switch (strategy) {
+                case RANDOM:
+                    rez = WhiteMoveChooser.chooseRandomNode(candidates);
+                    break;
+                case MAX_VISIT_COUNT:
+                    rez = WhiteMoveChooser.chooseMaxVisitCountMove(candidates);
+                    break;
+                case MAX_UCT:
+                    rez = WhiteMoveChooser.chooseMaxRatingNode(node);
+                    break;
+            }
         }
         String logString = "Parent node info: " + node + System.getProperty("line.separator") + "V polpotezi " + (node.moveDepth + 1)
                 + " je beli izbiral med potezami :\r\n" + node.descendantsToString() + "Izbral si pa je potezo:\t " + rez;
@@ -55,17 +64,56 @@ public class WhiteMoveChooser {
 
 
     /**
-     * Gets son nodes with highest visit count from <code>node</code>.
+     * Gets child of <code>node</code> from which white can force check mate.
+     * If there are more of them the one with nearest known mate is chosen.
+     * 
+     * @param node
+     *            parent of nodes from which we choose
+     * @return proven winning child or <code>null</code> if there is none
+     */
+    private static MCTNode chooseProvenMate(MCTNode node) {
+        MCTNode rez = null;
+        for (MCTNode sonNode : node.children.values()) {
+            if (sonNode.proofState == MCTProofState.WHITE_WINS
+                    && (rez == null || sonNode.minimumDepthOfDescendadWhoRepresentsCheckMate < rez.minimumDepthOfDescendadWhoRepresentsCheckMate)) {
+                rez = sonNode;
+            }
+        }
+        return rez;
+    }
+
+
+    /**
+     * Gets children of <code>node</code> that are not proven losses for
+     * white. If all of them are, all children are returned.
      * 
      * @param node
-     *            parent of node from which we choose
+     *            parent of nodes from which we choose
+     * @return candidates for whites move
+     */
+    private static Collection<MCTNode> getNotLostNodes(MCTNode node) {
+        ArrayList<MCTNode> rez = new ArrayList<MCTNode>();
+        for (MCTNode sonNode : node.children.values()) {
+            if (sonNode.proofState != MCTProofState.WHITE_LOSES) {
+                rez.add(sonNode);
+            }
+        }
+        return rez.isEmpty() ? node.children.values() : rez;
+    }
+
+
+    /**
+     * Gets son nodes with highest visit count from <code>candidates</code>.
+     * 
+     * @param candidates
+     *            nodes from which we choose
      * @return move number from one of son nodes with highest visit count
      */
-    private static MCTNode chooseMaxVisitCountMove(MCTNode node) {
+    private static MCTNode chooseMaxVisitCountMove(Collection<MCTNode> candidates) {
         int maxVC = 0;
         ArrayList<MCTNode> rezCand = new ArrayList<MCTNode>();
 
-        for (MCTNode sonNode : node.children.values()) {
+        for (MCTNode sonNode : candidates) {
             if (sonNode.visitCount > maxVC) {
                 maxVC = sonNode.visitCount;
                 rezCand = new ArrayList<MCTNode>();
@@ -98,15 +146,15 @@ public class WhiteMoveChooser {
 
 
     /**
-     * Return random son of the <code>node</code>
+     * Return random node from <code>candidates</code>
      * 
-     * @param node
-     *            parent of nodes from which we choose
+     * @param candidates
+     *            nodes from which we choose
      * @return move number that belongs to one of nodes children, chosen at
      *         random
      */
-    private static MCTNode chooseRandomNode(MCTNode node) {
-        ArrayList<MCTNode> sonNodes = new ArrayList<MCTNode>(node.children.values());
+    private static MCTNode chooseRandomNode(Collection<MCTNode> candidates) {
+        ArrayList<MCTNode> sonNodes = new ArrayList<MCTNode>(candidates);
         int chosenNode = WhiteMoveChooser.random.nextInt(sonNodes.size());
         return sonNodes.get(chosenNode);
     }
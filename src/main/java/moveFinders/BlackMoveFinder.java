@@ -2,14 +2,12 @@ package moveFinders;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.Random;
 
 import utils.FruitUtils;
 import utils.MoveFindersUtils;
-import chess.Move;
-import chess.chessboard.Chessboard;
-import chess.chessboard.SimpleChessboard;
+import chess.MoveList;
+import chess.chessboard.IChessboard;
 import config.IOSetup;
 import exceptions.ChessboardException;
 
@@ -31,43 +29,50 @@ public class BlackMoveFinder {
      *            board on which we look for move number
      * @param strategy
      *            desired black king strategy
-     * @return a list of move numbers for the given {@link BlackFinderStrategy}
+     * @param rez
+     *            list to which move numbers for the given
+     *            {@link BlackFinderStrategy} are added, it stays empty if black
+     *            king has no legal moves
      * @throws ChessboardException
      */
-    @SuppressWarnings("unchecked")
-    public static ArrayList<Move> findBlackKingMoves(Chessboard board, BlackFinderStrategy strategy) throws ChessboardException {
-        ArrayList<Move> moves = board.getAllLegalBlackKingMoves();
-
-        if (moves.size() == 0) { return null; }
-
-        switch (strategy) {
-            case RANDOM:
-                return moves;
-            case CENTER:
-                return BlackMoveFinder.findBlackKingCenterMove(moves);
-            case PERFECT:
-                return BlackMoveFinder.findBlackPerfectMove(board);
-            case CUSTOM: { // crni tezi proti centru, toda ce je mozno pa poje
-                         // belo
-                // figuro, poleg tega se pa tudi izgiba opoziciji kraljev
-                ArrayList<Move> blackEats = board.movesWhereBlackKingEatsWhite();
-                if (blackEats.size() == 0) {
-                    ArrayList<Move> avoidsOpp = board.movesWhereBlackKingEvadesOposition(moves);
-                    if (avoidsOpp.size() == 0) {
-                        return BlackMoveFinder.findBlackKingCenterMove(moves);
+    public static void findBlackKingMoves(IChessboard board, BlackFinderStrategy strategy, MoveList rez) throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        board.generateAllLegalBlackKingMoves(moves);
+
+        if (moves.size() != 0) {
+            switch (strategy) {
+                case RANDOM:
+                    rez.copyFrom(moves);
+                    break;
+                case CENTER:
+                    BlackMoveFinder.findBlackKingCenterMove(moves, rez);
+                    break;
+                case PERFECT:
+                    BlackMoveFinder.findBlackPerfectMove(board, rez);
+                    break;
+                case CUSTOM: { // crni tezi proti centru, toda ce je mozno pa
+                               // poje belo
+                    // figuro, poleg tega se pa tudi izgiba opoziciji kraljev
+                    board.movesWhereBlackKingEatsWhite(rez);
+                    if (rez.size() == 0) {
+                        MoveList avoidsOpp = MoveList.acquire();
+                        board.movesWhereBlackKingEvadesOposition(moves, avoidsOpp);
+                        if (avoidsOpp.size() == 0) {
+                            BlackMoveFinder.findBlackKingCenterMove(moves, rez);
+                        }
+                        else {
+                            BlackMoveFinder.findBlackKingCenterMove(avoidsOpp, rez);
+                        }
+                        MoveList.release(avoidsOpp);
                     }
-                    else {
-                        return BlackMoveFinder.findBlackKingCenterMove(avoidsOpp);
-                    }
-                }
-                else {
-                    return (ArrayList<Move>) blackEats.clone();
+                    break;
                 }
+                default:
+                    break;
             }
-            default:
-                return null;
         }
 
+        MoveList.release(moves);
     }
 
 
@@ -81,14 +86,15 @@ public class BlackMoveFinder {
      * @return move number for given strategy
      * @throws ChessboardException
      */
-    public static int findBlackKingMove(Chessboard board, BlackFinderStrategy strategy) throws ChessboardException {
-        ArrayList<Move> moves = BlackMoveFinder.findBlackKingMoves(board, strategy);
-        if (moves == null) {
-            return -1;
-        }
-        else {
-            return BlackMoveFinder.findBlackKingRandomMove(moves);
+    public static int findBlackKingMove(IChessboard board, BlackFinderStrategy strategy) throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        BlackMoveFinder.findBlackKingMoves(board, strategy, moves);
+        int rez = -1;
+        if (moves.size() != 0) {
+            rez = BlackMoveFinder.findBlackKingRandomMove(moves);
         }
+        MoveList.release(moves);
+        return rez;
     }
 
 
@@ -98,20 +104,18 @@ public class BlackMoveFinder {
      * 
      * @param moves
      *            moves from which we get those who go towards center.
-     * @return moves for center black king strategy
+     * @param rez
+     *            list to which moves for center black king strategy are added
      */
-    private static ArrayList<Move> findBlackKingCenterMove(ArrayList<Move> moves) {
+    private static void findBlackKingCenterMove(MoveList moves, MoveList rez) {
         int minDist = MoveFindersUtils.findMinimumDistanceFromCenterFromPlies(moves);
-        ArrayList<Move> rezMoves = new ArrayList<Move>();
 
         for (int x = 0; x < moves.size(); x++) {
-            int dist = MoveFindersUtils.distanceOfMoveFromCenter(moves.get(x).moveNumber);
+            int dist = MoveFindersUtils.distanceOfMoveFromCenter(moves.get(x));
             if (dist == minDist) {
-                rezMoves.add(moves.get(x));
+                rez.add(moves.get(x));
             }
         }
-
-        return rezMoves;
     }
 
 
@@ -122,9 +126,9 @@ public class BlackMoveFinder {
      *            list of moves
      * @return random move from <code>moves</code>.
      */
-    private static int findBlackKingRandomMove(ArrayList<Move> moves) {
+    private static int findBlackKingRandomMove(MoveList moves) {
         int rez = BlackMoveFinder.random.nextInt(moves.size());
-        return moves.get(rez).moveNumber;
+        return moves.get(rez);
     }
 
 
@@ -133,9 +137,11 @@ public class BlackMoveFinder {
      * 
      * @param board
      *            board on which we search for move
-     * @return move number for black king that uses perfect strategy
+     * @param rez
+     *            list to which move number for black king that uses perfect
+     *            strategy is added
      */
-    private static ArrayList<Move> findBlackPerfectMove(SimpleChessboard board) {
+    private static void findBlackPerfectMove(IChessboard board, MoveList rez) {
         try {
             Runtime rt = Runtime.getRuntime();
             Process pr = rt.exec(IOSetup.FRUIT_FILEPATH);
@@ -163,14 +169,11 @@ public class BlackMoveFinder {
             pr.destroy();
             h = h.substring(9, 13);
             int bestMove = board.constructMoveNumberFromString(h);
-            ArrayList<Move> rez = new ArrayList<Move>();
-            rez.add(new Move(bestMove));
-            return rez;
+            rez.add(bestMove);
         }
         catch (Exception e) {
             e.printStackTrace();
         }
-        return null;
     }
 
 
@@ -1,12 +1,11 @@
 package moveFinders;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 import javax.management.RuntimeErrorException;
 
-import chess.Move;
-import chess.chessboard.Chessboard;
+import chess.MoveList;
+import chess.chessboard.IChessboard;
 import config.MCTSSetup;
 import exceptions.ChessboardException;
 
@@ -27,22 +26,28 @@ public class WhiteMoveFinder {
      *            board on which we search
      * @param strategy
      *            white simulation strategy
-     * @return legal moves according to {@link WhiteFinderStrategy}
+     * @param rez
+     *            list to which legal moves according to
+     *            {@link WhiteFinderStrategy} are added
      * @throws ChessboardException
      */
-    public static ArrayList<Move> findWhiteMoves(Chessboard board, WhiteFinderStrategy strategy) throws ChessboardException {
+    public static void findWhiteMoves(IChessboard board, WhiteFinderStrategy strategy, MoveList rez) throws ChessboardException {
         switch (strategy) {
             case RANDOM:
-                return board.getAllLegalWhiteMoves();
+                board.generateAllLegalWhiteMoves(rez);
+                break;
             case KRRK_ENDING:
             case KQK_ENDING:
-                return WhiteMoveFinder.generalHeuristics(board);
+                WhiteMoveFinder.generalHeuristics(board, rez);
+                break;
             case KRK_ENDING:
-                return WhiteMoveFinder.findKRKWhiteMove(board);
+                WhiteMoveFinder.findKRKWhiteMove(board, rez);
+                break;
             case KBBK_ENDING:
-                return WhiteMoveFinder.findKBBKWhiteMove(board);
+                WhiteMoveFinder.findKBBKWhiteMove(board, rez);
+                break;
             default:
-                return null;
+                break;
         }
     }
 
@@ -57,14 +62,15 @@ public class WhiteMoveFinder {
      * @return move number
      * @throws ChessboardException
      */
-    public static int findWhiteMove(Chessboard board, WhiteFinderStrategy strategy) throws ChessboardException {
-        ArrayList<Move> rez = WhiteMoveFinder.findWhiteMoves(board, strategy);
-        if (rez == null) {
-            return -1;
-        }
-        else {
-            return WhiteMoveFinder.getRandomMoveNumberFromArrayList(rez);
+    public static int findWhiteMove(IChessboard board, WhiteFinderStrategy strategy) throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        WhiteMoveFinder.findWhiteMoves(board, strategy, moves);
+        int rez = -1;
+        if (moves.size() != 0) {
+            rez = WhiteMoveFinder.getRandomMoveNumberFromList(moves);
         }
+        MoveList.release(moves);
+        return rez;
     }
 
 
@@ -74,21 +80,22 @@ public class WhiteMoveFinder {
      * 
      * @param board
      *            state of chess board on which we search for move
-     * @return whites move corresponding to set heuristics
+     * @param rez
+     *            list to which whites moves corresponding to set heuristics
+     *            are added
      * @throws ChessboardException
      */
-    @SuppressWarnings("unchecked")
-    public static ArrayList<Move> findKRKWhiteMove(Chessboard board) throws ChessboardException {
-        ArrayList<Move> rez = WhiteMoveFinder.generalHeuristics(board);
+    public static void findKRKWhiteMove(IChessboard board, MoveList rez) throws ChessboardException {
+        WhiteMoveFinder.generalHeuristics(board, rez);
 
         if (MCTSSetup.KRK_HEURISTICS_white_checkes_if_kings_are_in_opposition) {
-            ArrayList<Move> opp = board.KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(rez);
+            MoveList opp = MoveList.acquire();
+            board.KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(rez, opp);
             if (opp.size() != 0) {
-                rez = (ArrayList<Move>) opp.clone();
+                rez.copyFrom(opp);
             }
+            MoveList.release(opp);
         }
-
-        return rez;
     }
 
 
@@ -98,22 +105,123 @@ public class WhiteMoveFinder {
      * 
      * @param board
      *            state of chess board on which we search for move
-     * @return whites move corresponding to set heuristics
+     * @param rez
+     *            list to which whites moves corresponding to set heuristics
+     *            are added
      * @throws ChessboardException
      */
-    @SuppressWarnings("unchecked")
-    private static ArrayList<Move> findKBBKWhiteMove(Chessboard board) throws ChessboardException {
-
-        ArrayList<Move> rez = WhiteMoveFinder.generalHeuristics(board);
+    private static void findKBBKWhiteMove(IChessboard board, MoveList rez) throws ChessboardException {
+        WhiteMoveFinder.generalHeuristics(board, rez);
 
         if (MCTSSetup.KBBK_HEURISTICS_white_tries_to_put_bishops_on_adjacent_diagonals) {
-            ArrayList<Move> diagonal = board.KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(rez);
+            MoveList diagonal = MoveList.acquire();
+            board.KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(rez, diagonal);
             if (diagonal.size() != 0) {
-                rez = (ArrayList<Move>) diagonal.clone();
+                rez.copyFrom(diagonal);
             }
+            MoveList.release(diagonal);
         }
+    }
 
-        return rez;
+
+    /**
+     * Counts for every move how many heuristics of given strategy allow it.
+     * Heuristics are the same as in {@link #findWhiteMoves}, but instead of
+     * filtering moves one after another, each of them is applied to all moves.
+     * Heuristic that allows no move is ignored.
+     * 
+     * @param board
+     *            chess board in state from which moves are made
+     * @param strategy
+     *            white simulation strategy
+     * @param moves
+     *            all legal white moves
+     * @param rez
+     *            array in which number of allowing heuristics is stored for
+     *            every move, it must be at least as long as
+     *            <code>moves</code>
+     */
+    public static void countAllowingHeuristics(IChessboard board, WhiteFinderStrategy strategy, MoveList moves, int[] rez) {
+        for (int x = 0; x < moves.size(); x++) {
+            rez[x] = 0;
+        }
+        if (strategy == WhiteFinderStrategy.RANDOM) { return; }
+
+        MoveList filtered = MoveList.acquire();
+
+        if (MCTSSetup.HEURISTICS_check_for_urgent_moves) {
+            filtered.clear();
+            board.whiteUrgentMoves(moves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        if (MCTSSetup.HEURISTICS_only_safe_moves) {
+            filtered.clear();
+            board.whiteSafeMoves(moves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        if (MCTSSetup.HEURISTICS_avoid_move_repetition) {
+            filtered.clear();
+            try {
+                board.movesWhereWhiteAvoidsMoveRepetition(moves, filtered);
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+                filtered.clear();
+            }
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        if (MCTSSetup.HEURISTICS_white_KING_only_moves_coser_to_black_king) {
+            filtered.clear();
+            board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(moves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        if (MCTSSetup.HEURISTICS_white_king_moves_closer_if_distance_from_black_king_is_larger_than_3 && board.distanceBewteenKings() > 3) {
+            MoveList kingMoves = MoveList.acquire();
+            filtered.clear();
+            board.filterMovesToWhiteKingMoves(moves, kingMoves);
+            board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(kingMoves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+            MoveList.release(kingMoves);
+        }
+
+        if (strategy == WhiteFinderStrategy.KRK_ENDING && MCTSSetup.KRK_HEURISTICS_white_checkes_if_kings_are_in_opposition) {
+            filtered.clear();
+            board.KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(moves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        if (strategy == WhiteFinderStrategy.KBBK_ENDING && MCTSSetup.KBBK_HEURISTICS_white_tries_to_put_bishops_on_adjacent_diagonals) {
+            filtered.clear();
+            board.KBBKWhiteMovesWhereBishopsAreOnAdjacentDiagonals(moves, filtered);
+            WhiteMoveFinder.countAllowedMoves(moves, filtered, rez);
+        }
+
+        MoveList.release(filtered);
+    }
+
+
+    /**
+     * Increments count of every move that heuristic allowed.
+     * 
+     * @param moves
+     *            all moves
+     * @param allowed
+     *            moves allowed by heuristic, if empty heuristic is ignored
+     * @param rez
+     *            counts of allowing heuristics
+     */
+    private static void countAllowedMoves(MoveList moves, MoveList allowed, int[] rez) {
+        if (allowed.size() == 0) { return; }
+
+        for (int x = 0; x < moves.size(); x++) {
+            if (allowed.contains(moves.get(x))) {
+                rez[x]++;
+            }
+        }
     }
 
 
@@ -124,9 +232,9 @@ public class WhiteMoveFinder {
      *            moves
      * @return random move number from list
      */
-    public static int getRandomMoveNumberFromArrayList(ArrayList<Move> moves) {
+    public static int getRandomMoveNumberFromList(MoveList moves) {
         int index = WhiteMoveFinder.random.nextInt(moves.size());
-        return moves.get(index).moveNumber;
+        return moves.get(index);
     }
 
 
@@ -135,63 +243,73 @@ public class WhiteMoveFinder {
      * 
      * @param board
      *            chess board on which we search for moves
-     * @return plies that are allowed by general heuristics
+     * @param rez
+     *            list to which plies that are allowed by general heuristics
+     *            are added
      */
-    protected static ArrayList<Move> generalHeuristics(Chessboard board) {
-        ArrayList<Move> rez = null;
+    protected static void generalHeuristics(IChessboard board, MoveList rez) {
         try {
-            rez = board.getAllLegalWhiteMoves();
+            board.generateAllLegalWhiteMoves(rez);
         }
         catch (ChessboardException e) {
             throw new RuntimeErrorException(new Error(e));
         }
 
+        MoveList filtered = MoveList.acquire();
+
         if (MCTSSetup.HEURISTICS_check_for_urgent_moves) {
-            ArrayList<Move> urgent = board.whiteUrgentMoves(rez);
-            if (urgent.size() > 0) {
-                rez = urgent;
+            filtered.clear();
+            board.whiteUrgentMoves(rez, filtered);
+            if (filtered.size() > 0) {
+                rez.copyFrom(filtered);
             }
         }
 
         if (MCTSSetup.HEURISTICS_only_safe_moves) {
-            ArrayList<Move> safe = board.whiteSafeMoves(rez);
-            if (safe.size() != 0) {
-                rez = safe;
+            filtered.clear();
+            board.whiteSafeMoves(rez, filtered);
+            if (filtered.size() != 0) {
+                rez.copyFrom(filtered);
             }
         }
 
         if (MCTSSetup.HEURISTICS_avoid_move_repetition) {
-            ArrayList<Move> avoidance = new ArrayList<Move>();
+            filtered.clear();
             try {
-                avoidance = board.movesWhereWhiteAvoidsMoveRepetition(rez);
+                board.movesWhereWhiteAvoidsMoveRepetition(rez, filtered);
             }
             catch (Exception e) {
                 e.printStackTrace();
+                filtered.clear();
             }
 
-            if (avoidance.size() != 0) {
-                rez = avoidance;
+            if (filtered.size() != 0) {
+                rez.copyFrom(filtered);
             }
         }
 
         if (MCTSSetup.HEURISTICS_white_KING_only_moves_coser_to_black_king) {
-            ArrayList<Move> kingCloser = board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(rez);
-            if (kingCloser.size() > 0) {
-                rez = kingCloser;
+            filtered.clear();
+            board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(rez, filtered);
+            if (filtered.size() > 0) {
+                rez.copyFrom(filtered);
             }
         }
 
         if (MCTSSetup.HEURISTICS_white_king_moves_closer_if_distance_from_black_king_is_larger_than_3) {
             if (board.distanceBewteenKings() > 3) {
-                ArrayList<Move> kingMoves = board.filterMovesToWhiteKingMoves(rez);
-                kingMoves = board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(kingMoves);
-                if (kingMoves.size() != 0) {
-                    rez = kingMoves;
+                MoveList kingMoves = MoveList.acquire();
+                filtered.clear();
+                board.filterMovesToWhiteKingMoves(rez, kingMoves);
+                board.movesWhereWhiteKingMovesCloserOrEqualToBlackKind(kingMoves, filtered);
+                if (filtered.size() != 0) {
+                    rez.copyFrom(filtered);
                 }
+                MoveList.release(kingMoves);
             }
         }
 
-        return rez;
+        MoveList.release(filtered);
     }
 
 }
@@ -4,6 +4,10 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import chess.Move;
+import chess.chessboard.BitboardChessboard;
+import chess.chessboard.Chessboard;
+import chess.chessboard.IChessboard;
+import config.MCTSSetup;
 
 /**
  * Class that hold util methods for Chessboard (some older methods are in
@@ -133,6 +137,24 @@ public class ChessboardUtils {
     }
 
 
+    /**
+     * Creates chess board in starting position of current ending. Board
+     * representation is set with {@link MCTSSetup#CHESSBOARD_IMPLEMENTATION}.
+     * 
+     * @param name
+     *            chess board name
+     * @return new chess board
+     */
+    public static IChessboard newChessboard(String name) {
+        switch (MCTSSetup.CHESSBOARD_IMPLEMENTATION) {
+            case BITBOARD:
+                return new BitboardChessboard(name);
+            default:
+                return new Chessboard(name);
+        }
+    }
+
+
     // only static methods allowed
     private ChessboardUtils() {}
 
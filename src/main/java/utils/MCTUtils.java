@@ -1,13 +1,17 @@
 package utils;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 import mct.MCTNode;
+import mct.MCTNodeStore;
+import mct.MCTProofState;
 import moveFinders.BlackFinderStrategy;
 import moveFinders.BlackMoveFinder;
 import moveFinders.WhiteFinderStrategy;
 import moveFinders.WhiteMoveFinder;
-import chess.chessboard.Chessboard;
+import chess.MoveList;
+import chess.chessboard.IChessboard;
 import config.MCTSSetup;
 import exceptions.ChessboardException;
 
@@ -18,6 +22,38 @@ import exceptions.ChessboardException;
  */
 public class MCTUtils {
 
+    /** Visit counts below this size are looked up in tables */
+    private static final int      TABLE_SIZE    = 8192;
+
+    /** Square roots of logarithms of visit counts */
+    private static final double[] SQRT_LOG      = new double[MCTUtils.TABLE_SIZE];
+
+    /** Square roots of visit counts */
+    private static final double[] SQRT          = new double[MCTUtils.TABLE_SIZE];
+
+    /** Inverse square roots of visit counts */
+    private static final double[] INVERSE_SQRT  = new double[MCTUtils.TABLE_SIZE];
+
+    /**
+     * Numbers of heuristics that allow moves, reused by priors computations
+     * of every thread
+     */
+    private static final ThreadLocal<int[]> HEURISTIC_COUNTS = new ThreadLocal<int[]>() {
+
+                                                                 @Override
+                                                                 protected int[] initialValue() {
+                                                                     return new int[64];
+                                                                 }
+                                                             };
+
+    static {
+        for (int x = 0; x < MCTUtils.TABLE_SIZE; x++) {
+            MCTUtils.SQRT_LOG[x] = Math.sqrt(Math.log(x));
+            MCTUtils.SQRT[x] = Math.sqrt(x);
+            MCTUtils.INVERSE_SQRT[x] = 1 / Math.sqrt(x);
+        }
+    }
+
     /**
      * computes MCT rating for current node
      * 
@@ -26,25 +62,184 @@ public class MCTUtils {
      * @return node rating
      */
     public static double computeNodeRating(MCTNode node) {
+        return MCTUtils.computeNodeRating(node, node.parent.visitCount);
+    }
+
+
+    /**
+     * computes MCT rating for current node when it is selected from parent
+     * with <code>parentVisitCount</code> visits. With transpositions node can
+     * have more parents. With {@link MCTSSetup#USE_RAVE} node's value is
+     * blended with its all moves as first value.
+     * 
+     * @param node
+     *            node of which we want to compute rating of
+     * @param parentVisitCount
+     *            visit count of parent from which node is selected
+     * @return node rating
+     */
+    public static double computeNodeRating(MCTNode node, int parentVisitCount) {
+        return MCTUtils.computeUCBRating(node, MCTUtils.sqrtLog(parentVisitCount));
+    }
 
-        if (!node.isWhitesMove) {
+
+    /**
+     * computes UCB1 rating for current node, parent's part of exploration
+     * term is given, so it's computed only once for all children.
+     * 
+     * @param node
+     *            node of which we want to compute rating of
+     * @param sqrtLogParentVisitCount
+     *            square root of logarithm of parent's visit count
+     * @return node rating
+     */
+    private static double computeUCBRating(MCTNode node, double sqrtLogParentVisitCount) {
+        return MCTUtils.computeUCBRating(node.isWhitesMove, node.visitCount, node.numberOfMatsInNode, node.virtualLoss, node.amafVisitCount,
+                node.amafNumberOfMats, sqrtLogParentVisitCount);
+    }
+
+
+    /**
+     * computes UCB1 rating from node's statistics. Virtual loss counts as
+     * visits that were bad for player who made node's move. With
+     * {@link MCTSSetup#USE_RAVE} node's value is blended with its all moves as
+     * first value.
+     * 
+     * @param isWhitesMove
+     *            <code>true</code> if white is on the move in node
+     * @param visitCount
+     *            node's visit count
+     * @param numberOfMats
+     *            number of check mates in node's simulations
+     * @param virtualLoss
+     *            node's virtual loss
+     * @param amafVisitCount
+     *            node's all moves as first visit count
+     * @param amafNumberOfMats
+     *            number of check mates counted in <code>amafVisitCount</code>
+     * @param sqrtLogParentVisitCount
+     *            square root of logarithm of parent's visit count
+     * @return node rating
+     */
+    private static double computeUCBRating(boolean isWhitesMove, int visitCount, int numberOfMats, int virtualLoss, int amafVisitCount,
+            int amafNumberOfMats, double sqrtLogParentVisitCount) {
+        visitCount += virtualLoss;
+
+        // node was just added by other thread and has not been evaluated yet
+        if (visitCount == 0) { return Double.MAX_VALUE; }
+
+        double value;
+        if (!isWhitesMove) {
             // poteze belega
-            double value = (double) node.numberOfMatsInNode / (double) node.visitCount;
-            double temp = Math.log(node.parent.visitCount) / node.visitCount;
-            return value + node.c * Math.sqrt(temp);
+            value = (double) numberOfMats / (double) visitCount;
         }
         else {
             // poteze crnega
-            double value = (double) node.numberOfMatsInNode / (double) node.visitCount;
-            double temp = Math.log(node.parent.visitCount) / node.visitCount;
-            return (1 - value) + node.c * Math.sqrt(temp);
+            value = 1 - (double) (numberOfMats + virtualLoss) / (double) visitCount;
         }
 
+        if (MCTSSetup.USE_RAVE && amafVisitCount > 0) {
+            double amafValue = (double) amafNumberOfMats / (double) amafVisitCount;
+            if (isWhitesMove) {
+                amafValue = 1 - amafValue;
+            }
+            double beta = MCTUtils.computeRaveWeight(visitCount);
+            value = (1 - beta) * value + beta * amafValue;
+        }
+
+        return value + MCTSSetup.C * sqrtLogParentVisitCount * MCTUtils.inverseSqrt(visitCount);
+    }
+
+
+    /**
+     * Computes weight of all moves as first value in node's rating. It
+     * decreases from 1 to 0 as node gets visited, it's 1/2 when node has
+     * {@link MCTSSetup#RAVE_EQUIVALENCE} visits.
+     * 
+     * @param visitCount
+     *            node's visit count
+     * @return weight of all moves as first value
+     */
+    public static double computeRaveWeight(int visitCount) {
+        double k = MCTSSetup.RAVE_EQUIVALENCE;
+        return Math.sqrt(k / (3 * visitCount + k));
+    }
+
+
+    /**
+     * computes PUCT rating for current node when it is selected from parent
+     * with <code>parentVisitCount</code> visits. Exploration part is weighted
+     * by node's prior, so unvisited nodes with high prior are selected first.
+     * Virtual loss is counted like in {@link #computeNodeRating(MCTNode, int)}.
+     * 
+     * @param node
+     *            node of which we want to compute rating of
+     * @param parentVisitCount
+     *            visit count of parent from which node is selected
+     * @return node rating
+     */
+    public static double computePUCTRating(MCTNode node, int parentVisitCount) {
+        return MCTUtils.computePUCTRatingFromSqrt(node, MCTUtils.sqrt(parentVisitCount));
+    }
+
+
+    /**
+     * computes PUCT rating for current node, square root of parent's visit
+     * count is given, so it's computed only once for all children.
+     * 
+     * @param node
+     *            node of which we want to compute rating of
+     * @param sqrtParentVisitCount
+     *            square root of parent's visit count
+     * @return node rating
+     */
+    private static double computePUCTRatingFromSqrt(MCTNode node, double sqrtParentVisitCount) {
+        return MCTUtils.computePUCTRating(node.isWhitesMove, node.visitCount, node.numberOfMatsInNode, node.virtualLoss, node.prior, sqrtParentVisitCount);
+    }
+
+
+    /**
+     * computes PUCT rating from node's statistics. Virtual loss is counted
+     * like in UCB1 rating.
+     * 
+     * @param isWhitesMove
+     *            <code>true</code> if white is on the move in node
+     * @param visitCount
+     *            node's visit count
+     * @param numberOfMats
+     *            number of check mates in node's simulations
+     * @param virtualLoss
+     *            node's virtual loss
+     * @param prior
+     *            prior probability of node's move
+     * @param sqrtParentVisitCount
+     *            square root of parent's visit count
+     * @return node rating
+     */
+    private static double computePUCTRating(boolean isWhitesMove, int visitCount, int numberOfMats, int virtualLoss, float prior,
+            double sqrtParentVisitCount) {
+        visitCount += virtualLoss;
+
+        double value = 0;
+        if (visitCount > 0) {
+            if (!isWhitesMove) {
+                // poteze belega
+                value = (double) numberOfMats / (double) visitCount;
+            }
+            else {
+                // poteze crnega
+                value = 1 - (double) (numberOfMats + virtualLoss) / (double) visitCount;
+            }
+        }
+        return value + MCTSSetup.PUCT_C * prior * sqrtParentVisitCount / (1 + visitCount);
     }
 
 
     /**
      * Searches children of current node and returns those with highest rating.
+     * Rating is PUCT rating if {@link MCTSSetup#USE_PUCT} is set, UCB1
+     * otherwise. With {@link MCTSSetup#USE_SOLVER} proven children are
+     * skipped, unless all children are proven.
      * 
      * @param node
      *            parent of children we computing ratings from.
@@ -57,9 +252,14 @@ public class MCTUtils {
 
         double maxRating = -Double.MAX_VALUE;
         double currRating = -Double.MAX_VALUE;
+        boolean skipsProvenNodes = MCTSSetup.USE_SOLVER && MCTUtils.hasUnprovenChild(node);
+        double parentFactor = MCTUtils.computeParentFactor(node.visitCount);
 
         for (MCTNode currNode : node.children.values()) {
-            currRating = MCTUtils.computeNodeRating(currNode);
+            if (skipsProvenNodes && currNode.isProven()) {
+                continue;
+            }
+            currRating = MCTUtils.computeRating(currNode, parentFactor);
 
             if (currRating > maxRating) {
                 maxRating = currRating;
@@ -91,10 +291,227 @@ public class MCTUtils {
 
 
     /**
-     * Chooses next ply for given strategy.
+     * computes PUCT or UCB1 rating of node from node store, depending on
+     * {@link MCTSSetup#USE_PUCT}.
      * 
+     * @param store
+     *            store that holds the node
      * @param node
-     *            node from where we search for next ply number
+     *            id of node of which we want to compute rating of
+     * @param parentFactor
+     *            parent's part of exploration term, see
+     *            {@link #computeParentFactor(int)}
+     * @return node rating
+     */
+    private static double computeRating(MCTNodeStore store, int node, double parentFactor) {
+        boolean isWhitesMove = store.isWhitesMove(node);
+        int visitCount = store.getVisitCount(node);
+        int numberOfMats = store.getNumberOfMats(node);
+        int virtualLoss = store.getVirtualLoss(node);
+        if (MCTSSetup.USE_PUCT) { return MCTUtils.computePUCTRating(isWhitesMove, visitCount, numberOfMats, virtualLoss, store.getPrior(node), parentFactor); }
+
+        return MCTUtils.computeUCBRating(isWhitesMove, visitCount, numberOfMats, virtualLoss, store.getAmafVisitCount(node), store.getAmafNumberOfMats(node),
+                parentFactor);
+    }
+
+
+    /**
+     * Computes prior probabilities of moves. White move gets weight 2^n,
+     * where n is number of heuristics of white simulation strategy that allow
+     * it (see {@link WhiteMoveFinder#countAllowingHeuristics}), and weights
+     * are normalized. Black moves have uniform priors. Nothing is allocated
+     * unless there are more moves than ever before on current thread.
+     * 
+     * @param board
+     *            chess board in state from which moves are made
+     * @param moves
+     *            legal moves
+     * @param rez
+     *            array in which priors are stored, it must be at least as long
+     *            as <code>moves</code>
+     */
+    public static void computeMovePriors(IChessboard board, MoveList moves, float[] rez) {
+        int size = moves.size();
+        if (size == 0) { return; }
+
+        if (!board.getIsWhitesTurn()) {
+            for (int x = 0; x < size; x++) {
+                rez[x] = 1f / size;
+            }
+            return;
+        }
+
+        int[] counts = MCTUtils.HEURISTIC_COUNTS.get();
+        if (counts.length < size) {
+            counts = new int[size];
+            MCTUtils.HEURISTIC_COUNTS.set(counts);
+        }
+        WhiteMoveFinder.countAllowingHeuristics(board, MCTSSetup.WHITE_SIMULATION_STRATEGY, moves, counts);
+
+        float sum = 0;
+        for (int x = 0; x < size; x++) {
+            rez[x] = 1 << counts[x];
+            sum += rez[x];
+        }
+        for (int x = 0; x < size; x++) {
+            rez[x] /= sum;
+        }
+    }
+
+
+    /**
+     * Counts all legal moves of player on the move, including moves that
+     * simulation strategies filter out. Solver can prove that player on the
+     * move loses only when all of them are lost.
+     *
+     * @param board
+     *            chess board in state from which moves are made
+     * @return number of legal moves
+     * @throws ChessboardException
+     */
+    public static int countAllLegalMoves(IChessboard board) throws ChessboardException {
+        MoveList moves = MoveList.acquire();
+        if (board.getIsWhitesTurn()) {
+            board.generateAllLegalWhiteMoves(moves);
+        }
+        else {
+            board.generateAllLegalBlackKingMoves(moves);
+        }
+        int rez = moves.size();
+        MoveList.release(moves);
+        return rez;
+    }
+
+
+    /**
+     * Checks if node has any child whose value isn't proven.
+     * 
+     * @param node
+     *            parent
+     * @return <code>true</code> if at least one child is not proven
+     */
+    public static boolean hasUnprovenChild(MCTNode node) {
+        for (MCTNode child : node.children.values()) {
+            if (!child.isProven()) { return true; }
+        }
+        return false;
+    }
+
+
+    /**
+     * Checks if node from node store has any child whose value isn't proven.
+     * 
+     * @param store
+     *            store that holds the node
+     * @param node
+     *            id of parent
+     * @return <code>true</code> if at least one child is not proven
+     */
+    public static boolean hasUnprovenChild(MCTNodeStore store, int node) {
+        for (int edge = store.getFirstEdge(node); edge != MCTNodeStore.NO_NODE; edge = store.getNextEdge(node, edge)) {
+            if (store.getProofState(store.getEdgeChild(node, edge)) == MCTProofState.UNPROVEN) { return true; }
+        }
+        return false;
+    }
+
+
+    /**
+     * Selects one of children of node from node store with highest rating,
+     * ties are broken at random. It chooses same way as random choice from
+     * {@link #getNodesWithMaxRating(MCTNode)}, but in single pass over
+     * children: parent's part of exploration term is computed once and ties
+     * are broken with reservoir sampling, so nothing has to be allocated.
+     * 
+     * @param store
+     *            store that holds the node
+     * @param node
+     *            id of parent of children we computing ratings from
+     * @param random
+     *            random used for breaking ties
+     * @return edge that leads to child with highest rating or
+     *         {@link MCTNodeStore#NO_NODE} if node has no children
+     */
+    public static int selectEdgeWithMaxRating(MCTNodeStore store, int node, Random random) {
+        boolean skipsProvenNodes = MCTSSetup.USE_SOLVER && MCTUtils.hasUnprovenChild(store, node);
+        double parentFactor = MCTUtils.computeParentFactor(store.getVisitCount(node));
+
+        int rez = MCTNodeStore.NO_NODE;
+        double maxRating = -Double.MAX_VALUE;
+        int maxVisitCount = Integer.MIN_VALUE;
+        int numberOfTies = 0;
+
+        for (int edge = store.getFirstEdge(node); edge != MCTNodeStore.NO_NODE; edge = store.getNextEdge(node, edge)) {
+            int child = store.getEdgeChild(node, edge);
+            if (skipsProvenNodes && store.getProofState(child) != MCTProofState.UNPROVEN) {
+                continue;
+            }
+            double currRating = MCTUtils.computeRating(store, child, parentFactor);
+            int currVisitCount = MCTSSetup.SELECTION_ALSO_USES_VISIT_COUNT_FOR_NODE_CHOOSING ? store.getVisitCount(child) : 0;
+
+            if (currRating > maxRating || (currRating == maxRating && currVisitCount > maxVisitCount)) {
+                maxRating = currRating;
+                maxVisitCount = currVisitCount;
+                numberOfTies = 1;
+                rez = edge;
+            }
+            else if (currRating == maxRating && currVisitCount == maxVisitCount && random.nextInt(++numberOfTies) == 0) {
+                rez = edge;
+            }
+        }
+        return rez;
+    }
+
+
+    /**
+     * Computes parent's part of exploration term of children ratings. It's
+     * square root of parent's visit count with {@link MCTSSetup#USE_PUCT} and
+     * square root of its logarithm otherwise.
+     * 
+     * @param parentVisitCount
+     *            visit count of parent
+     * @return parent's part of exploration term
+     */
+    private static double computeParentFactor(int parentVisitCount) {
+        return MCTSSetup.USE_PUCT ? MCTUtils.sqrt(parentVisitCount) : MCTUtils.sqrtLog(parentVisitCount);
+    }
+
+
+    /**
+     * Computes PUCT or UCB1 rating of node, depending on
+     * {@link MCTSSetup#USE_PUCT}.
+     * 
+     * @param node
+     *            node of which we want to compute rating of
+     * @param parentFactor
+     *            parent's part of exploration term, see
+     *            {@link #computeParentFactor(int)}
+     * @return node rating
+     */
+    private static double computeRating(MCTNode node, double parentFactor) {
+        return MCTSSetup.USE_PUCT ? MCTUtils.computePUCTRatingFromSqrt(node, parentFactor) : MCTUtils.computeUCBRating(node, parentFactor);
+    }
+
+
+    private static double sqrtLog(int visitCount) {
+        return visitCount >= 0 && visitCount < MCTUtils.TABLE_SIZE ? MCTUtils.SQRT_LOG[visitCount] : Math.sqrt(Math.log(visitCount));
+    }
+
+
+    private static double sqrt(int visitCount) {
+        return visitCount >= 0 && visitCount < MCTUtils.TABLE_SIZE ? MCTUtils.SQRT[visitCount] : Math.sqrt(visitCount);
+    }
+
+
+    private static double inverseSqrt(int visitCount) {
+        return visitCount >= 0 && visitCount < MCTUtils.TABLE_SIZE ? MCTUtils.INVERSE_SQRT[visitCount] : 1 / Math.sqrt(visitCount);
+    }
+
+
+    /**
+     * Chooses next ply for given strategy.
+     * 
+     * @param board
+     *            chess board in state from where we search for next ply number
      * @param whiteSimuationStrategy
      *            white simulation strategy
      * @param blackSimulationStrategy
@@ -102,15 +519,13 @@ public class MCTUtils {
      * @return choose ply number for given strategies
      * @throws ChessboardException
      */
-    public static int findNextMove(MCTNode node, WhiteFinderStrategy whiteSimuationStrategy, BlackFinderStrategy blackSimulationStrategy)
+    public static int findNextMove(IChessboard board, WhiteFinderStrategy whiteSimuationStrategy, BlackFinderStrategy blackSimulationStrategy)
             throws ChessboardException {
-        if (node.isWhitesMove) {
-            Chessboard temp = new Chessboard("temp", node);
-            return WhiteMoveFinder.findWhiteMove(temp, whiteSimuationStrategy);
+        if (board.getIsWhitesTurn()) {
+            return WhiteMoveFinder.findWhiteMove(board, whiteSimuationStrategy);
         }
         else {
-            Chessboard temp = new Chessboard("temp", node);
-            return BlackMoveFinder.findBlackKingMove(temp, blackSimulationStrategy);
+            return BlackMoveFinder.findBlackKingMove(board, blackSimulationStrategy);
         }
     }
 
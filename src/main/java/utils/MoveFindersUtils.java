@@ -1,8 +1,6 @@
 package utils;
 
-import java.util.ArrayList;
-
-import chess.Move;
+import chess.MoveList;
 
 public class MoveFindersUtils {
 
@@ -84,10 +82,10 @@ public class MoveFindersUtils {
      *            plies
      * @return minimum distance of ply target position from chess board center
      */
-    public static int findMinimumDistanceFromCenterFromPlies(ArrayList<Move> plies) {
+    public static int findMinimumDistanceFromCenterFromPlies(MoveList plies) {
         int minDist = -1;
         for (int x = 0; x < plies.size(); x++) {
-            int moveNumber = plies.get(x).moveNumber;
+            int moveNumber = plies.get(x);
             int dist = distanceOfMoveFromCenter(moveNumber);
 
             if (dist < minDist || minDist == -1) {
@@ -11,9 +11,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import utils.Utils;
 import config.MCTSSetup;
 
 import chess.Move;
+import chess.MoveList;
 import chess.chessboard.Chessboard;
 import chess.chessboard.SimpleChessboard;
 
@@ -67,13 +69,16 @@ public class TestChessBoard {
     @Test
     public void testKRKWhiteMovesWhereRookChecksIfKingsAreInOpposition() throws Exception {
 
-        ArrayList<Move> returned = TestChessBoard.cbKRK.KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(TestChessBoard.cbKRK.getAllLegalWhiteMoves());
+        MoveList allMoves = new MoveList();
+        TestChessBoard.cbKRK.generateAllLegalWhiteMoves(allMoves);
+        MoveList returned = new MoveList();
+        TestChessBoard.cbKRK.KRKWhiteMovesWhereRookChecksIfKingsAreInOpposition(allMoves, returned);
 
         // there are 2 possible moves where white checks
         Assert.assertEquals(1, returned.size());
 
         // we check if returned moves are correct
-        Assert.assertEquals(1112670463, returned.get(0).moveNumber);
+        Assert.assertEquals(1112670463, returned.get(0));
     }
 
 
@@ -100,14 +105,17 @@ public class TestChessBoard {
 
     @Test
     public void testKRKWhiteSafeMoves() throws Exception {
-        ArrayList<Move> returned = TestChessBoard.cbKRK.whiteSafeMoves(TestChessBoard.cbKRK.getAllLegalWhiteMoves());
+        MoveList allMoves = new MoveList();
+        TestChessBoard.cbKRK.generateAllLegalWhiteMoves(allMoves);
+        MoveList returned = new MoveList();
+        TestChessBoard.cbKRK.whiteSafeMoves(allMoves, returned);
 
         for (int x = 0; x < TestChessBoard.cbKRKAllMoves.size(); x++) {
             if ((x < 14 && x != 11 && x != 12) || x == 17) {
-                Assert.assertTrue(returned.contains(TestChessBoard.cbKRKAllMoves.get(x)));
+                Assert.assertTrue(returned.contains(TestChessBoard.cbKRKAllMoves.get(x).moveNumber));
             }
             else {
-                Assert.assertFalse(returned.contains(TestChessBoard.cbKRKAllMoves.get(x)));
+                Assert.assertFalse(returned.contains(TestChessBoard.cbKRKAllMoves.get(x).moveNumber));
             }
         }
 
@@ -116,18 +124,24 @@ public class TestChessBoard {
 
     @Test
     public void testWhiteUrgentMoves() throws Exception {
-        ArrayList<Move> returned = TestChessBoard.cbKRK.whiteUrgentMoves(TestChessBoard.cbKRK.getAllLegalWhiteMoves());
+        MoveList allMoves = new MoveList();
+        TestChessBoard.cbKRK.generateAllLegalWhiteMoves(allMoves);
+        MoveList returned = new MoveList();
+        TestChessBoard.cbKRK.whiteUrgentMoves(allMoves, returned);
         Assert.assertEquals(0, returned.size());
 
-        returned = TestChessBoard.cbKRRK.whiteUrgentMoves(TestChessBoard.cbKRRKALLMoves);
+        allMoves.clear();
+        TestChessBoard.cbKRRK.generateAllLegalWhiteMoves(allMoves);
+        returned.clear();
+        TestChessBoard.cbKRRK.whiteUrgentMoves(allMoves, returned);
         Integer[] expectedIndexesOfNotUrgentMoves = { 0, 7, 13, 14, 16, 18, 19, 20, 27, 28 };
         ArrayList<Integer> listOfexpectedIndexesOfNotUrgentMoves = new ArrayList<Integer>(Arrays.asList(expectedIndexesOfNotUrgentMoves));
         for (int x = 0; x < TestChessBoard.cbKRRKALLMoves.size(); x++) {
             if (listOfexpectedIndexesOfNotUrgentMoves.contains(x)) {
-                Assert.assertFalse("Move with index: " + x + " is urgent move.", returned.contains(TestChessBoard.cbKRRKALLMoves.get(x)));
+                Assert.assertFalse("Move with index: " + x + " is urgent move.", returned.contains(TestChessBoard.cbKRRKALLMoves.get(x).moveNumber));
             }
             else {
-                Assert.assertTrue("Move with index: " + x + " isn't urgent move.", returned.contains(TestChessBoard.cbKRRKALLMoves.get(x)));
+                Assert.assertTrue("Move with index: " + x + " isn't urgent move.", returned.contains(TestChessBoard.cbKRRKALLMoves.get(x).moveNumber));
             }
         }
 
@@ -146,14 +160,118 @@ public class TestChessBoard {
 
     @Test
     public void testHashCode() throws Exception {
-        Assert.assertEquals(5452610, TestChessBoard.cbKRK.hashCode());
+        Assert.assertEquals(-1339571853, TestChessBoard.cbKRK.hashCode());
 
         for (Move move : TestChessBoard.cbKRKAllMoves) {
             SimpleChessboard temp = new Chessboard(TestChessBoard.cbKRK, "clone");
             temp.makeAMove(move.moveNumber);
             Assert.assertNotSame(TestChessBoard.cbKRK.hashCode(), temp.hashCode());
+
+            ArrayList<Move> blackMoves = temp.getAllLegalBlackKingMoves();
+            if (blackMoves.size() == 0) {
+                continue;
+            }
+
+            // after black replies incrementally updated key must be the same
+            // as key of same position built from scratch
+            temp.makeAMove(blackMoves.get(0).moveNumber);
+            TreeMap<Integer, Integer> position = new TreeMap<Integer, Integer>();
+            int[] board = temp.cloneBoard();
+            for (int x = 0; x < board.length; x++) {
+                if (board[x] != -1) {
+                    position.put(x, board[x]);
+                }
+            }
+            Assert.assertEquals(new Chessboard("from scratch", position).getZobristKey(), temp.getZobristKey());
+        }
+
+    }
+
+
+    @Test
+    public void testUnmakeMove() throws Exception {
+        SimpleChessboard temp = new Chessboard(TestChessBoard.cbKRK, "clone");
+        int[] boardBefore = temp.cloneBoard();
+        int hashBefore = temp.hashCode();
+
+        for (Move move : TestChessBoard.cbKRKAllMoves) {
+            temp.makeAMove(move.moveNumber);
+            temp.unmakeMove();
+
+            Assert.assertArrayEquals(boardBefore, temp.cloneBoard());
+            Assert.assertEquals(hashBefore, temp.hashCode());
+            Assert.assertTrue(temp.getIsWhitesTurn());
+            Assert.assertEquals(0, temp.getNumberOfPliesMade());
+        }
+    }
+
+
+    @Test
+    public void testThreefoldRepetition() throws Exception {
+        Chessboard temp = new Chessboard(TestChessBoard.cbKRK, "repetition");
+        int rookMove = -1;
+        for (Move move : TestChessBoard.cbKRKAllMoves) {
+            if (Utils.getMovedPieceFromMoveNumber(move.moveNumber) == 0) {
+                rookMove = move.moveNumber;
+                break;
+            }
         }
 
+        // rook and black king move there and back again twice
+        for (int x = 0; x < 2; x++) {
+            Assert.assertFalse(temp.wasBoardStateRepeatedThreeTimes);
+            temp.makeAMove(rookMove);
+            int blackMove = -1;
+            for (Move move : temp.getAllLegalBlackKingMoves()) {
+                if (Utils.getTargetPieceFromMoveNumber(move.moveNumber) == -1) {
+                    blackMove = move.moveNumber;
+                }
+            }
+            temp.makeAMove(blackMove);
+            temp.makeAMove(TestChessBoard.reverseMove(rookMove));
+            temp.makeAMove(TestChessBoard.reverseMove(blackMove));
+        }
+
+        Assert.assertEquals(3, temp.howManyTimeHasCurrentStateAppeared());
+        Assert.assertTrue(temp.wasBoardStateRepeatedThreeTimes);
+
+        temp.unmakeMove();
+        Assert.assertFalse(temp.wasBoardStateRepeatedThreeTimes);
+        temp.unmakeMovesToPly(0);
+        Assert.assertEquals(1, temp.howManyTimeHasCurrentStateAppeared());
+    }
+
+
+    private static int reverseMove(int moveNumber) {
+        return Utils.constructMoveNumber(Utils.getTargetPositionFromMoveNumber(moveNumber), Utils.getStartingPositionFromMoveNumber(moveNumber),
+                Utils.getMovedPieceFromMoveNumber(moveNumber), -1);
+    }
+
+
+    @Test
+    public void testBitboardChessboard() throws Exception {
+        Chessboard[] boards = { TestChessBoard.cbKRK, TestChessBoard.cbKRRK };
+        for (Chessboard cb : boards) {
+            Chessboard bitboard = new BitboardChessboard(cb, "bitboard");
+
+            // attacks must match after every white move and its undo
+            for (Move move : cb.getAllLegalWhiteMoves()) {
+                Chessboard array = new Chessboard(cb, "array");
+                array.makeAMove(move.moveNumber);
+                bitboard.makeAMove(move.moveNumber);
+
+                for (int position = 0; position < 128; position++) {
+                    Assert.assertEquals(array.isPositionUnderAttackByWhite(position, true), bitboard.isPositionUnderAttackByWhite(position, true));
+                    Assert.assertEquals(array.isPositionUnderAttackByWhite(position, false), bitboard.isPositionUnderAttackByWhite(position, false));
+                    Assert.assertEquals(array.isPositionUnderAttackByBlack(position, true), bitboard.isPositionUnderAttackByBlack(position, true));
+                }
+                Assert.assertEquals(array.getAllLegalBlackKingMoves(), bitboard.getAllLegalBlackKingMoves());
+                Assert.assertEquals(array.evaluateChessboard(), bitboard.evaluateChessboard());
+
+                bitboard.unmakeMove();
+            }
+            Assert.assertEquals(cb.getAllLegalWhiteMoves(), bitboard.getAllLegalWhiteMoves());
+        }
     }
 
 }
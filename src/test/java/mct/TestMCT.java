@@ -0,0 +1,102 @@
+package mct;
+
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import moveFinders.WhiteFinderStrategy;
+import config.MCTSSetup;
+
+
+public class TestMCT {
+
+    private static final int MAXIMUM_NUMBER_OF_NODES = 100;
+
+    private static Logger    log;
+
+    private MCTTreeStore     treeStore;
+    private boolean          usesTranspositionTable;
+    private int              maximumNumberOfNodes;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        MCTSSetup.ENDING = "KRK";
+        MCTSSetup.WHITE_SIMULATION_STRATEGY = WhiteFinderStrategy.KRK_ENDING;
+        TestMCT.log = Logger.getLogger(TestMCT.class.getName());
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {}
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.treeStore = MCTSSetup.TREE_STORE;
+        this.usesTranspositionTable = MCTSSetup.USE_TRANSPOSITION_TABLE;
+        this.maximumNumberOfNodes = MCTSSetup.MAXIMUM_NUMBER_OF_NODES;
+        MCTSSetup.MAXIMUM_NUMBER_OF_NODES = TestMCT.MAXIMUM_NUMBER_OF_NODES;
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        MCTSSetup.TREE_STORE = this.treeStore;
+        MCTSSetup.USE_TRANSPOSITION_TABLE = this.usesTranspositionTable;
+        MCTSSetup.MAXIMUM_NUMBER_OF_NODES = this.maximumNumberOfNodes;
+    }
+
+
+    @Test
+    public void testPruneObjects() throws Exception {
+        MCTSSetup.TREE_STORE = MCTTreeStore.OBJECTS;
+        TestMCT.assertPruned();
+    }
+
+
+    @Test
+    public void testPruneTranspositions() throws Exception {
+        MCTSSetup.TREE_STORE = MCTTreeStore.OBJECTS;
+        MCTSSetup.USE_TRANSPOSITION_TABLE = true;
+        TestMCT.assertPruned();
+    }
+
+
+    @Test
+    public void testPrunePool() throws Exception {
+        MCTSSetup.TREE_STORE = MCTTreeStore.POOL;
+        TestMCT.assertPruned();
+    }
+
+
+    @Test
+    public void testPruneOffHeap() throws Exception {
+        MCTSSetup.TREE_STORE = MCTTreeStore.OFF_HEAP;
+        TestMCT.assertPruned();
+    }
+
+
+    /**
+     * Runs search that outgrows {@link MCTSSetup#MAXIMUM_NUMBER_OF_NODES}
+     * and checks that tree was pruned under it. Search continues on pruned
+     * tree after a move is made.
+     */
+    private static void assertPruned() throws Exception {
+        MCT tree = new MCT(TestMCT.log);
+        tree.runSteps(10 * TestMCT.MAXIMUM_NUMBER_OF_NODES);
+        Assert.assertTrue(tree.getMCTStatistics().numberOfPrunedNodes > 0);
+        Assert.assertTrue(tree.getCurrentTreeSize() <= TestMCT.MAXIMUM_NUMBER_OF_NODES);
+
+        int moveNumber = tree.chooseAMoveNumber(MCTSSetup.WHITE_MOVE_CHOOSER_STRATEGY, MCTSSetup.BLACK_MOVE_CHOOSER_STRATEGY);
+        tree.makeMCMove(moveNumber);
+        tree.runSteps(10 * TestMCT.MAXIMUM_NUMBER_OF_NODES);
+        Assert.assertTrue(tree.getCurrentTreeSize() <= TestMCT.MAXIMUM_NUMBER_OF_NODES);
+    }
+
+}
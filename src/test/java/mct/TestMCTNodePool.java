@@ -0,0 +1,198 @@
+package mct;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import moveFinders.WhiteFinderStrategy;
+import utils.ChessboardUtils;
+import chess.MoveList;
+import chess.chessboard.IChessboard;
+import config.MCTSSetup;
+
+
+public class TestMCTNodePool {
+
+    private MCTNodePool pool;
+    private IChessboard board;
+    private int         root;
+    private int         a;
+    private int         b;
+    private int         c;
+    private int         a1;
+    private int         a2;
+    private int         b1;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        MCTSSetup.ENDING = "KRK";
+        MCTSSetup.WHITE_SIMULATION_STRATEGY = WhiteFinderStrategy.KRK_ENDING;
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {}
+
+
+    /**
+     * Builds tree root -> (a -> (a1, a2), b -> (b1 -> b11), c), pool starts
+     * small so it has to grow.
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.pool = new MCTNodePool(2);
+        this.board = ChessboardUtils.newChessboard("test board");
+        this.root = this.pool.addRoot(0, 0, this.board.evaluateChessboardFromWhitesPerpective());
+
+        MoveList moves = TestMCTNodePool.getLegalMoves(this.board);
+        IChessboard boardA = TestMCTNodePool.play(this.board, moves.get(0));
+        this.a = this.pool.addChild(this.root, moves.get(0), 0, boardA);
+        IChessboard boardB = TestMCTNodePool.play(this.board, moves.get(1));
+        this.b = this.pool.addChild(this.root, moves.get(1), 0, boardB);
+        this.c = this.pool.addChild(this.root, moves.get(2), 0, TestMCTNodePool.play(this.board, moves.get(2)));
+
+        moves = TestMCTNodePool.getLegalMoves(boardA);
+        this.a1 = this.pool.addChild(this.a, moves.get(0), 0, TestMCTNodePool.play(boardA, moves.get(0)));
+        this.a2 = this.pool.addChild(this.a, moves.get(1), 0, TestMCTNodePool.play(boardA, moves.get(1)));
+
+        moves = TestMCTNodePool.getLegalMoves(boardB);
+        IChessboard boardB1 = TestMCTNodePool.play(boardB, moves.get(0));
+        this.b1 = this.pool.addChild(this.b, moves.get(0), 0, boardB1);
+        moves = TestMCTNodePool.getLegalMoves(boardB1);
+        this.pool.addChild(this.b1, moves.get(0), 0, TestMCTNodePool.play(boardB1, moves.get(0)));
+
+        // every node gets its own statistics
+        for (int node = 0; node < this.pool.size(); node++) {
+            this.pool.addVisits(node, 10 * node, node);
+        }
+    }
+
+
+    @After
+    public void tearDown() throws Exception {}
+
+
+    @Test
+    public void testAddChild() {
+        Assert.assertEquals(8, this.pool.size());
+        Assert.assertEquals(7, this.pool.getNumberOfSuccessors(this.root));
+        Assert.assertEquals(2, this.pool.getNumberOfSuccessors(this.b));
+        Assert.assertEquals(3, this.pool.getNumberOfChildren(this.root));
+        Assert.assertEquals(this.a, this.pool.addChild(this.root, this.pool.getMoveNumber(this.a), 0, this.board));
+        Assert.assertEquals(8, this.pool.size());
+    }
+
+
+    @Test
+    public void testCompact() {
+        Assert.assertEquals(2, this.pool.removeChildren(this.b));
+        Assert.assertEquals(5, this.pool.getNumberOfSuccessors(this.root));
+        Assert.assertEquals(8, this.pool.size());
+
+        int[] nodes = { this.a, this.b, this.c, this.a1, this.a2 };
+        int[] visits = new int[nodes.length];
+        int[] mats = new int[nodes.length];
+        int[] moves = new int[nodes.length];
+        for (int x = 0; x < nodes.length; x++) {
+            visits[x] = this.pool.getVisitCount(nodes[x]);
+            mats[x] = this.pool.getNumberOfMats(nodes[x]);
+            moves[x] = this.pool.getMoveNumber(nodes[x]);
+        }
+
+        int newRoot = this.pool.compact(this.root);
+        Assert.assertEquals(0, newRoot);
+        Assert.assertEquals(6, this.pool.size());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.pool.getParent(newRoot));
+        Assert.assertEquals(5, this.pool.getNumberOfSuccessors(newRoot));
+
+        int newA = this.pool.getChild(newRoot, moves[0]);
+        int newB = this.pool.getChild(newRoot, moves[1]);
+        int newC = this.pool.getChild(newRoot, moves[2]);
+        int newA1 = this.pool.getChild(newA, moves[3]);
+        int newA2 = this.pool.getChild(newA, moves[4]);
+
+        // children are linked in reverse order of addition
+        TestMCTNodePool.assertChildren(this.pool, newRoot, newC, newB, newA);
+        TestMCTNodePool.assertChildren(this.pool, newA, newA2, newA1);
+        TestMCTNodePool.assertChildren(this.pool, newB);
+        TestMCTNodePool.assertChildren(this.pool, newC);
+        TestMCTNodePool.assertChildren(this.pool, newA1);
+        TestMCTNodePool.assertChildren(this.pool, newA2);
+
+        int[] newNodes = { newA, newB, newC, newA1, newA2 };
+        for (int x = 0; x < newNodes.length; x++) {
+            Assert.assertEquals(visits[x], this.pool.getVisitCount(newNodes[x]));
+            Assert.assertEquals(mats[x], this.pool.getNumberOfMats(newNodes[x]));
+        }
+        Assert.assertEquals(2, this.pool.getNumberOfSuccessors(newA));
+        Assert.assertEquals(0, this.pool.getNumberOfSuccessors(newB));
+        Assert.assertEquals(2, this.pool.getMoveDepth(newA1));
+    }
+
+
+    @Test
+    public void testCompactSubtree() {
+        int visits = this.pool.getVisitCount(this.a1);
+        int moveNumber = this.pool.getMoveNumber(this.a1);
+        int newA = this.pool.compact(this.a);
+        Assert.assertEquals(0, newA);
+        Assert.assertEquals(3, this.pool.size());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.pool.getParent(newA));
+        Assert.assertEquals(2, this.pool.getNumberOfSuccessors(newA));
+        Assert.assertEquals(visits, this.pool.getVisitCount(this.pool.getChild(newA, moveNumber)));
+    }
+
+
+    @Test
+    public void testMakeRoot() {
+        // nothing is discarded, so only parent is cut off
+        Assert.assertEquals(this.root, this.pool.makeRoot(this.root));
+        Assert.assertEquals(8, this.pool.size());
+
+        // discarded nodes take more than half of the pool, so it is compacted
+        Assert.assertEquals(0, this.pool.makeRoot(this.a));
+        Assert.assertEquals(3, this.pool.size());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.pool.getParent(0));
+    }
+
+
+    /**
+     * Gets legal moves of chess board.
+     */
+    private static MoveList getLegalMoves(IChessboard board) throws Exception {
+        MoveList moves = new MoveList();
+        board.getLegalMoves(moves);
+        return moves;
+    }
+
+
+    /**
+     * Gets copy of chess board on which move was made.
+     */
+    private static IChessboard play(IChessboard board, int moveNumber) throws Exception {
+        IChessboard copy = board.copy("test board");
+        copy.makeAMove(moveNumber);
+        return copy;
+    }
+
+
+    /**
+     * Checks that children of <code>node</code> are linked in given order and
+     * point back to it.
+     */
+    private static void assertChildren(MCTNodePool pool, int node, int... children) {
+        int child = pool.getFirstChild(node);
+        for (int expected : children) {
+            Assert.assertEquals(expected, child);
+            Assert.assertEquals(node, pool.getParent(child));
+            child = pool.getNextSibling(child);
+        }
+        Assert.assertEquals(MCTNodeStore.NO_NODE, child);
+        Assert.assertEquals(children.length, pool.getNumberOfChildren(node));
+    }
+
+}
@@ -0,0 +1,202 @@
+package mct;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import moveFinders.WhiteFinderStrategy;
+import utils.ChessboardUtils;
+import chess.MoveList;
+import chess.chessboard.IChessboard;
+import config.MCTSSetup;
+
+
+public class TestMCTOffHeapNodeStore {
+
+    private MCTOffHeapNodeStore store;
+    private IChessboard         board;
+    private int                 root;
+    private int                 a;
+    private int                 b;
+    private int                 c;
+    private int                 a1;
+    private int                 a2;
+    private int                 b1;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        MCTSSetup.ENDING = "KRK";
+        MCTSSetup.WHITE_SIMULATION_STRATEGY = WhiteFinderStrategy.KRK_ENDING;
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {}
+
+
+    /**
+     * Builds tree root -> (a -> (a1, a2), b -> (b1 -> b11), c), which fills
+     * the store.
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.store = new MCTOffHeapNodeStore(8 * MCTOffHeapNodeStore.RECORD_SIZE * 4);
+        this.board = ChessboardUtils.newChessboard("test board");
+        this.root = this.store.addRoot(0, 0, this.board.evaluateChessboardFromWhitesPerpective());
+
+        MoveList moves = TestMCTOffHeapNodeStore.getLegalMoves(this.board);
+        IChessboard boardA = TestMCTOffHeapNodeStore.play(this.board, moves.get(0));
+        this.a = this.store.addChild(this.root, moves.get(0), 0, boardA);
+        IChessboard boardB = TestMCTOffHeapNodeStore.play(this.board, moves.get(1));
+        this.b = this.store.addChild(this.root, moves.get(1), 0, boardB);
+        this.c = this.store.addChild(this.root, moves.get(2), 0, TestMCTOffHeapNodeStore.play(this.board, moves.get(2)));
+
+        moves = TestMCTOffHeapNodeStore.getLegalMoves(boardA);
+        this.a1 = this.store.addChild(this.a, moves.get(0), 0, TestMCTOffHeapNodeStore.play(boardA, moves.get(0)));
+        this.a2 = this.store.addChild(this.a, moves.get(1), 0, TestMCTOffHeapNodeStore.play(boardA, moves.get(1)));
+
+        moves = TestMCTOffHeapNodeStore.getLegalMoves(boardB);
+        IChessboard boardB1 = TestMCTOffHeapNodeStore.play(boardB, moves.get(0));
+        this.b1 = this.store.addChild(this.b, moves.get(0), 0, boardB1);
+        moves = TestMCTOffHeapNodeStore.getLegalMoves(boardB1);
+        this.store.addChild(this.b1, moves.get(0), 0, TestMCTOffHeapNodeStore.play(boardB1, moves.get(0)));
+
+        // every node gets its own statistics
+        for (int node = 0; node < this.store.size(); node++) {
+            this.store.addVisits(node, 10 * node, node);
+        }
+    }
+
+
+    @After
+    public void tearDown() throws Exception {}
+
+
+    @Test
+    public void testAddChild() {
+        Assert.assertEquals(8, this.store.size());
+        Assert.assertEquals(7, this.store.getNumberOfSuccessors(this.root));
+        Assert.assertEquals(2, this.store.getNumberOfSuccessors(this.b));
+        Assert.assertEquals(3, this.store.getNumberOfChildren(this.root));
+        Assert.assertEquals(this.a, this.store.addChild(this.root, this.store.getMoveNumber(this.a), 0, this.board));
+        Assert.assertEquals(8, this.store.size());
+    }
+
+
+    @Test
+    public void testCompact() {
+        Assert.assertEquals(2, this.store.removeChildren(this.b));
+        Assert.assertEquals(5, this.store.getNumberOfSuccessors(this.root));
+        Assert.assertEquals(8, this.store.size());
+
+        int[] nodes = { this.a, this.b, this.c, this.a1, this.a2 };
+        int[] visits = new int[nodes.length];
+        int[] mats = new int[nodes.length];
+        int[] moves = new int[nodes.length];
+        for (int x = 0; x < nodes.length; x++) {
+            visits[x] = this.store.getVisitCount(nodes[x]);
+            mats[x] = this.store.getNumberOfMats(nodes[x]);
+            moves[x] = this.store.getMoveNumber(nodes[x]);
+        }
+
+        int newRoot = this.store.compact(this.root);
+        Assert.assertEquals(0, newRoot);
+        Assert.assertEquals(6, this.store.size());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.store.getParent(newRoot));
+        Assert.assertEquals(5, this.store.getNumberOfSuccessors(newRoot));
+
+        int newA = this.store.getChild(newRoot, moves[0]);
+        int newB = this.store.getChild(newRoot, moves[1]);
+        int newC = this.store.getChild(newRoot, moves[2]);
+        int newA1 = this.store.getChild(newA, moves[3]);
+        int newA2 = this.store.getChild(newA, moves[4]);
+
+        // children are linked in reverse order of addition
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newRoot, newC, newB, newA);
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newA, newA2, newA1);
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newB);
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newC);
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newA1);
+        TestMCTOffHeapNodeStore.assertChildren(this.store, newA2);
+
+        int[] newNodes = { newA, newB, newC, newA1, newA2 };
+        for (int x = 0; x < newNodes.length; x++) {
+            Assert.assertEquals(visits[x], this.store.getVisitCount(newNodes[x]));
+            Assert.assertEquals(mats[x], this.store.getNumberOfMats(newNodes[x]));
+        }
+        Assert.assertEquals(2, this.store.getNumberOfSuccessors(newA));
+        Assert.assertEquals(0, this.store.getNumberOfSuccessors(newB));
+        Assert.assertEquals(2, this.store.getMoveDepth(newA1));
+    }
+
+
+    @Test
+    public void testCompactSubtree() {
+        int visits = this.store.getVisitCount(this.a1);
+        int moveNumber = this.store.getMoveNumber(this.a1);
+        int newA = this.store.compact(this.a);
+        Assert.assertEquals(0, newA);
+        Assert.assertEquals(3, this.store.size());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.store.getParent(newA));
+        Assert.assertEquals(2, this.store.getNumberOfSuccessors(newA));
+        Assert.assertEquals(visits, this.store.getVisitCount(this.store.getChild(newA, moveNumber)));
+    }
+
+
+    @Test
+    public void testMakeRoot() {
+        Assert.assertTrue(this.store.isFull());
+
+        // full store is compacted even if nothing is discarded
+        Assert.assertEquals(this.root, this.store.makeRoot(this.root));
+        Assert.assertEquals(8, this.store.size());
+        Assert.assertTrue(this.store.isFull());
+
+        // discarded nodes take more than half of the store
+        Assert.assertEquals(0, this.store.makeRoot(this.a));
+        Assert.assertEquals(3, this.store.size());
+        Assert.assertFalse(this.store.isFull());
+        Assert.assertEquals(MCTNodeStore.NO_NODE, this.store.getParent(0));
+    }
+
+
+    /**
+     * Gets legal moves of chess board.
+     */
+    private static MoveList getLegalMoves(IChessboard board) throws Exception {
+        MoveList moves = new MoveList();
+        board.getLegalMoves(moves);
+        return moves;
+    }
+
+
+    /**
+     * Gets copy of chess board on which move was made.
+     */
+    private static IChessboard play(IChessboard board, int moveNumber) throws Exception {
+        IChessboard copy = board.copy("test board");
+        copy.makeAMove(moveNumber);
+        return copy;
+    }
+
+
+    /**
+     * Checks that children of <code>node</code> are linked in given order and
+     * point back to it.
+     */
+    private static void assertChildren(MCTOffHeapNodeStore store, int node, int... children) {
+        int child = store.getFirstChild(node);
+        for (int expected : children) {
+            Assert.assertEquals(expected, child);
+            Assert.assertEquals(node, store.getParent(child));
+            child = store.getNextSibling(child);
+        }
+        Assert.assertEquals(MCTNodeStore.NO_NODE, child);
+        Assert.assertEquals(children.length, store.getNumberOfChildren(node));
+    }
+
+}
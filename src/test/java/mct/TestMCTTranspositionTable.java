@@ -0,0 +1,89 @@
+package mct;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import chess.chessboard.ChessboardEvalState;
+
+
+public class TestMCTTranspositionTable {
+
+    private static final long     KEY = 0x123456789ABCDEFL;
+
+    private MCTTranspositionTable table;
+    private MCTNode               node;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {}
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {}
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.table = new MCTTranspositionTable();
+        this.node = new MCTNode(0, 4, ChessboardEvalState.NORMAl);
+        Assert.assertNull(this.table.putIfAbsent(TestMCTTranspositionTable.KEY, 1, this.node));
+    }
+
+
+    @After
+    public void tearDown() throws Exception {}
+
+
+    @Test
+    public void testGet() {
+        Assert.assertSame(this.node, this.table.get(TestMCTTranspositionTable.KEY, 4, 1));
+
+        // other position, other ply number and other number of appearances
+        // are different states
+        Assert.assertNull(this.table.get(TestMCTTranspositionTable.KEY ^ 1, 4, 1));
+        Assert.assertNull(this.table.get(TestMCTTranspositionTable.KEY, 6, 1));
+        Assert.assertNull(this.table.get(TestMCTTranspositionTable.KEY, 4, 2));
+    }
+
+
+    @Test
+    public void testDrawRepetitions() {
+        MCTNode draw = new MCTNode(0, 4, ChessboardEvalState.DRAW);
+        Assert.assertNull(this.table.putIfAbsent(TestMCTTranspositionTable.KEY, 3, draw));
+
+        // from third appearance on position is draw, so all of them are same
+        // state
+        Assert.assertSame(draw, this.table.get(TestMCTTranspositionTable.KEY, 4, 3));
+        Assert.assertSame(draw, this.table.get(TestMCTTranspositionTable.KEY, 4, 5));
+        Assert.assertSame(this.node, this.table.get(TestMCTTranspositionTable.KEY, 4, 1));
+    }
+
+
+    @Test
+    public void testPutIfAbsent() {
+        MCTNode other = new MCTNode(0, 4, ChessboardEvalState.NORMAl);
+        Assert.assertSame(this.node, this.table.putIfAbsent(TestMCTTranspositionTable.KEY, 1, other));
+        Assert.assertSame(this.node, this.table.get(TestMCTTranspositionTable.KEY, 4, 1));
+        Assert.assertEquals(1, this.table.size());
+    }
+
+
+    @Test
+    public void testRemoveDiscardedNodes() {
+        MCTNode kept = new MCTNode(0, 5, ChessboardEvalState.NORMAl);
+        kept.id = 0;
+        this.table.putIfAbsent(TestMCTTranspositionTable.KEY, 1, kept);
+        Assert.assertEquals(2, this.table.size());
+
+        // node without id was discarded by compaction
+        this.table.removeDiscardedNodes();
+        Assert.assertEquals(1, this.table.size());
+        Assert.assertNull(this.table.get(TestMCTTranspositionTable.KEY, 4, 1));
+        Assert.assertSame(kept, this.table.get(TestMCTTranspositionTable.KEY, 5, 1));
+    }
+
+}
@@ -16,6 +16,7 @@ import org.junit.Test;
 import config.MCTSSetup;
 
 import chess.Move;
+import chess.MoveList;
 import chess.chessboard.Chessboard;
 
 public class TestWhiteMoveFinder {
@@ -63,18 +64,46 @@ public class TestWhiteMoveFinder {
 
     @Test
     public void testGeneralHeuristics() {
-        ArrayList<Move> returned = WhiteMoveFinder.generalHeuristics(TestWhiteMoveFinder.cbKRK);
+        MoveList returned = new MoveList();
+        WhiteMoveFinder.generalHeuristics(TestWhiteMoveFinder.cbKRK, returned);
 
         Integer[] indexesNotInAllMoves = { 10, 11, 14, 15, 16, 17, 18 };
         ArrayList<Integer> listOfIndexesNotInAllMoves = new ArrayList<Integer>(Arrays.asList(indexesNotInAllMoves));
         for (int x = 0; x < TestWhiteMoveFinder.allCbKRKMoves.size(); x++) {
             if (listOfIndexesNotInAllMoves.contains(x)) {
-                assertFalse(returned.contains(TestWhiteMoveFinder.allCbKRKMoves.get(x)));
+                assertFalse(returned.contains(TestWhiteMoveFinder.allCbKRKMoves.get(x).moveNumber));
             }
             else {
-                assertTrue(returned.contains(TestWhiteMoveFinder.allCbKRKMoves.get(x)));
+                assertTrue(returned.contains(TestWhiteMoveFinder.allCbKRKMoves.get(x).moveNumber));
             }
         }
     }
 
+
+    @Test
+    public void testCountAllowingHeuristics() {
+        MoveList allMoves = new MoveList();
+        for (Move move : TestWhiteMoveFinder.allCbKRKMoves) {
+            allMoves.add(move.moveNumber);
+        }
+        int[] counts = new int[allMoves.size()];
+        WhiteMoveFinder.countAllowingHeuristics(TestWhiteMoveFinder.cbKRK, WhiteFinderStrategy.KRK_ENDING, allMoves, counts);
+
+        MoveList returned = new MoveList();
+        WhiteMoveFinder.generalHeuristics(TestWhiteMoveFinder.cbKRK, returned);
+
+        // moves that pass all heuristics are allowed by more heuristics than
+        // moves that are filtered out
+        int minReturnedCount = Integer.MAX_VALUE;
+        int maxFilteredCount = -1;
+        for (int x = 0; x < allMoves.size(); x++) {
+            if (returned.contains(allMoves.get(x))) {
+                minReturnedCount = Math.min(minReturnedCount, counts[x]);
+            }
+            else {
+                maxFilteredCount = Math.max(maxFilteredCount, counts[x]);
+            }
+        }
+        assertTrue(minReturnedCount > maxFilteredCount);
+    }
 }